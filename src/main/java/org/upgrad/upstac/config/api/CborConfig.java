@@ -0,0 +1,37 @@
+package org.upgrad.upstac.config.api;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+//Serves application/cbor to clients that ask for it in Accept, JSON stays the default
+@Configuration
+public class CborConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder;
+
+
+    //Spring MVC registers a CBOR converter after the JSON one with a default mapper, this swaps in one built
+    //from Boot's builder so CBOR gets the same spring.jackson settings and modules as JSON
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+
+        MappingJackson2CborHttpMessageConverter cborConverter =
+                new MappingJackson2CborHttpMessageConverter(jackson2ObjectMapperBuilder.factory(new CBORFactory()).build());
+
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2CborHttpMessageConverter) {
+                converters.set(i, cborConverter);
+                return;
+            }
+        }
+        converters.add(cborConverter);
+    }
+}
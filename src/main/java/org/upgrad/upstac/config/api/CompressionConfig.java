@@ -0,0 +1,23 @@
+package org.upgrad.upstac.config.api;
+
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CompressionConfig {
+
+    //Tomcat skips compression for responses with a strong ETag, list ETags already differ with and without gzip (see ListVersions)
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> compressStrongETagResponses() {
+
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            ProtocolHandler protocolHandler = connector.getProtocolHandler();
+            if (protocolHandler instanceof AbstractHttp11Protocol)
+                ((AbstractHttp11Protocol<?>) protocolHandler).setNoCompressionStrongETag(false);
+        });
+    }
+}
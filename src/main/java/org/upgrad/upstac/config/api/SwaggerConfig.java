@@ -4,6 +4,8 @@ import com.google.common.base.Predicate;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.WebRequest;
 import org.upgrad.upstac.users.roles.UserRole;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -13,7 +15,9 @@ import springfox.documentation.spi.service.contexts.SecurityContext;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import static com.google.common.base.Predicates.or;
@@ -31,6 +35,8 @@ public class SwaggerConfig {
                 .apis(RequestHandlerSelectors.any())
                 .paths(pathsToBeDocumented())
                 .build()
+                .ignoredParameterTypes(WebRequest.class)
+                .produces(new HashSet<>(Arrays.asList(MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE)))
                 .securitySchemes(getSecuritySchemes())
                 .securityContexts(getSecurityContexts());
     }
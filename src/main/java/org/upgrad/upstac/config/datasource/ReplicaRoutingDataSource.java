@@ -0,0 +1,138 @@
+package org.upgrad.upstac.config.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the connections of read-only transactions to the replicas, round robin, and everything else to the primary.
+ *
+ * The transaction's read-only flag is only known once it has started, so this must sit behind a
+ * LazyConnectionDataSourceProxy, which fetches the real connection at the first statement. After a user's write
+ * transaction commits, that user's reads stay on the primary for sticky-primary-ms so they see their own changes.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    //Expired stickiness is only swept once this many users are tracked
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final List<String> replicaKeys = new ArrayList<>();
+
+    private final long stickyPrimaryInMilliSeconds;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Map<String, Long> primaryUntil = new ConcurrentHashMap<>();
+
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long stickyPrimaryInMilliSeconds) {
+
+        this.primary = primary;
+        this.replicas = replicas;
+        this.stickyPrimaryInMilliSeconds = stickyPrimaryInMilliSeconds;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys.add("replica-" + i);
+            targets.put(replicaKeys.get(i), replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() == false) {
+            stickToPrimaryAfterCommit();
+            return PRIMARY;
+        }
+
+        if (replicaKeys.isEmpty() || isStickyToPrimary(currentUser()))
+            return PRIMARY;
+
+        return replicaKeys.get(Math.floorMod(next.getAndIncrement(), replicaKeys.size()));
+    }
+
+    private void stickToPrimaryAfterCommit() {
+
+        String user = currentUser();
+        if (null == user || replicaKeys.isEmpty() || stickyPrimaryInMilliSeconds <= 0 || TransactionSynchronizationManager.isSynchronizationActive() == false)
+            return;
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (primaryUntil.size() > SWEEP_THRESHOLD) {
+                    long now = System.currentTimeMillis();
+                    primaryUntil.values().removeIf(until -> until < now);
+                }
+                primaryUntil.put(user, System.currentTimeMillis() + stickyPrimaryInMilliSeconds);
+            }
+        });
+    }
+
+    boolean isStickyToPrimary(String user) {
+
+        if (null == user)
+            return false;
+
+        Long until = primaryUntil.get(user);
+        return null != until && until >= System.currentTimeMillis();
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return null == authentication ? null : authentication.getName();
+    }
+
+    //What the application should use, closing it closes the pools
+    public DataSource asLazyProxy() {
+        afterPropertiesSet();
+        return new ClosingProxy(this);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeIfPossible(primary);
+        for (DataSource replica : replicas)
+            closeIfPossible(replica);
+    }
+
+    private static void closeIfPossible(DataSource dataSource) throws IOException {
+        if (dataSource instanceof Closeable)
+            ((Closeable) dataSource).close();
+    }
+
+    static class ClosingProxy extends LazyConnectionDataSourceProxy implements Closeable {
+
+        private final ReplicaRoutingDataSource routing;
+
+        ClosingProxy(ReplicaRoutingDataSource routing) {
+            super(routing);
+            this.routing = routing;
+        }
+
+        @Override
+        public void close() throws IOException {
+            routing.close();
+        }
+    }
+}
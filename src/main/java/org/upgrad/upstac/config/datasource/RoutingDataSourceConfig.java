@@ -0,0 +1,127 @@
+package org.upgrad.upstac.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the auto-configured data source when replica routing or workload pools are enabled.
+ *
+ * The primary is one pool, or one pool per Workload with upstac.datasource.workload-pools.enabled, each sized
+ * by upstac.datasource.workload-pools.[workload].maximum-pool-size and given the driver properties under
+ * upstac.datasource.workload-pools.[workload].data-source-properties (the reporting pool turns on MySQL cursor
+ * fetch this way, so only the export streams through server side cursors). Replicas from upstac.datasource.replica-urls
+ * are only used with upstac.datasource.routing.enabled, see ReplicaRoutingDataSource. Every pool reports its
+ * hikaricp.connections.* metrics (acquire wait, usage, active, pending, timeouts) tagged with its pool name.
+ *
+ * Routing and workload pools need spring.jpa.open-in-view=false, startup fails otherwise: the entity manager of the
+ * request would hold the connection its first statement was routed to, a replica or the pool of the first workload,
+ * and everything later in the request would run on it.
+ */
+@Configuration
+@ConditionalOnExpression("${upstac.datasource.routing.enabled:false} or ${upstac.datasource.workload-pools.enabled:false}")
+public class RoutingDataSourceConfig {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${upstac.datasource.routing.enabled:false}")
+    private boolean routingEnabled;
+
+    @Value("${upstac.datasource.workload-pools.enabled:false}")
+    private boolean workloadPoolsEnabled;
+
+    @Value("${upstac.datasource.replica-urls:}")
+    private String replicaUrls;
+
+    @Value("${upstac.datasource.replica-username:${spring.datasource.username:}}")
+    private String replicaUserName;
+
+    @Value("${upstac.datasource.replica-password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${upstac.datasource.sticky-primary-ms:5000}")
+    private long stickyPrimaryInMilliSeconds;
+
+    @Value("${spring.jpa.open-in-view:true}")
+    private boolean openInView;
+
+
+    //A single bean, a second DataSource bean would trigger the data source initializer while this one is created
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties) {
+
+        if (openInView)
+            throw new IllegalStateException("spring.jpa.open-in-view must be false when upstac.datasource.routing.enabled or upstac.datasource.workload-pools.enabled is true");
+
+        DataSource primary = workloadPoolsEnabled ? workloadPools(properties) : pool(properties, "primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        if (routingEnabled) {
+            for (String url : StringUtils.commaDelimitedListToStringArray(replicaUrls)) {
+                if (url.trim().isEmpty())
+                    continue;
+
+                HikariDataSource replica = new HikariDataSource();
+                replica.setPoolName("replica-" + replicas.size());
+                replica.setJdbcUrl(url.trim());
+                replica.setUsername(replicaUserName);
+                replica.setPassword(replicaPassword);
+                replica.setReadOnly(true);
+                withMetrics(replica);
+                replicas.add(replica);
+            }
+        }
+
+        return new ReplicaRoutingDataSource(primary, replicas, stickyPrimaryInMilliSeconds).asLazyProxy();
+    }
+
+    private DataSource workloadPools(DataSourceProperties properties) {
+
+        Map<Workload, DataSource> pools = new EnumMap<>(Workload.class);
+        for (Workload workload : Workload.values()) {
+
+            String prefix = "upstac.datasource.workload-pools." + workload.key() + ".";
+            HikariDataSource pool = pool(properties, workload.key());
+            pool.setMaximumPoolSize(environment.getProperty(prefix + "maximum-pool-size", Integer.class, workload.getDefaultPoolSize()));
+            pool.setConnectionTimeout(environment.getProperty(prefix + "connection-timeout-ms", Long.class, workload.getDefaultConnectionTimeoutInMilliSeconds()));
+            Binder.get(environment).bind(prefix + "data-source-properties", Bindable.mapOf(String.class, String.class))
+                    .ifBound(dataSourceProperties -> dataSourceProperties.forEach(pool::addDataSourceProperty));
+            pools.put(workload, pool);
+        }
+        return new WorkloadRoutingDataSource(pools);
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String name) {
+
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(name);
+        return withMetrics(pool);
+    }
+
+    private HikariDataSource withMetrics(HikariDataSource pool) {
+        meterRegistry.ifAvailable(pool::setMetricRegistry);
+        return pool;
+    }
+}
@@ -0,0 +1,12 @@
+package org.upgrad.upstac.config.datasource;
+
+import java.lang.annotation.*;
+
+//Runs the annotated method, or every method of the annotated class, on the pool of the given workload
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface UseWorkload {
+
+    Workload value();
+}
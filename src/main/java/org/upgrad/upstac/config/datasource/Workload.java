@@ -0,0 +1,51 @@
+package org.upgrad.upstac.config.datasource;
+
+/**
+ * Workload classes that get their own connection pool when upstac.datasource.workload-pools.enabled is set.
+ *
+ * Code picks one with @UseWorkload. Without it, read-only transactions count as INTERACTIVE and everything else as
+ * TRANSACTIONAL.
+ */
+public enum Workload {
+
+    TRANSACTIONAL(10, 10_000),
+    INTERACTIVE(10, 5_000),
+    REPORTING(4, 30_000);
+
+    private static final ThreadLocal<Workload> current = new ThreadLocal<>();
+
+    private final int defaultPoolSize;
+
+    private final long defaultConnectionTimeoutInMilliSeconds;
+
+
+    Workload(int defaultPoolSize, long defaultConnectionTimeoutInMilliSeconds) {
+        this.defaultPoolSize = defaultPoolSize;
+        this.defaultConnectionTimeoutInMilliSeconds = defaultConnectionTimeoutInMilliSeconds;
+    }
+
+    //The workload set by the outermost @UseWorkload on this thread, or null
+    public static Workload current() {
+        return current.get();
+    }
+
+    static void setCurrent(Workload workload) {
+        if (null == workload)
+            current.remove();
+        else
+            current.set(workload);
+    }
+
+    //Property key, e.g. upstac.datasource.workload-pools.reporting.maximum-pool-size
+    String key() {
+        return name().toLowerCase();
+    }
+
+    int getDefaultPoolSize() {
+        return defaultPoolSize;
+    }
+
+    long getDefaultConnectionTimeoutInMilliSeconds() {
+        return defaultConnectionTimeoutInMilliSeconds;
+    }
+}
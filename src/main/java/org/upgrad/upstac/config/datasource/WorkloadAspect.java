@@ -0,0 +1,41 @@
+package org.upgrad.upstac.config.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+//Outside the transaction interceptor, so the workload is set before a transaction takes its connection.
+//The outermost annotated call decides, e.g. a transition reading through an INTERACTIVE service stays TRANSACTIONAL
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class WorkloadAspect {
+
+    @Around("@annotation(org.upgrad.upstac.config.datasource.UseWorkload) || @within(org.upgrad.upstac.config.datasource.UseWorkload)")
+    public Object useWorkload(ProceedingJoinPoint joinPoint) throws Throwable {
+
+        if (null != Workload.current())
+            return joinPoint.proceed();
+
+        Workload.setCurrent(workloadOf(joinPoint));
+        try {
+            return joinPoint.proceed();
+        } finally {
+            Workload.setCurrent(null);
+        }
+    }
+
+    //A method's annotation wins over its class's
+    private static Workload workloadOf(ProceedingJoinPoint joinPoint) {
+
+        UseWorkload useWorkload = AnnotatedElementUtils.findMergedAnnotation(((MethodSignature) joinPoint.getSignature()).getMethod(), UseWorkload.class);
+        if (null == useWorkload)
+            useWorkload = AnnotatedElementUtils.findMergedAnnotation(joinPoint.getTarget().getClass(), UseWorkload.class);
+        return useWorkload.value();
+    }
+}
@@ -0,0 +1,48 @@
+package org.upgrad.upstac.config.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out connections from the pool of the current Workload, so a burst in one class waits on its own pool
+ * instead of holding the connections another class needs.
+ *
+ * Like ReplicaRoutingDataSource it relies on a LazyConnectionDataSourceProxy in front of it for the read-only flag.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final Map<Workload, DataSource> pools;
+
+
+    public WorkloadRoutingDataSource(Map<Workload, DataSource> pools) {
+
+        this.pools = new EnumMap<>(pools);
+        setTargetDataSources(new HashMap<>(pools));
+        setDefaultTargetDataSource(pools.get(Workload.TRANSACTIONAL));
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        Workload workload = Workload.current();
+        if (null != workload)
+            return workload;
+
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Workload.INTERACTIVE : Workload.TRANSACTIONAL;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource pool : pools.values())
+            if (pool instanceof Closeable)
+                ((Closeable) pool).close();
+    }
+}
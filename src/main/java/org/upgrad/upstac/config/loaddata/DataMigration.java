@@ -0,0 +1,21 @@
+package org.upgrad.upstac.config.loaddata;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.Instant;
+
+//Marks a one-off data migration as applied to this database
+@Data
+@Entity
+public class DataMigration {
+
+    @Id
+    private String name;
+
+    private Instant appliedAt;
+
+    private Integer rowsChanged;
+
+}
@@ -0,0 +1,9 @@
+package org.upgrad.upstac.config.loaddata;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DataMigrationRepository extends CrudRepository<DataMigration, String> {
+
+}
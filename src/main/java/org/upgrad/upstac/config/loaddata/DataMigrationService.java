@@ -0,0 +1,184 @@
+package org.upgrad.upstac.config.loaddata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.upgrad.upstac.search.ContactSearchIndex;
+import org.upgrad.upstac.testrequests.QueuePriority;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.analytics.TurnaroundAnalytics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * One-off data migrations for rows written before a schema change. Each migration runs once per
+ * database and is recorded in {@link DataMigration}; it runs before the startup index builds so
+ * they see migrated rows. Migrations only touch rows still missing the new data, so two nodes
+ * starting together may both run one without harm, and only the first records it.
+ */
+@Component
+public class DataMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(DataMigrationService.class);
+
+    @Autowired
+    private DataMigrationRepository dataMigrationRepository;
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    private ContactSearchIndex contactSearchIndex;
+
+    @Autowired
+    private TurnaroundAnalytics turnaroundAnalytics;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${upstac.migration.batch-size:500}")
+    private int batchSize;
+
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+
+        runOnce("queue-priority-keys", this::backfillPriorityKeys);
+
+        //Databases created after TestRequest owned the links never had the old request_request_id columns
+        if (hasColumn("lab_result", "request_request_id"))
+            runOnce("lab-result-links", testRequestRepository::backfillLabResultLinks);
+        if (hasColumn("consultation", "request_request_id"))
+            runOnce("consultation-links", testRequestRepository::backfillConsultationLinks);
+
+        //Gender has too few values to lead an index, filters by gender are checked on the rows another index reads
+        if (hasIndex("test_request", "idx_test_request_gender_id"))
+            runOnce("drop-gender-index", () -> dropIndex("test_request", "idx_test_request_gender_id"));
+
+        //Records saved before the search terms were kept in the database
+        if (contactSearchIndex.isEnabled())
+            runOnce("contact-search-terms", contactSearchIndex::backfill);
+
+        //Transitions from before the turnaround histograms were kept in the database
+        if (turnaroundAnalytics.isEnabled())
+            runOnce("turnaround-histograms", turnaroundAnalytics::backfill);
+    }
+
+    void runOnce(String name, IntSupplier migration) {
+
+        if (dataMigrationRepository.existsById(name))
+            return;
+
+        int rows = migration.getAsInt();
+
+        DataMigration applied = new DataMigration();
+        applied.setName(name);
+        applied.setAppliedAt(Instant.now());
+        applied.setRowsChanged(rows);
+        try {
+            dataMigrationRepository.save(applied);
+        } catch (DataIntegrityViolationException e) {
+            log.info("data migration {} was recorded by another node", name);
+            return;
+        }
+
+        log.info("applied data migration {} to {} rows", name, rows);
+    }
+
+    //Queued requests created before priority keys existed, keyed from their creation time one batch per transaction
+    int backfillPriorityKeys() {
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        EnumSet<RequestStatus> queued = EnumSet.of(RequestStatus.INITIATED, RequestStatus.LAB_TEST_COMPLETED);
+        int total = 0;
+        int updated;
+
+        do {
+            updated = transactionTemplate.execute(status -> {
+                List<TestRequest> batch = testRequestRepository.findByPriorityKeyIsNullAndStatusIn(queued, PageRequest.of(0, batchSize));
+                for (TestRequest testRequest : batch)
+                    testRequest.setPriorityKey(QueuePriority.priorityKeyFor(testRequest, enqueuedAt(testRequest)));
+                return batch.size();
+            });
+            total += updated;
+        } while (updated == batchSize);
+
+        return total;
+    }
+
+    boolean hasColumn(String table, String column) {
+
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+            String columnName = metaData.storesUpperCaseIdentifiers() ? column.toUpperCase() : column;
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, tableName, columnName)) {
+                return columns.next();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the columns of " + table, e);
+        }
+    }
+
+    boolean hasIndex(String table, String index) {
+
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, tableName, false, true)) {
+                while (indexes.next())
+                    if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME")))
+                        return true;
+            }
+            return false;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the indexes of " + table, e);
+        }
+    }
+
+    //MySQL syntax, the only database old enough to have the dropped indexes
+    private int dropIndex(String table, String index) {
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("drop index " + index + " on " + table);
+            return 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not drop index " + index + " of " + table, e);
+        }
+    }
+
+    private static Instant enqueuedAt(TestRequest testRequest) {
+
+        if (null != testRequest.getCreatedAt())
+            return testRequest.getCreatedAt();
+
+        return testRequest.getCreated().atStartOfDay(ZoneId.systemDefault()).toInstant();
+    }
+
+}
@@ -0,0 +1,11 @@
+package org.upgrad.upstac.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+
+
+}
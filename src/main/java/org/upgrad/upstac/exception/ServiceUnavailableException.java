@@ -0,0 +1,11 @@
+package org.upgrad.upstac.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+
+
+}
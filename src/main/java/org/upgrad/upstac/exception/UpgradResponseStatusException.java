@@ -28,6 +28,9 @@ public class UpgradResponseStatusException extends ResponseStatusException {
     public static UpgradResponseStatusException asForbidden(String msg) {
         return asExceptionFromHttpStatus(msg, HttpStatus.FORBIDDEN);
     }
+    public static UpgradResponseStatusException asNotFound(String msg) {
+        return asExceptionFromHttpStatus(msg, HttpStatus.NOT_FOUND);
+    }
     public static UpgradResponseStatusException asBadRequest(String msg) {
         return asExceptionFromHttpStatus(msg, HttpStatus.BAD_REQUEST);
     }
@@ -35,6 +38,14 @@ public class UpgradResponseStatusException extends ResponseStatusException {
         return new UpgradResponseStatusException( HttpStatus.BAD_REQUEST,msg,throwable);
     }
 
+    public static UpgradResponseStatusException asGatewayTimeout(String msg) {
+        return asExceptionFromHttpStatus(msg, HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    public static UpgradResponseStatusException asServiceUnavailable(String msg) {
+        return asExceptionFromHttpStatus(msg, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     public static UpgradResponseStatusException asServerError(String msg) {
         return asExceptionFromHttpStatus(msg, HttpStatus.INTERNAL_SERVER_ERROR);
     }
@@ -0,0 +1,49 @@
+package org.upgrad.upstac.search;
+
+import lombok.Data;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.users.User;
+
+//Published when a test request is created or a user is saved, keeps ContactSearchIndex current
+@Data
+public class ContactDetailsChanged {
+
+    public enum Kind {
+        TEST_REQUEST, USER
+    }
+
+    private Kind kind;
+    private Long id;
+    private String name;
+    private String email;
+    private String phoneNumber;
+
+
+    public static ContactDetailsChanged of(TestRequest testRequest) {
+        return of(Kind.TEST_REQUEST, testRequest.getRequestId(), testRequest.getName(), testRequest.getEmail(), testRequest.getPhoneNumber());
+    }
+
+    public static ContactDetailsChanged of(User user) {
+        return of(Kind.USER, user.getId(), nameOf(user.getUserName(), user.getFirstName(), user.getLastName()), user.getEmail(), user.getPhoneNumber());
+    }
+
+    static ContactDetailsChanged of(Kind kind, Long id, String name, String email, String phoneNumber) {
+
+        ContactDetailsChanged event = new ContactDetailsChanged();
+        event.setKind(kind);
+        event.setId(id);
+        event.setName(name);
+        event.setEmail(email);
+        event.setPhoneNumber(phoneNumber);
+        return event;
+    }
+
+    static String nameOf(String userName, String firstName, String lastName) {
+
+        StringBuilder name = new StringBuilder();
+        for (String part : new String[]{userName, firstName, lastName})
+            if (null != part)
+                name.append(part).append(' ');
+        return name.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package org.upgrad.upstac.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.upgrad.upstac.exception.AppException;
+
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+
+
+@RestController
+@RequestMapping("/api/government")
+public class ContactSearchController {
+
+    Logger log = LoggerFactory.getLogger(ContactSearchController.class);
+
+    @Autowired
+    private ContactSearchService contactSearchService;
+
+
+    //Typeahead over patient and user name, email and phone, e.g. /api/government/search?q=ravi&limit=10
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public ContactSearchResult search(@RequestParam("q") String query, @RequestParam(defaultValue = "20") int limit) {
+
+        try {
+            return contactSearchService.search(query, limit);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+package org.upgrad.upstac.search;
+
+import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Search index over the name, email and phone number of test requests and users, kept in the database as
+ * one ContactTerm row per term.
+ *
+ * A typeahead query is a range scan of idx_contact_term_kind_term_record for the terms starting with it
+ * rather than a LIKE '%x%' scan of the tables. The terms of a record are replaced in the transaction that
+ * publishes its ContactDetailsChanged, so every node searches the same index, nothing is rebuilt at startup
+ * and old records stay findable. Records saved before the index existed are added once by the
+ * contact-search-terms data migration.
+ */
+@Component
+public class ContactSearchIndex {
+
+    static final int MIN_FUZZY_LENGTH = 3;
+
+    //A record can match one prefix with several terms, e.g. its email and its email domain
+    static final int MAX_TERMS_PER_RECORD = 8;
+
+    //Rows compared with a query that carries a typo, bounds the work of one fuzzy lookup
+    static final int MAX_FUZZY_CANDIDATES = 5000;
+
+    static final int MAX_TERM_LENGTH = 255;
+
+    private static final Logger logger = LoggerFactory.getLogger(ContactSearchIndex.class);
+
+    @Autowired
+    private ContactTermRepository contactTermRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${upstac.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${upstac.search.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+
+    //Joins the publishing transaction when there is one
+    @EventListener
+    public void onContactDetailsChanged(ContactDetailsChanged event) {
+
+        if (enabled == false)
+            return;
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            apply(event);
+            return null;
+        });
+    }
+
+    void apply(ContactDetailsChanged event) {
+
+        contactTermRepository.deleteByRecord(event.getKind(), event.getId());
+
+        List<ContactTerm> terms = termsOf(event).stream().map(term -> {
+            ContactTerm contactTerm = new ContactTerm();
+            contactTerm.setKind(event.getKind());
+            contactTerm.setTerm(term);
+            contactTerm.setRecordId(event.getId());
+            return contactTerm;
+        }).collect(Collectors.toList());
+        contactTermRepository.saveAll(terms);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Ids whose terms start with the query first, then near misses for queries long enough to carry a typo
+    public List<Long> search(ContactDetailsChanged.Kind kind, String query, int limit) {
+
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Long id : contactTermRepository.findRecordIdsByTermPrefix(kind, likePrefix(normalized), PageRequest.of(0, limit * MAX_TERMS_PER_RECORD))) {
+            ids.add(id);
+            if (ids.size() >= limit)
+                return new ArrayList<>(ids);
+        }
+
+        if (normalized.length() >= MIN_FUZZY_LENGTH && isPhoneLike(query) == false) {
+            int maxEdits = normalized.length() > 6 ? 2 : 1;
+            String anchor = normalized.substring(0, normalized.length() > 4 ? 2 : 1);
+
+            for (Object[] candidate : contactTermRepository.findTermsByPrefix(kind, likePrefix(anchor), PageRequest.of(0, MAX_FUZZY_CANDIDATES))) {
+                if (prefixDistance(normalized, (String) candidate[0], maxEdits) <= maxEdits) {
+                    ids.add((Long) candidate[1]);
+                    if (ids.size() >= limit)
+                        break;
+                }
+            }
+        }
+
+        return new ArrayList<>(ids);
+    }
+
+    //Terms of the records saved before the index existed, one batch per transaction in id order; see DataMigrationService
+    public int backfill() {
+
+        int total = backfill(ContactDetailsChanged.Kind.TEST_REQUEST, "select t.requestId, t.name, t.email, t.phoneNumber from TestRequest t where t.requestId > :after order by t.requestId");
+        total += backfill(ContactDetailsChanged.Kind.USER, "select u.id, u.userName, u.firstName, u.lastName, u.email, u.phoneNumber from User u where u.id > :after order by u.id");
+        return total;
+    }
+
+    private int backfill(ContactDetailsChanged.Kind kind, String query) {
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long startedAt = System.currentTimeMillis();
+        long after = Long.MIN_VALUE;
+        int total = 0;
+
+        while (true) {
+            long from = after;
+            List<?> rows = transactionTemplate.execute(status -> {
+                List<?> batch = entityManager.createQuery(query)
+                        .setParameter("after", from)
+                        .setHint(QueryHints.HINT_READONLY, true)
+                        .setMaxResults(backfillBatchSize)
+                        .getResultList();
+                batch.forEach(row -> apply(contactDetailsOf(kind, (Object[]) row)));
+                return batch;
+            });
+
+            if (rows.isEmpty())
+                break;
+            total += rows.size();
+            after = (Long) ((Object[]) rows.get(rows.size() - 1))[0];
+        }
+
+        logger.info("indexed the contact details of {} {} records in {} ms", total, kind, System.currentTimeMillis() - startedAt);
+        return total;
+    }
+
+    private static ContactDetailsChanged contactDetailsOf(ContactDetailsChanged.Kind kind, Object[] columns) {
+
+        if (kind == ContactDetailsChanged.Kind.USER)
+            return ContactDetailsChanged.of(kind, (Long) columns[0], ContactDetailsChanged.nameOf((String) columns[1], (String) columns[2], (String) columns[3]), (String) columns[4], (String) columns[5]);
+
+        return ContactDetailsChanged.of(kind, (Long) columns[0], (String) columns[1], (String) columns[2], (String) columns[3]);
+    }
+
+    static String likePrefix(String prefix) {
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    static Set<String> termsOf(ContactDetailsChanged event) {
+
+        Set<String> terms = new HashSet<>();
+
+        String name = normalize(event.getName());
+        if (name.isEmpty() == false) {
+            //Every word suffix of the name, so "kumar" and "ravi kumar" both match "ravi kumar sharma"
+            String[] words = name.split(" ");
+            for (int i = 0; i < words.length; i++)
+                terms.add(String.join(" ", Arrays.asList(words).subList(i, words.length)));
+        }
+
+        String email = normalize(event.getEmail());
+        if (email.isEmpty() == false) {
+            terms.add(email);
+            int at = email.indexOf('@');
+            if (at > 0)
+                terms.add(email.substring(at + 1));
+        }
+
+        String phone = digitsOf(event.getPhoneNumber());
+        if (phone.isEmpty() == false) {
+            terms.add(phone);
+            //Allows searching without the country code
+            if (phone.length() > 10)
+                terms.add(phone.substring(phone.length() - 10));
+        }
+
+        terms.remove("");
+        return terms.stream()
+                .map(term -> term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term)
+                .collect(Collectors.toSet());
+    }
+
+    static String normalize(String value) {
+
+        if (null == value)
+            return "";
+
+        if (isPhoneLike(value))
+            return digitsOf(value);
+
+        return value.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    static boolean isPhoneLike(String value) {
+        return value.trim().matches("\\+?[0-9][0-9 ()-]*");
+    }
+
+    static String digitsOf(String value) {
+        return null == value ? "" : value.replaceAll("[^0-9]", "");
+    }
+
+    //Smallest edit distance between query and any prefix of term, gives up once it exceeds maxEdits
+    static int prefixDistance(String query, String term, int maxEdits) {
+
+        int[] previous = new int[term.length() + 1];
+        int[] current = new int[term.length() + 1];
+        for (int j = 0; j <= term.length(); j++)
+            previous[j] = j;
+
+        for (int i = 1; i <= query.length(); i++) {
+
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= term.length(); j++) {
+                int cost = query.charAt(i - 1) == term.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+
+            if (rowMin > maxEdits)
+                return rowMin;
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        int best = Integer.MAX_VALUE;
+        for (int distance : previous)
+            best = Math.min(best, distance);
+        return best;
+    }
+}
@@ -0,0 +1,16 @@
+package org.upgrad.upstac.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ContactSearchResult {
+
+    private List<TestRequestSummary> requests;
+    private List<UserSummary> users;
+}
@@ -0,0 +1,61 @@
+package org.upgrad.upstac.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.UserRepository;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class ContactSearchService {
+
+    static final int MAX_LIMIT = 100;
+
+    @Autowired
+    private ContactSearchIndex contactSearchIndex;
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+
+    @Transactional(readOnly = true)
+    public ContactSearchResult search(String query, int limit) {
+
+        if (null == query || query.trim().isEmpty())
+            throw new AppException("Search query cannot be empty");
+
+        if (contactSearchIndex.isEnabled() == false)
+            throw new AppException("Search is turned off");
+
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+        List<Long> requestIds = contactSearchIndex.search(ContactDetailsChanged.Kind.TEST_REQUEST, query, boundedLimit);
+        List<Long> userIds = contactSearchIndex.search(ContactDetailsChanged.Kind.USER, query, boundedLimit);
+
+        List<TestRequestSummary> requests = requestIds.isEmpty() ? Collections.emptyList()
+                : inRankOrder(requestIds, testRequestRepository.findSummariesByRequestIdIn(requestIds), TestRequestSummary::getRequestId);
+
+        List<UserSummary> users = new ArrayList<>();
+        if (userIds.isEmpty() == false)
+            userRepository.findAllById(userIds).forEach(user -> users.add(UserSummary.of(user.getId(), user.getUserName(), user.getFirstName(), user.getLastName())));
+
+        return new ContactSearchResult(requests, inRankOrder(userIds, users, UserSummary::getId));
+    }
+
+    //Database order is by id, put rows back in the order the index ranked them and drop ids that no longer exist
+    static <T> List<T> inRankOrder(List<Long> ids, List<T> rows, Function<T, Long> idOf) {
+
+        Map<Long, T> byId = rows.stream().collect(Collectors.toMap(idOf, Function.identity(), (first, second) -> first));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,30 @@
+package org.upgrad.upstac.search;
+
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
+
+import javax.persistence.*;
+
+//One searchable term of a test request or user, see ContactSearchIndex
+@Data
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_contact_term_kind_term_record", columnList = "kind,term,recordId"),
+        @Index(name = "idx_contact_term_kind_record", columnList = "kind,recordId")
+})
+public class ContactTerm {
+
+    @Id
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = "org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator")
+    private Long id;
+
+    private ContactDetailsChanged.Kind kind;
+
+    private String term;
+
+    //requestId or user id, depending on kind
+    private Long recordId;
+
+}
@@ -0,0 +1,26 @@
+package org.upgrad.upstac.search;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ContactTermRepository extends JpaRepository<ContactTerm, Long> {
+
+    @Modifying
+    @Query("delete from ContactTerm t where t.kind = :kind and t.recordId = :recordId")
+    int deleteByRecord(@Param("kind") ContactDetailsChanged.Kind kind, @Param("recordId") Long recordId);
+
+    //Range scans of idx_contact_term_kind_term_record in index order, LIKE wildcards in the prefix are escaped with '!'
+    @Query("select t.recordId from ContactTerm t where t.kind = :kind and t.term like :prefix escape '!' order by t.term, t.recordId")
+    List<Long> findRecordIdsByTermPrefix(@Param("kind") ContactDetailsChanged.Kind kind, @Param("prefix") String prefix, Pageable pageable);
+
+    @Query("select t.term, t.recordId from ContactTerm t where t.kind = :kind and t.term like :prefix escape '!' order by t.term, t.recordId")
+    List<Object[]> findTermsByPrefix(@Param("kind") ContactDetailsChanged.Kind kind, @Param("prefix") String prefix, Pageable pageable);
+
+}
@@ -0,0 +1,120 @@
+package org.upgrad.upstac.shared.fields;
+
+import org.upgrad.upstac.exception.AppException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fields a client may ask for with a fields= parameter, and the JPQL expression and joins behind each.
+ *
+ * Dotted names nest in the JSON ("labResult.result"), and a prefix selects every field under it ("labResult").
+ * Each distinct fields= value is compiled once into a {@link FieldSelection} and cached.
+ */
+public class FieldCatalog {
+
+    static final int MAX_CACHED_SELECTIONS = 256;
+
+    private final String entity;
+    private final String rootAlias;
+    private final String idPath;
+
+    private final Map<String, String> paths = new LinkedHashMap<>();
+    private final Map<String, String> joins = new LinkedHashMap<>();
+    private final Map<String, String> joinParents = new HashMap<>();
+
+    private final Map<String, FieldSelection> compiled = new ConcurrentHashMap<>();
+
+
+    public FieldCatalog(String entity, String rootAlias, String idPath) {
+        this.entity = entity;
+        this.rootAlias = rootAlias;
+        this.idPath = idPath;
+    }
+
+    //Joins must be declared after the join they depend on
+    public FieldCatalog join(String alias, String parentAlias, String path) {
+
+        joins.put(alias, "left join " + path + " " + alias);
+        if (rootAlias.equals(parentAlias) == false)
+            joinParents.put(alias, parentAlias);
+        return this;
+    }
+
+    public FieldCatalog field(String name, String path) {
+
+        paths.put(name, path);
+        return this;
+    }
+
+    public FieldSelection compile(String fields) {
+
+        String key = fields.trim();
+        FieldSelection selection = compiled.get(key);
+        if (null != selection)
+            return selection;
+
+        selection = compileUncached(key);
+        if (compiled.size() < MAX_CACHED_SELECTIONS)
+            compiled.putIfAbsent(key, selection);
+        return selection;
+    }
+
+    private FieldSelection compileUncached(String fields) {
+
+        Set<String> names = new LinkedHashSet<>();
+        for (String requested : fields.split(",")) {
+
+            String name = requested.trim();
+            if (name.isEmpty())
+                continue;
+
+            if (paths.containsKey(name)) {
+                names.add(name);
+                continue;
+            }
+
+            boolean matched = false;
+            for (String known : paths.keySet()) {
+                if (known.startsWith(name + ".")) {
+                    names.add(known);
+                    matched = true;
+                }
+            }
+            if (matched == false)
+                throw new AppException("Unknown field " + name);
+        }
+
+        if (names.isEmpty())
+            throw new AppException("No fields selected");
+
+        List<String> expressions = new ArrayList<>();
+        Set<String> aliases = new HashSet<>();
+        for (String name : names) {
+            String path = paths.get(name);
+            expressions.add(path);
+            aliases.add(path.substring(0, path.indexOf('.')));
+        }
+
+        return new FieldSelection(this, new ArrayList<>(names), String.join(", ", expressions), aliases);
+    }
+
+    String fromClause(Set<String> aliases) {
+
+        Set<String> required = new HashSet<>();
+        for (String alias : aliases)
+            for (String current = alias; null != current; current = joinParents.get(current))
+                required.add(current);
+
+        StringBuilder from = new StringBuilder("from ").append(entity).append(" ").append(rootAlias);
+        for (Map.Entry<String, String> join : joins.entrySet())
+            if (required.contains(join.getKey()))
+                from.append(" ").append(join.getValue());
+
+        return from.toString();
+    }
+
+    String getIdPath() {
+        return idPath;
+    }
+}
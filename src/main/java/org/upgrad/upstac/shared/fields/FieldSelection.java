@@ -0,0 +1,72 @@
+package org.upgrad.upstac.shared.fields;
+
+import java.util.*;
+
+/**
+ * A compiled fields= selection, see {@link FieldCatalog}.
+ *
+ * Queries built from it select the root id followed by the chosen columns, and rows are written
+ * as nested maps holding only those fields.
+ */
+public class FieldSelection {
+
+    private final FieldCatalog catalog;
+    private final List<String> names;
+    private final List<String[]> nameParts;
+    private final String selectList;
+    private final Set<String> aliases;
+
+
+    FieldSelection(FieldCatalog catalog, List<String> names, String selectList, Set<String> aliases) {
+        this.catalog = catalog;
+        this.names = Collections.unmodifiableList(names);
+        this.selectList = selectList;
+        this.aliases = aliases;
+
+        nameParts = new ArrayList<>(names.size());
+        for (String name : names)
+            nameParts.add(name.split("\\."));
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    //whereAliases are the joined aliases the where clause refers to
+    public String toJpql(String where, String orderBy, String... whereAliases) {
+
+        Set<String> required = new HashSet<>(aliases);
+        required.addAll(Arrays.asList(whereAliases));
+
+        StringBuilder jpql = new StringBuilder("select ")
+                .append(catalog.getIdPath()).append(", ").append(selectList)
+                .append(" ").append(catalog.fromClause(required));
+
+        if (null != where)
+            jpql.append(" where ").append(where);
+        if (null != orderBy)
+            jpql.append(" order by ").append(orderBy);
+
+        return jpql.toString();
+    }
+
+    public Long idOf(Object[] columns) {
+        return (Long) columns[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> toRow(Object[] columns) {
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < nameParts.size(); i++) {
+
+            String[] parts = nameParts.get(i);
+            Map<String, Object> target = row;
+            for (int depth = 0; depth < parts.length - 1; depth++)
+                target = (Map<String, Object>) target.computeIfAbsent(parts[depth], part -> new LinkedHashMap<String, Object>());
+
+            target.put(parts[parts.length - 1], columns[i + 1]);
+        }
+        return row;
+    }
+}
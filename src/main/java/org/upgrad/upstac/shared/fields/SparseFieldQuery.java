@@ -0,0 +1,45 @@
+package org.upgrad.upstac.shared.fields;
+
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+//Runs FieldSelection queries, the rows are plain columns and never enter the persistence context
+@Component
+public class SparseFieldQuery {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    public List<Object[]> list(FieldSelection fields, String where, Map<String, ?> parameters, String orderBy, String... whereAliases) {
+
+        return query(fields, where, parameters, orderBy, whereAliases).getResultList();
+    }
+
+    public List<Object[]> page(FieldSelection fields, String where, Map<String, ?> parameters, String orderBy, int offset, int size, String... whereAliases) {
+
+        return query(fields, where, parameters, orderBy, whereAliases)
+                .setFirstResult(offset)
+                .setMaxResults(size)
+                .getResultList();
+    }
+
+    public List<Object[]> list(FieldSelection fields, String where, String name, Object value, String... whereAliases) {
+
+        return list(fields, where, Collections.singletonMap(name, value), null, whereAliases);
+    }
+
+    private TypedQuery<Object[]> query(FieldSelection fields, String where, Map<String, ?> parameters, String orderBy, String... whereAliases) {
+
+        TypedQuery<Object[]> query = entityManager.createQuery(fields.toJpql(where, orderBy, whereAliases), Object[].class);
+        for (Map.Entry<String, ?> parameter : parameters.entrySet())
+            query.setParameter(parameter.getKey(), parameter.getValue());
+        return query;
+    }
+}
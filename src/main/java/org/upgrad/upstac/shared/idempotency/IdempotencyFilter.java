@@ -0,0 +1,147 @@
+package org.upgrad.upstac.shared.idempotency;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Honours the Idempotency-Key header on the create and transition endpoints listed in upstac.idempotency.paths.
+ *
+ * The first request with a key runs as usual and its 2xx response is kept in the IdempotencyStore; a retry with
+ * the same key from the same user gets that response back without reaching the controller. Error responses are
+ * not kept, so a retry after a failure runs again. Runs after the security filters, keys are scoped per user.
+ *
+ * The fingerprint a key is bound to covers the method, the path and a SHA-256 of the body, so reusing a key with a
+ * different body is refused with 422 instead of replaying the response of the first body.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private static final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Value("${upstac.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${upstac.idempotency.paths:/api/testrequests,/api/testrequests/batch,/api/testrequests/intake,/api/labrequests/**,/api/consultations/**}")
+    private List<String> paths;
+
+    @Value("${upstac.idempotency.max-body-bytes:65536}")
+    private int maxBodyBytes;
+
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+
+        if (enabled == false || null == request.getHeader(HEADER))
+            return true;
+        if ("POST".equals(request.getMethod()) == false && "PUT".equals(request.getMethod()) == false)
+            return true;
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        String header = request.getHeader(HEADER);
+        if (header.isEmpty() || header.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request, StreamUtils.copyToByteArray(request.getInputStream()));
+        String key = userOf() + "\n" + header;
+        String fingerprint = fingerprintOf(request.getMethod(), request.getRequestURI(), cachedRequest.getBody());
+
+        StoredResponse existing = idempotencyStore.claim(key, fingerprint);
+        if (null != existing) {
+            if (existing.getFingerprint().equals(fingerprint) == false)
+                response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), HEADER + " was already used for another request");
+            else if (existing.isCompleted() == false)
+                response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + HEADER + " is still in progress");
+            else
+                replay(existing, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean kept = false;
+        try {
+            filterChain.doFilter(cachedRequest, wrapper);
+            kept = keep(key, wrapper);
+        } finally {
+            if (kept == false)
+                idempotencyStore.release(key);
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private boolean keep(String key, ContentCachingResponseWrapper wrapper) {
+
+        int status = wrapper.getStatus();
+        if (status < 200 || status >= 300 || wrapper.getContentSize() > maxBodyBytes)
+            return false;
+
+        return idempotencyStore.complete(key, status, headersOf(wrapper), wrapper.getContentAsByteArray());
+    }
+
+    static String fingerprintOf(String method, String uri, byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return method + " " + uri + " " + Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void replay(StoredResponse stored, HttpServletResponse response) throws IOException {
+
+        response.setStatus(stored.getStatus());
+        stored.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private static Map<String, List<String>> headersOf(HttpServletResponse response) {
+
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : new LinkedHashSet<>(response.getHeaderNames()))
+            if ("Content-Length".equalsIgnoreCase(name) == false)
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+        if (null != response.getContentType())
+            headers.put("Content-Type", Collections.singletonList(response.getContentType()));
+        return headers;
+    }
+
+    private static String userOf() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return null == authentication ? "" : authentication.getName();
+    }
+}
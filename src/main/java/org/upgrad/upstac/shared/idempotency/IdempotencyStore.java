@@ -0,0 +1,79 @@
+package org.upgrad.upstac.shared.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU of responses by idempotency key, entries expire ttl-minutes after the first request started.
+ *
+ * A key is claimed before its request runs, so a retry that arrives while the first attempt is still running
+ * finds it in progress instead of running the request a second time.
+ */
+@Component
+public class IdempotencyStore {
+
+    @Value("${upstac.idempotency.ttl-minutes:60}")
+    private long ttlInMinutes;
+
+    @Value("${upstac.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    private Map<String, StoredResponse> entries;
+
+
+    @PostConstruct
+    void init() {
+        entries = Collections.synchronizedMap(new LinkedHashMap<String, StoredResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > maxEntries || eldest.getValue().getExpiresAt() < System.currentTimeMillis();
+            }
+        });
+    }
+
+    //Returns null when the key was claimed for this request, otherwise the entry already holding it
+    public StoredResponse claim(String key, String fingerprint) {
+
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            StoredResponse existing = entries.get(key);
+            if (null != existing && existing.getExpiresAt() >= now)
+                return existing;
+
+            entries.put(key, new StoredResponse(fingerprint, now + ttlInMinutes * 60_000));
+            return null;
+        }
+    }
+
+    //Returns false when the claim expired or was evicted while the request ran
+    public boolean complete(String key, int status, Map<String, List<String>> headers, byte[] body) {
+
+        synchronized (entries) {
+            StoredResponse claimed = entries.get(key);
+            if (null == claimed || claimed.isCompleted())
+                return false;
+
+            StoredResponse response = new StoredResponse(claimed.getFingerprint(), claimed.getExpiresAt());
+            response.setStatus(status);
+            response.setHeaders(headers);
+            response.setBody(body);
+            entries.put(key, response);
+            return true;
+        }
+    }
+
+    //Frees the key so the request can be retried, used when it failed or its response is not kept
+    public void release(String key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,22 @@
+package org.upgrad.upstac.shared.idempotency;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+//A completed response kept for replay, body is null while the first request is still running
+@Data
+public class StoredResponse {
+
+    private final String fingerprint;
+    private final long expiresAt;
+
+    private int status;
+    private Map<String, List<String>> headers;
+    private byte[] body;
+
+    public boolean isCompleted() {
+        return null != body;
+    }
+}
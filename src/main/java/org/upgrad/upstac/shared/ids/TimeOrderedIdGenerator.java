@@ -0,0 +1,35 @@
+package org.upgrad.upstac.shared.ids;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+
+//Hibernate side of TimeOrderedIds, the node id and state file come from spring.jpa.properties.upstac.id.* and must be set
+public class TimeOrderedIdGenerator implements IdentifierGenerator, Configurable {
+
+    public static final String NAME = "time-ordered";
+    public static final String NODE_ID_SETTING = "upstac.id.node-id";
+    public static final String STATE_FILE_SETTING = "upstac.id.state-file";
+
+    private TimeOrderedIds ids;
+
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+
+        Map settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        ids = TimeOrderedIds.forNode(TimeOrderedIds.nodeIdOf(settings.get(NODE_ID_SETTING)), TimeOrderedIds.stateFileOf(settings.get(STATE_FILE_SETTING)));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return ids.next();
+    }
+}
@@ -0,0 +1,138 @@
+package org.upgrad.upstac.shared.ids;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Time ordered ids generated in the application, so Hibernate can batch inserts instead of waiting on IDENTITY.
+ *
+ * An id is 41 bits of milliseconds since 2020-01-01, 5 bits of node id and 7 bits of sequence. That fits in 53
+ * bits, so ids stay exact as JSON numbers in browsers, and is unique across up to 32 nodes as long as each runs
+ * with its own node id. There is no default node id: a node started without one would silently share node 0 with
+ * the others, so startup fails instead (see nodeIdOf). Ids from one node always increase: when the clock goes back or a millisecond runs out of
+ * sequence numbers the generator moves on to the next millisecond rather than waiting. Ids are far above the
+ * IDENTITY values already in the tables, so ordering by id still follows creation.
+ *
+ * That also holds across restarts. Before handing out an id past its high-water mark the generator moves the
+ * mark RESERVE_MILLIS ahead and syncs it to the node's state file, and a restarted generator continues after
+ * the stored mark. A clock that went back while the node was down, or a crash, cannot repeat an id.
+ */
+public final class TimeOrderedIds {
+
+    static final long EPOCH_MILLIS = 1577836800000L;
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final long MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+    static final long RESERVE_MILLIS = 5_000;
+
+    private static final Map<Integer, TimeOrderedIds> byNodeId = new ConcurrentHashMap<>();
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    //null keeps no high-water mark, only for tests
+    private final Path stateFile;
+
+    private long lastMillis = -1;
+    private long sequence;
+    private long reservedUntil = -1;
+
+
+    TimeOrderedIds(int nodeId, LongSupplier clock) {
+        this(nodeId, clock, null);
+    }
+
+    TimeOrderedIds(int nodeId, LongSupplier clock, Path stateFile) {
+
+        if (nodeId < 0 || nodeId > MAX_NODE_ID)
+            throw new IllegalArgumentException("Node id should be between 0 and " + MAX_NODE_ID + ", was " + nodeId);
+
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.stateFile = stateFile;
+
+        //Any id up to the stored mark may have been handed out, the next one starts a millisecond after it
+        if (null != stateFile && Files.exists(stateFile)) {
+            reservedUntil = readReserved(stateFile);
+            lastMillis = reservedUntil;
+            sequence = MAX_SEQUENCE;
+        }
+    }
+
+    //Parses spring.jpa.properties.upstac.id.node-id (UPSTAC_NODE_ID), which every node must set to its own value
+    public static int nodeIdOf(Object setting) {
+
+        String value = null == setting ? "" : setting.toString().trim();
+        if (value.matches("[0-9]{1,2}") == false || Integer.parseInt(value) > MAX_NODE_ID)
+            throw new IllegalStateException("Set UPSTAC_NODE_ID (spring.jpa.properties.upstac.id.node-id) to a number between 0 and "
+                    + MAX_NODE_ID + " that no other node uses, was '" + value + "'");
+
+        return Integer.parseInt(value);
+    }
+
+    //Parses spring.jpa.properties.upstac.id.state-file (UPSTAC_ID_STATE_FILE), which every node must set to a file of its own
+    public static Path stateFileOf(Object setting) {
+
+        String value = null == setting ? "" : setting.toString().trim();
+        if (value.isEmpty() || value.startsWith("${"))
+            throw new IllegalStateException("Set UPSTAC_ID_STATE_FILE (spring.jpa.properties.upstac.id.state-file) to a file of this node "
+                    + "on storage that survives restarts, was '" + value + "'");
+
+        return Paths.get(value);
+    }
+
+    //One generator per node id, shared by every entity, the write-behind flow writer and intake tickets
+    public static TimeOrderedIds forNode(int nodeId, Path stateFile) {
+        return byNodeId.computeIfAbsent(nodeId, id -> new TimeOrderedIds(id, System::currentTimeMillis, stateFile));
+    }
+
+    public synchronized long next() {
+
+        long now = clock.getAsLong() - EPOCH_MILLIS;
+
+        if (now > lastMillis) {
+            lastMillis = now;
+            sequence = 0;
+        } else if (++sequence > MAX_SEQUENCE) {
+            lastMillis++;
+            sequence = 0;
+        }
+
+        if (null != stateFile && lastMillis > reservedUntil)
+            reserve(lastMillis + RESERVE_MILLIS);
+
+        return (lastMillis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    //Written next to the state file and moved over it, so a crash leaves either the old or the new mark
+    private void reserve(long millis) {
+
+        Path written = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try {
+            Files.write(written, Long.toString(millis).getBytes(StandardCharsets.US_ASCII),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+            Files.move(written, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not keep the id high-water mark in " + stateFile, e);
+        }
+        reservedUntil = millis;
+    }
+
+    private static long readReserved(Path stateFile) {
+
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(stateFile), StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Could not read the id high-water mark in " + stateFile, e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.upgrad.upstac.shared.scheduling;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.Instant;
+
+//Row per scheduled job that must run on one node at a time, see SchedulerLocks
+@Data
+@Entity
+public class SchedulerLock {
+
+    @Id
+    private String name;
+
+    private Instant lockedUntil;
+
+    private String lockedBy;
+
+}
@@ -0,0 +1,59 @@
+package org.upgrad.upstac.shared.scheduling;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Database leases that keep a scheduled job on one node. The node holding a lease extends it on
+ * every run; if that node stops, another node takes the job over once the lease has expired.
+ */
+@Component
+public class SchedulerLocks {
+
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    @Autowired
+    private SchedulerLockRepository schedulerLockRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+
+    public boolean tryAcquire(String name, Duration holdFor) {
+
+        Instant now = Instant.now();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        if (transactionTemplate.execute(status -> schedulerLockRepository.acquire(name, owner, now, now.plus(holdFor))) > 0)
+            return true;
+
+        try {
+            return transactionTemplate.execute(status -> {
+                if (schedulerLockRepository.existsById(name))
+                    return false;
+
+                SchedulerLock lock = new SchedulerLock();
+                lock.setName(name);
+                lock.setLockedBy(owner);
+                lock.setLockedUntil(now.plus(holdFor));
+                schedulerLockRepository.saveAndFlush(lock);
+                return true;
+            });
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+}
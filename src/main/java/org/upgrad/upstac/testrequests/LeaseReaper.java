@@ -0,0 +1,53 @@
+package org.upgrad.upstac.testrequests;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.upgrad.upstac.shared.scheduling.SchedulerLocks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+//Runs on one node at a time, the node holding the lease-reaper lock keeps it while it keeps running
+@Component
+public class LeaseReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaseReaper.class);
+
+    @Autowired
+    private TestRequestUpdateService testRequestUpdateService;
+
+    @Autowired
+    private SchedulerLocks schedulerLocks;
+
+    @Value("${upstac.lease.reaper-batch-size:100}")
+    private int batchSize;
+
+    @Value("${upstac.lease.reaper-interval-ms:60000}")
+    private long intervalInMillis;
+
+
+    @Scheduled(fixedDelayString = "${upstac.lease.reaper-interval-ms:60000}")
+    public void reapExpiredLeases() {
+
+        //Held for two intervals, so another node takes over only after this one missed a run
+        if (schedulerLocks.tryAcquire("lease-reaper", Duration.ofMillis(2 * intervalInMillis)) == false)
+            return;
+
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        int reaped;
+
+        do {
+            reaped = testRequestUpdateService.expireLeases(now, batchSize);
+            total += reaped;
+        } while (reaped == batchSize);
+
+        if (total > 0)
+            logger.info("returned {} requests with expired leases to their queues", total);
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.upgrad.upstac.testrequests;
+
+import org.upgrad.upstac.testrequests.lab.LabResult;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+
+import java.time.Instant;
+
+/**
+ * Computes the priority key used to order the lab and consultation queues.
+ *
+ * The key is the time a request joined its queue, moved earlier by a clinical boost.
+ * Queues are served in ascending key order, so urgent cases go first, and because the
+ * boost is capped at {@link #MAX_BOOST_SECONDS} a request that has waited longer than
+ * that is ahead of every newer arrival, which keeps low risk cases from starving.
+ */
+public class QueuePriority {
+
+    static final long MAX_BOOST_SECONDS = 6 * 60 * 60;
+
+    static final long HOUR = 60 * 60;
+
+
+    public static long priorityKeyFor(TestRequest testRequest, Instant enqueuedAt) {
+
+        return enqueuedAt.getEpochSecond() - clinicalBoostSeconds(testRequest);
+    }
+
+    static long clinicalBoostSeconds(TestRequest testRequest) {
+
+        long boost = 0;
+
+        Integer age = testRequest.getAge();
+        if (null != age && age >= 70)
+            boost += 2 * HOUR;
+        else if (null != age && age >= 60)
+            boost += HOUR;
+
+        LabResult labResult = testRequest.getLabResult();
+        if (null != labResult) {
+
+            if (labResult.getResult() == TestStatus.POSITIVE)
+                boost += 3 * HOUR;
+
+            Integer oxygenLevel = parseOxygenLevel(labResult.getOxygenLevel());
+            if (null != oxygenLevel && oxygenLevel < 90)
+                boost += 2 * HOUR;
+            else if (null != oxygenLevel && oxygenLevel < 94)
+                boost += HOUR;
+        }
+
+        return Math.min(boost, MAX_BOOST_SECONDS);
+    }
+
+    static Integer parseOxygenLevel(String oxygenLevel) {
+
+        if (null == oxygenLevel)
+            return null;
+
+        try {
+            return (int) Double.parseDouble(oxygenLevel.replace("%", "").trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
@@ -1,21 +1,38 @@
 package org.upgrad.upstac.testrequests;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
 import org.upgrad.upstac.testrequests.consultation.Consultation;
 import org.upgrad.upstac.testrequests.lab.LabResult;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.models.Gender;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_test_request_status_priority", columnList = "status,priorityKey"),
+        @Index(name = "idx_test_request_pin_status_priority", columnList = "pinCode,status,priorityKey"),
+        @Index(name = "idx_test_request_lease", columnList = "leaseExpiresAt"),
+        @Index(name = "idx_test_request_created", columnList = "created,requestId"),
+        @Index(name = "idx_test_request_status_id", columnList = "status,requestId"),
+        @Index(name = "idx_test_request_status_created_id", columnList = "status,created,requestId"),
+        @Index(name = "idx_test_request_pin_id", columnList = "pinCode,requestId"),
+        @Index(name = "idx_test_request_email", columnList = "email"),
+        @Index(name = "idx_test_request_phone", columnList = "phoneNumber")
+})
 public class TestRequest {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = "org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator")
     Long requestId;
 
     @ManyToOne
@@ -23,8 +40,14 @@ public class TestRequest {
 
     private LocalDate created=LocalDate.now();
 
+    //Start of the turnaround time, created only has the day
+    private Instant createdAt = Instant.now();
+
     private RequestStatus status = RequestStatus.INITIATED;
 
+    //When status was last changed, null until then and for requests last changed before it was kept
+    private Instant statusChangedAt;
+
 
     private String name;
     private Gender gender;
@@ -34,10 +57,30 @@ public class TestRequest {
     private String phoneNumber;
     private Integer pinCode;
 
-    @OneToOne(mappedBy="request")
+    //Queue ordering key, see QueuePriority
+    private Long priorityKey;
+
+    //Set while a tester or doctor holds the request, the lease reaper returns it to the queue after this
+    private LocalDateTime leaseExpiresAt;
+
+    //Ticket of the intake submission that created the request, lets a replayed submission find it instead of creating it again
+    @JsonIgnore
+    @Column(unique = true)
+    private Long intakeTicket;
+
+    //Transitions and the lease reaper fail instead of overwriting each other, rows added before this column start at 0
+    @Version
+    @JsonIgnore
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
+    //Owning foreign keys keep both associations lazy, LabResult and Consultation have no reference back
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "consultation_id")
     Consultation consultation;
 
-    @OneToOne(mappedBy="request")
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lab_result_id")
     LabResult labResult;
 
 }
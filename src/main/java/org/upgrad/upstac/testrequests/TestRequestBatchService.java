@@ -0,0 +1,181 @@
+package org.upgrad.upstac.testrequests;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.search.ContactDetailsChanged;
+import org.upgrad.upstac.testrequests.feed.TestRequestStatusChanged;
+import org.upgrad.upstac.testrequests.models.BatchCreateResult;
+import org.upgrad.upstac.testrequests.models.BatchItemResult;
+import org.upgrad.upstac.users.User;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the requests registered at a collection camp in one call.
+ *
+ * The in-progress check of TestRequestService runs once for the whole batch, and items repeating the contact
+ * details of an earlier item fail as they would when submitted one by one. Accepted items are inserted in chunks,
+ * each in its own transaction; a chunk that fails is retried item by item so one bad row only fails itself.
+ */
+@Service
+public class TestRequestBatchService {
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    static final String ALREADY_IN_PROGRESS = "A Request with same PhoneNumber or Email is already in progress ";
+
+    private static final Logger logger = LoggerFactory.getLogger(TestRequestBatchService.class);
+
+    //Never matches a stored value, keeps the in clauses non empty
+    private static final String NO_VALUE = "\u0000";
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${upstac.batch-create.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${upstac.batch-create.lookup-size:500}")
+    private int lookupSize;
+
+
+    public BatchCreateResult createTestRequestsFrom(User user, List<CreateTestRequest> createTestRequests) {
+        return createTestRequestsFrom(user, createTestRequests, null);
+    }
+
+    /**
+     * As createTestRequestsFrom, storing intakeTickets.get(i) on the request created for item i. The unique
+     * ticket column turns a second create of the same intake submission into a failed item.
+     */
+    public BatchCreateResult createTestRequestsFrom(User user, List<CreateTestRequest> createTestRequests, List<Long> intakeTickets) {
+
+        if (null == createTestRequests || createTestRequests.isEmpty())
+            throw new AppException("No requests to create");
+        if (createTestRequests.size() > MAX_BATCH_SIZE)
+            throw new AppException("At most " + MAX_BATCH_SIZE + " requests can be created at once");
+        if (null != intakeTickets && intakeTickets.size() != createTestRequests.size())
+            throw new AppException("One intake ticket is needed per request");
+
+        BatchItemResult[] results = new BatchItemResult[createTestRequests.size()];
+        //Read-write so the check reads the primary when replicas are routed
+        Set<String> inProgress = new TransactionTemplate(transactionManager).execute(status -> contactsInProgress(createTestRequests));
+        Set<String> seen = new HashSet<>();
+        List<Integer> accepted = new ArrayList<>();
+
+        for (int index = 0; index < createTestRequests.size(); index++) {
+
+            CreateTestRequest createTestRequest = createTestRequests.get(index);
+            if (null == createTestRequest) {
+                results[index] = BatchItemResult.failed(index, "Empty request");
+                continue;
+            }
+
+            List<String> contacts = contactsOf(createTestRequest.getEmail(), createTestRequest.getPhoneNumber());
+            if (contacts.stream().anyMatch(contact -> inProgress.contains(contact) || seen.contains(contact))) {
+                results[index] = BatchItemResult.failed(index, ALREADY_IN_PROGRESS);
+                continue;
+            }
+
+            seen.addAll(contacts);
+            accepted.add(index);
+        }
+
+        for (int from = 0; from < accepted.size(); from += chunkSize)
+            insert(user, createTestRequests, intakeTickets, accepted.subList(from, Math.min(from + chunkSize, accepted.size())), results);
+
+        return BatchCreateResult.of(results);
+    }
+
+    private Set<String> contactsInProgress(List<CreateTestRequest> createTestRequests) {
+
+        List<CreateTestRequest> present = createTestRequests.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        Set<String> contacts = new HashSet<>();
+
+        for (int from = 0; from < present.size(); from += lookupSize) {
+
+            List<CreateTestRequest> chunk = present.subList(from, Math.min(from + lookupSize, present.size()));
+            Set<String> emails = valuesOf(chunk, CreateTestRequest::getEmail);
+            Set<String> phoneNumbers = valuesOf(chunk, CreateTestRequest::getPhoneNumber);
+
+            for (Object[] columns : testRequestRepository.findContactsInProgress(emails, phoneNumbers, RequestStatus.COMPLETED))
+                contacts.addAll(contactsOf((String) columns[0], (String) columns[1]));
+        }
+        return contacts;
+    }
+
+    private void insert(User user, List<CreateTestRequest> createTestRequests, List<Long> intakeTickets, List<Integer> indexes, BatchItemResult[] results) {
+
+        try {
+            List<Long> requestIds = saveAndPublish(user, createTestRequests, intakeTickets, indexes);
+            for (int i = 0; i < indexes.size(); i++)
+                results[indexes.get(i)] = BatchItemResult.created(indexes.get(i), requestIds.get(i));
+        } catch (RuntimeException e) {
+            if (indexes.size() > 1) {
+                logger.warn("batch chunk of {} requests failed, retrying them one by one", indexes.size(), e);
+                for (Integer index : indexes)
+                    insert(user, createTestRequests, intakeTickets, Collections.singletonList(index), results);
+            } else {
+                logger.warn("could not create request at index {}", indexes.get(0), e);
+                results[indexes.get(0)] = BatchItemResult.failed(indexes.get(0), "Could not save request");
+            }
+        }
+    }
+
+    //Events are published inside the chunk's transaction so listeners only see committed requests
+    private List<Long> saveAndPublish(User user, List<CreateTestRequest> createTestRequests, List<Long> intakeTickets, List<Integer> indexes) {
+
+        return new TransactionTemplate(transactionManager).execute(status -> {
+
+            List<TestRequest> testRequests = new ArrayList<>(indexes.size());
+            for (Integer index : indexes) {
+                TestRequest testRequest = TestRequestService.newTestRequestFrom(user, createTestRequests.get(index));
+                if (null != intakeTickets)
+                    testRequest.setIntakeTicket(intakeTickets.get(index));
+                testRequests.add(testRequest);
+            }
+
+            testRequestRepository.saveAll(testRequests);
+            testRequestRepository.flush();
+
+            for (TestRequest testRequest : testRequests) {
+                applicationEventPublisher.publishEvent(TestRequestStatusChanged.from(testRequest, null));
+                applicationEventPublisher.publishEvent(ContactDetailsChanged.of(testRequest));
+            }
+            return testRequests.stream().map(TestRequest::getRequestId).collect(Collectors.toList());
+        });
+    }
+
+    private static Set<String> valuesOf(List<CreateTestRequest> createTestRequests, Function<CreateTestRequest, String> getter) {
+
+        Set<String> values = createTestRequests.stream().map(getter).filter(Objects::nonNull).collect(Collectors.toSet());
+        if (values.isEmpty())
+            values.add(NO_VALUE);
+        return values;
+    }
+
+    //Emails and phone numbers share one set, prefixed so an email never matches a phone number
+    private static List<String> contactsOf(String email, String phoneNumber) {
+
+        List<String> contacts = new ArrayList<>(2);
+        if (null != email)
+            contacts.add("e:" + email);
+        if (null != phoneNumber)
+            contacts.add("p:" + phoneNumber);
+        return contacts;
+    }
+}
@@ -1,20 +1,36 @@
 package org.upgrad.upstac.testrequests;
 
 
+import io.swagger.annotations.ApiImplicitParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.upgrad.upstac.config.security.UserLoggedInService;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.DeadlineExceededException;
+import org.upgrad.upstac.testrequests.completed.CompletedResponseService;
+import org.upgrad.upstac.testrequests.detail.TestRequestDetailService;
+import org.upgrad.upstac.testrequests.models.BatchCreateResult;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+import org.upgrad.upstac.testrequests.models.TestRequestFields;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.testrequests.versions.ListVersions;
 import org.upgrad.upstac.users.User;
+import springfox.documentation.annotations.ApiIgnore;
 
 import java.util.List;
 
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asGatewayTimeout;
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asNotFound;
 
 
 @RestController
@@ -32,6 +48,18 @@ public class TestRequestController {
     @Autowired
     private TestRequestQueryService testRequestQueryService;
 
+    @Autowired
+    private ListVersions listVersions;
+
+    @Autowired
+    private CompletedResponseService completedResponseService;
+
+    @Autowired
+    private TestRequestDetailService testRequestDetailService;
+
+    @Autowired
+    private TestRequestBatchService testRequestBatchService;
+
 
     @PostMapping("/api/testrequests")
     public TestRequest createRequest(@RequestBody CreateTestRequest testRequest) {
@@ -44,14 +72,107 @@ public class TestRequestController {
         }
 
     }
+    //Collection camps register many people at once, each item succeeds or fails on its own
+    @PostMapping("/api/testrequests/batch")
+    public BatchCreateResult createRequests(@RequestBody List<CreateTestRequest> testRequests) {
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return testRequestBatchService.createTestRequestsFrom(user, testRequests);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
     @PreAuthorize("hasAnyRole('USER')")
     @GetMapping("/api/testrequests")
-    public List<TestRequest> requestHistory() {
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
+    public ResponseEntity<List<TestRequestSummary>> requestHistory(WebRequest webRequest) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.history(user), webRequest)))
+                return null;
+            if (acceptsJson(webRequest) == false)
+                return ResponseEntity.ok(testRequestService.getHistoryFor(user));
+            return asJson(completedResponseService.historyFor(user));
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
 
-        User user = userLoggedInService.getLoggedInUser();
-        return testRequestService.getHistoryFor(user);
 
+    }
+
+    //Same history with only the requested fields of each request
+    @PreAuthorize("hasAnyRole('USER')")
+    @ApiIgnore
+    @GetMapping(value = "/api/testrequests", params = "fields")
+    public ResponseEntity<?> requestHistoryFields(@RequestParam String fields, WebRequest webRequest) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.history(user), webRequest)))
+                return null;
+            return ResponseEntity.ok(testRequestQueryService.findByUser(user, TestRequestFields.CATALOG.compile(fields)));
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/testrequests/{id}")
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
+    public ResponseEntity<TestRequestSummary> getRequest(@PathVariable Long id, WebRequest webRequest) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            if (acceptsJson(webRequest) == false)
+                return ResponseEntity.ok(testRequestQueryService.findSummaryForUserByID(user, id)
+                        .orElseThrow(() -> asNotFound("Invalid ID")));
+            return asJson(completedResponseService.detailFor(user, id)
+                    .orElseThrow(() -> asNotFound("Invalid ID")));
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+    @ApiIgnore
+    @GetMapping(value = "/api/testrequests/{id}", params = "fields")
+    public ResponseEntity<?> getRequestFields(@PathVariable Long id, @RequestParam String fields) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return ResponseEntity.ok(testRequestQueryService.findTestRequestForUserByID(user, id, TestRequestFields.CATALOG.compile(fields))
+                    .orElseThrow(() -> asNotFound("Invalid ID")));
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/testrequests/{id}/full")
+    public TestRequestDetail getRequestDetail(@PathVariable Long id) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return testRequestDetailService.findDetailForUserByID(user, id)
+                    .orElseThrow(() -> asNotFound("Invalid ID"));
+        } catch (DeadlineExceededException e) {
+            throw asGatewayTimeout(e.getMessage());
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+    //Pre-encoded JSON bodies are only used when the client did not ask for CBOR
+    private boolean acceptsJson(WebRequest webRequest) {
+        String accept = webRequest.getHeader(HttpHeaders.ACCEPT);
+        return null == accept || accept.contains(MediaType.APPLICATION_CBOR_VALUE) == false;
+    }
 
+    //The bytes are the JSON encoding of T, typed as T so the API docs describe the real body
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> asJson(byte[] json) {
+        return (ResponseEntity<T>) (ResponseEntity<?>) ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json);
     }
 
 
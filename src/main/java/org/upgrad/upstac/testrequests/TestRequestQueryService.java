@@ -3,36 +3,48 @@ package org.upgrad.upstac.testrequests;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
+import org.upgrad.upstac.config.datasource.UseWorkload;
+import org.upgrad.upstac.config.datasource.Workload;
 import org.upgrad.upstac.exception.AppException;
-import org.upgrad.upstac.testrequests.consultation.Consultation;
-import org.upgrad.upstac.testrequests.consultation.ConsultationRepository;
-import org.upgrad.upstac.testrequests.lab.LabResult;
-import org.upgrad.upstac.testrequests.lab.LabResultRepository;
+import org.upgrad.upstac.shared.fields.FieldSelection;
+import org.upgrad.upstac.shared.fields.SparseFieldQuery;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.testrequests.queue.QueueIndex;
 import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.roles.UserRole;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
+@UseWorkload(Workload.INTERACTIVE)
 @Service
 @Validated
+@Transactional(readOnly = true)
 public class TestRequestQueryService {
 
     @Autowired
     private TestRequestRepository testRequestRepository;
 
-
     @Autowired
-    private LabResultRepository labResultRepository;
-
+    private QueueIndex queueIndex;
 
     @Autowired
-    private ConsultationRepository consultationRepository;
+    private SparseFieldQuery sparseFieldQuery;
+
+    static final int DEFAULT_PAGE_SIZE = 50;
 
     private static Logger logger = LoggerFactory.getLogger(TestRequestQueryService.class);
 
+    //Queue entries are (requestId, priorityKey) pairs, ties on the key go to the older id as in the repository queries
+    private static final Comparator<Object[]> ENTRY_BY_PRIORITY = Comparator.<Object[], Long>comparing(entry -> (Long) entry[1], Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+            .thenComparing(entry -> (Long) entry[0]);
+
+    private static final Comparator<TestRequestSummary> SUMMARY_BY_PRIORITY = Comparator.comparing(TestRequestSummary::getPriorityKey, Comparator.nullsFirst(Comparator.<Long>naturalOrder()));
+
 
     public List<TestRequest> findAll() {
 
@@ -49,80 +61,305 @@ public class TestRequestQueryService {
 
 
     public List<TestRequest> findBy(RequestStatus requestStatus) {
-        return testRequestRepository.findByStatus(requestStatus);
+        return testRequestRepository.findByStatusOrderByPriorityKeyAsc(requestStatus);
 
     }
 
+    public List<TestRequestSummary> findSummariesBy(RequestStatus requestStatus, Set<Integer> pinCodes) {
 
+        if (pinCodes.isEmpty())
+            return testRequestRepository.findSummariesByStatus(requestStatus);
 
-    public List<TestRequest> findByTester(User user) {
+        List<TestRequestSummary> local = testRequestRepository.findSummariesByPinCodeInAndStatus(pinCodes, requestStatus);
+        if (local.isEmpty() == false)
+            return local;
 
-        return  labResultRepository.findByTester(user)
-                .stream()
-                .map(LabResult::getRequest)
-                .collect(Collectors.toList());
+        return findInNeighbouringPinCodes(requestStatus, pinCodes);
+    }
+
+    //One page of queued request ids in claim order, local pin codes first and the neighbouring districts once those are empty
+    public List<Long> findQueueCandidates(RequestStatus requestStatus, Set<Integer> pinCodes, int page, int size) {
 
+        if (pinCodes.isEmpty())
+            return idsOf(testRequestRepository.findQueuedEntries(requestStatus, PageRequest.of(page, size)));
+
+        if (testRequestRepository.existsByPinCodeInAndStatus(pinCodes, requestStatus))
+            return idsOf(testRequestRepository.findQueuedEntriesByPinCodeIn(pinCodes, requestStatus, PageRequest.of(page, size)));
+
+        List<Object[]> merged = new ArrayList<>();
+        for (Integer district : districtsOf(pinCodes))
+            merged.addAll(testRequestRepository.findQueuedEntriesByPinCodeBetween(district * 1000, district * 1000 + 999, requestStatus, PageRequest.of(0, (page + 1) * size)));
+
+        merged.sort(ENTRY_BY_PRIORITY);
+        int from = Math.min(merged.size(), page * size);
+        return idsOf(merged.subList(from, Math.min(merged.size(), from + size)));
     }
 
-    public List<TestRequest> findByDoctor(User user) {
-        return  consultationRepository.findByDoctor(user)
-                .stream()
-                .map(Consultation::getRequest)
-                .collect(Collectors.toList());
+    private static List<Long> idsOf(List<Object[]> entries) {
+        return entries.stream().map(entry -> (Long) entry[0]).collect(Collectors.toList());
     }
 
+    //Work stealing : neighbouring pin codes share the first three digits (the sorting district)
+    List<TestRequestSummary> findInNeighbouringPinCodes(RequestStatus requestStatus, Set<Integer> pinCodes) {
 
-    public Optional<TestRequest> findTestRequestForUserByID(User user,Long id) {
+        List<TestRequestSummary> result = new ArrayList<>();
+        for (Integer district : districtsOf(pinCodes))
+            result.addAll(testRequestRepository.findSummariesByPinCodeBetweenAndStatus(district * 1000, district * 1000 + 999, requestStatus));
+
+        result.sort(SUMMARY_BY_PRIORITY);
+        return result;
+    }
 
+    //The whole queue when the client gives neither page nor size, otherwise one page of it
+    public List<TestRequestSummary> findQueue(RequestStatus requestStatus, Set<Integer> pinCodes, Integer page, Integer size) {
 
-        logger.info("findTestRequestForUserByID" + user.getRoles().toString());
+        if (null == page && null == size)
+            return findSummariesBy(requestStatus, pinCodes);
 
-        if(user.doesRoleIsUser())
-            return  findByUserAndID(user,id);
-        else if(user.doesRoleIsTester())
-            return findByTesterAndID(user,id);
-        else if(user.doesRoleIsDoctor())
-            return findByDoctorAndID(user,id);
-        else if(user.doesRoleIsAuthority())
-            return testRequestRepository.findByRequestId(id);
+        return findPage(requestStatus, pinCodes, null != page ? page : 0, null != size ? size : DEFAULT_PAGE_SIZE);
+    }
+
+    public List<Map<String, Object>> findQueue(RequestStatus requestStatus, Set<Integer> pinCodes, Integer page, Integer size, FieldSelection fields) {
+
+        if (null == page && null == size)
+            return pageFromDatabase(requestStatus, pinCodes, 0, Integer.MAX_VALUE, fields);
+
+        return findPage(requestStatus, pinCodes, null != page ? page : 0, null != size ? size : DEFAULT_PAGE_SIZE, fields);
+    }
+
+    //Pages through the in-memory queue index and loads only the requests on the page
+    public List<TestRequestSummary> findPage(RequestStatus requestStatus, Set<Integer> pinCodes, int page, int size) {
+
+        if (page < 0 || size <= 0)
+            throw new AppException("Invalid page");
+
+        if (queueIndex.isIndexed(requestStatus) == false)
+            return pageOf(findSummariesBy(requestStatus, pinCodes), page, size);
+
+        return hydrate(requestStatus, pageFromIndex(requestStatus, pinCodes, page * size, size));
+    }
+
+    public List<Map<String, Object>> findPage(RequestStatus requestStatus, Set<Integer> pinCodes, int page, int size, FieldSelection fields) {
+
+        if (page < 0 || size <= 0)
+            throw new AppException("Invalid page");
+
+        if (queueIndex.isIndexed(requestStatus) == false)
+            return pageFromDatabase(requestStatus, pinCodes, page * size, size, fields);
+
+        List<Long> ids = pageFromIndex(requestStatus, pinCodes, page * size, size);
+        if (ids.isEmpty())
+            return new ArrayList<>();
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("ids", ids);
+        parameters.put("status", requestStatus);
+        Map<Long, Object[]> rowsById = new HashMap<>();
+        for (Object[] columns : sparseFieldQuery.list(fields, "t.requestId in :ids and t.status = :status", parameters, null))
+            rowsById.put(fields.idOf(columns), columns);
+
+        List<Map<String, Object>> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Object[] columns = rowsById.get(id);
+            if (null != columns)
+                result.add(fields.toRow(columns));
+            else
+                queueIndex.evict(id);
+        }
+        return result;
+    }
+
+    private List<Long> pageFromIndex(RequestStatus requestStatus, Set<Integer> pinCodes, int offset, int size) {
+
+        if (pinCodes.isEmpty() || queueIndex.count(requestStatus, pinCodes) > 0)
+            return queueIndex.page(requestStatus, pinCodes, offset, size);
         else
-            throw new AppException("Invalid Role");
+            return queueIndex.pageInDistricts(requestStatus, districtsOf(pinCodes), offset, size);
+    }
 
+    //Same local then neighbouring pin code order as findSummariesBy, paged by the database
+    private List<Map<String, Object>> pageFromDatabase(RequestStatus requestStatus, Set<Integer> pinCodes, int offset, int size, FieldSelection fields) {
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("status", requestStatus);
+        if (pinCodes.isEmpty())
+            return toRows(fields, sparseFieldQuery.page(fields, "t.status = :status", parameters, "t.priorityKey", offset, size));
+
+        parameters.put("pinCodes", pinCodes);
+        List<Object[]> local = sparseFieldQuery.page(fields, "t.status = :status and t.pinCode in :pinCodes", parameters, "t.priorityKey", offset, size);
+        if (local.isEmpty() == false || offset > 0 && testRequestRepository.existsByPinCodeInAndStatus(pinCodes, requestStatus))
+            return toRows(fields, local);
+
+        parameters.remove("pinCodes");
+        List<String> ranges = new ArrayList<>();
+        for (Integer district : districtsOf(pinCodes)) {
+            ranges.add("t.pinCode between :from" + district + " and :to" + district);
+            parameters.put("from" + district, district * 1000);
+            parameters.put("to" + district, district * 1000 + 999);
+        }
+        String where = "t.status = :status and (" + String.join(" or ", ranges) + ")";
+        return toRows(fields, sparseFieldQuery.page(fields, where, parameters, "t.priorityKey", offset, size));
     }
 
+    private List<Map<String, Object>> toRows(FieldSelection fields, List<Object[]> rows) {
 
+        return rows.stream()
+                .map(fields::toRow)
+                .collect(Collectors.toList());
+    }
 
-    public Optional<TestRequest> findByDoctorAndID(User doctor,Long id) {
+    List<TestRequestSummary> hydrate(RequestStatus requestStatus, List<Long> ids) {
 
+        if (ids.isEmpty())
+            return new ArrayList<>();
 
-        return  testRequestRepository.findByRequestId(id)
-                .filter(testRequest -> consultationRepository.findByDoctorAndRequest(doctor,testRequest).isPresent());
+        Map<Long, TestRequestSummary> requestsById = testRequestRepository.findSummariesByRequestIdIn(ids)
+                .stream()
+                .collect(Collectors.toMap(TestRequestSummary::getRequestId, testRequest -> testRequest));
+
+        List<TestRequestSummary> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            TestRequestSummary testRequest = requestsById.get(id);
+            if (null != testRequest && testRequest.getStatus() == requestStatus)
+                result.add(testRequest);
+            else
+                queueIndex.evict(id);
+        }
+        return result;
+    }
 
+    private List<TestRequestSummary> pageOf(List<TestRequestSummary> testRequests, int page, int size) {
+
+        int from = Math.min(page * size, testRequests.size());
+        int to = Math.min(from + size, testRequests.size());
+        return testRequests.subList(from, to);
     }
-    public Optional<TestRequest> findByTesterAndID(User tester,Long id) {
 
+    private Set<Integer> districtsOf(Set<Integer> pinCodes) {
+        return pinCodes.stream()
+                .map(pinCode -> pinCode / 1000)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
 
 
 
-        return  testRequestRepository.findByRequestId(id)
-                .filter(testRequest -> labResultRepository.findByTesterAndRequest(tester,testRequest).isPresent());
+    public List<TestRequestSummary> findByTester(User user) {
 
+        return testRequestRepository.findSummariesByTester(user);
+    }
 
+    public List<TestRequestSummary> findByDoctor(User user) {
 
+        return testRequestRepository.findSummariesByDoctor(user);
+    }
 
+    public List<Map<String, Object>> findByTester(User user, FieldSelection fields) {
 
+        return toRows(fields, sparseFieldQuery.list(fields, "l.tester = :user", "user", user, "l"));
+    }
 
+    public List<Map<String, Object>> findByDoctor(User user, FieldSelection fields) {
 
+        return toRows(fields, sparseFieldQuery.list(fields, "c.doctor = :user", "user", user, "c"));
     }
 
-    public Optional<TestRequest> findByUserAndID(User user,Long id) {
+    public List<Map<String, Object>> findByUser(User user, FieldSelection fields) {
+
+        return toRows(fields, sparseFieldQuery.list(fields, "t.createdBy = :user", "user", user));
+    }
+
+    public Optional<Map<String, Object>> findTestRequestForUserByID(User user, Long id, FieldSelection fields) {
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", id);
+
+        List<Object[]> rows;
+        switch (roleOf(user)) {
+            case USER:
+                parameters.put("user", user);
+                rows = sparseFieldQuery.list(fields, "t.requestId = :id and t.createdBy = :user", parameters, null);
+                break;
+            case TESTER:
+                parameters.put("user", user);
+                rows = sparseFieldQuery.list(fields, "t.requestId = :id and l.tester = :user", parameters, null, "l");
+                break;
+            case DOCTOR:
+                parameters.put("user", user);
+                rows = sparseFieldQuery.list(fields, "t.requestId = :id and c.doctor = :user", parameters, null, "c");
+                break;
+            default:
+                rows = sparseFieldQuery.list(fields, "t.requestId = :id", parameters, null);
+        }
+
+        return rows.stream()
+                .findFirst()
+                .map(fields::toRow);
+    }
+
+
+    public Optional<TestRequest> findTestRequestForUserByID(User user,Long id) {
 
-        return  testRequestRepository.findByCreatedByAndRequestId(user,id);
+        UserRole role = roleOf(user);
+        logger.debug("findTestRequestForUserByID {} as {}", id, role);
+
+        switch (role) {
+            case USER:
+                return findByUserAndID(user, id);
+            case TESTER:
+                return findByTesterAndID(user, id);
+            case DOCTOR:
+                return findByDoctorAndID(user, id);
+            default:
+                return testRequestRepository.findWithResultsById(id);
+        }
+    }
+
+    public Optional<TestRequestSummary> findSummaryForUserByID(User user, Long id) {
+
+        switch (roleOf(user)) {
+            case USER:
+                return testRequestRepository.findSummaryByIdAndCreatedBy(id, user);
+            case TESTER:
+                return testRequestRepository.findSummaryByIdAndTester(id, user);
+            case DOCTOR:
+                return testRequestRepository.findSummaryByIdAndDoctor(id, user);
+            default:
+                return testRequestRepository.findSummaryById(id);
+        }
+    }
+
+    //Same precedence as the role checks used elsewhere : user, tester, doctor, then authority
+    public UserRole roleOf(User user) {
+
+        if (user.doesRoleIsUser())
+            return UserRole.USER;
+        else if (user.doesRoleIsTester())
+            return UserRole.TESTER;
+        else if (user.doesRoleIsDoctor())
+            return UserRole.DOCTOR;
+        else if (user.doesRoleIsAuthority())
+            return UserRole.GOVERNMENT_AUTHORITY;
+        else
+            throw new AppException("Invalid Role");
+    }
+
+    public Optional<TestRequest> findByDoctorAndID(User doctor,Long id) {
+
+        return testRequestRepository.findWithResultsByIdAndDoctor(id, doctor);
+    }
+
+    public Optional<TestRequest> findByTesterAndID(User tester,Long id) {
+
+        return testRequestRepository.findWithResultsByIdAndTester(id, tester);
+    }
+
+    public Optional<TestRequest> findByUserAndID(User user,Long id) {
 
+        return testRequestRepository.findWithResultsByIdAndCreatedBy(id, user);
     }
 
-    public List<TestRequest> findByUser(User user) {
-        return  testRequestRepository.findByCreatedBy(user);
+    public List<TestRequestSummary> findByUser(User user) {
+        return  testRequestRepository.findSummariesByCreatedBy(user);
 
 
     }
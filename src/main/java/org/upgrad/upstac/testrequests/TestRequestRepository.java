@@ -1,26 +1,64 @@
 package org.upgrad.upstac.testrequests;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
 import org.upgrad.upstac.users.User;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 
 public interface TestRequestRepository extends JpaRepository<TestRequest,Long> {
 
+	//List endpoints read TestRequestSummary rows, one query joining everything the list renders
+	String SUMMARY_SELECT = "select new org.upgrad.upstac.testrequests.models.TestRequestSummary("
+			+ "t.requestId, t.created, t.status, t.name, t.gender, t.address, t.age, t.email, t.phoneNumber, t.pinCode, t.priorityKey, t.leaseExpiresAt, "
+			+ "u.id, u.userName, u.firstName, u.lastName, "
+			+ "l.resultId, l.bloodPressure, l.heartBeat, l.temperature, l.oxygenLevel, l.comments, l.result, l.updatedOn, "
+			+ "lt.id, lt.userName, lt.firstName, lt.lastName, "
+			+ "c.id, c.suggestion, c.comments, c.updatedOn, "
+			+ "cd.id, cd.userName, cd.firstName, cd.lastName) "
+			+ "from TestRequest t left join t.createdBy u "
+			+ "left join t.labResult l left join l.tester lt "
+			+ "left join t.consultation c left join c.doctor cd ";
+
 
 	Optional<TestRequest> findByRequestId(Long id);
 
-	List<TestRequest> findByCreatedBy(User user);
+	@Query(SUMMARY_SELECT + "where t.createdBy = :user order by t.requestId")
+	List<TestRequestSummary> findSummariesByCreatedBy(@Param("user") User user);
 
 	Optional<TestRequest> findByRequestIdAndStatus(Long id,RequestStatus status);
 	Optional<TestRequest> findByCreatedByAndRequestId(User user,Long id);
 	List<TestRequest> findByEmail(String email);
 	List<TestRequest> findByEmailOrPhoneNumber(String email,String phoneNumber);
 
+	//Emails and phone numbers of requests still in progress, the set based form of findByEmailOrPhoneNumber
+	@Query("select t.email, t.phoneNumber from TestRequest t where t.status <> :completed and (t.email in :emails or t.phoneNumber in :phoneNumbers)")
+	List<Object[]> findContactsInProgress(@Param("emails") Collection<String> emails, @Param("phoneNumbers") Collection<String> phoneNumbers, @Param("completed") RequestStatus completed);
+
 	List<TestRequest> findByPhoneNumber(String phoneNumber);
 
+	//Intake tickets already turned into requests, with the request each one created
+	@Query("select t.intakeTicket, t.requestId from TestRequest t where t.intakeTicket in :tickets")
+	List<Object[]> findRequestIdsByIntakeTicket(@Param("tickets") Collection<Long> tickets);
+
+	//Resolves a ticket no longer held in memory, only for the user who submitted it
+	@Query("select t.requestId from TestRequest t where t.intakeTicket = :ticket and t.createdBy.id = :userId")
+	Optional<Long> findRequestIdByIntakeTicketAndCreatedById(@Param("ticket") Long ticket, @Param("userId") Long userId);
+
 	void deleteById(Long id);
 
 
@@ -30,6 +68,96 @@ public interface TestRequestRepository extends JpaRepository<TestRequest,Long> {
 	List<TestRequest> findByName(String name);
 
 	List<TestRequest> findByStatus(RequestStatus status);
+
+	@EntityGraph(attributePaths = {"createdBy", "labResult", "consultation"})
+	List<TestRequest> findByStatusOrderByPriorityKeyAsc(RequestStatus status);
+
+
+	@Query(SUMMARY_SELECT + "where t.status = :status order by t.priorityKey")
+	List<TestRequestSummary> findSummariesByStatus(@Param("status") RequestStatus status);
+
+	@Query(SUMMARY_SELECT + "where t.pinCode in :pinCodes and t.status = :status order by t.priorityKey")
+	List<TestRequestSummary> findSummariesByPinCodeInAndStatus(@Param("pinCodes") Collection<Integer> pinCodes, @Param("status") RequestStatus status);
+
+	@Query(SUMMARY_SELECT + "where t.pinCode between :fromPinCode and :toPinCode and t.status = :status order by t.priorityKey")
+	List<TestRequestSummary> findSummariesByPinCodeBetweenAndStatus(@Param("fromPinCode") Integer fromPinCode, @Param("toPinCode") Integer toPinCode, @Param("status") RequestStatus status);
+
+	boolean existsByPinCodeInAndStatus(Collection<Integer> pinCodes, RequestStatus status);
+
+	//Claim candidates as (requestId, priorityKey), the status and priority indexes already end in the primary key
+	@Query("select t.requestId, t.priorityKey from TestRequest t where t.status = :status order by t.priorityKey, t.requestId")
+	List<Object[]> findQueuedEntries(@Param("status") RequestStatus status, Pageable pageable);
+
+	@Query("select t.requestId, t.priorityKey from TestRequest t where t.pinCode in :pinCodes and t.status = :status order by t.priorityKey, t.requestId")
+	List<Object[]> findQueuedEntriesByPinCodeIn(@Param("pinCodes") Collection<Integer> pinCodes, @Param("status") RequestStatus status, Pageable pageable);
+
+	@Query("select t.requestId, t.priorityKey from TestRequest t where t.pinCode between :fromPinCode and :toPinCode and t.status = :status order by t.priorityKey, t.requestId")
+	List<Object[]> findQueuedEntriesByPinCodeBetween(@Param("fromPinCode") Integer fromPinCode, @Param("toPinCode") Integer toPinCode, @Param("status") RequestStatus status, Pageable pageable);
+
+	//Locking read that claims a request still in the given status. A concurrent claim waits for the row and then
+	//no longer matches the status; -2 is SKIP_LOCKED on dialects that support it and a plain FOR UPDATE elsewhere
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+	@Query("select t from TestRequest t where t.requestId = :id and t.status = :status")
+	Optional<TestRequest> claimByRequestIdAndStatus(@Param("id") Long id, @Param("status") RequestStatus status);
+
+	List<TestRequest> findByPriorityKeyIsNullAndStatusIn(Collection<RequestStatus> statuses, Pageable pageable);
+
+	@Query(SUMMARY_SELECT + "where t.requestId in :ids")
+	List<TestRequestSummary> findSummariesByRequestIdIn(@Param("ids") Collection<Long> ids);
+
+	@Query(SUMMARY_SELECT + "where l.tester = :tester order by t.requestId")
+	List<TestRequestSummary> findSummariesByTester(@Param("tester") User tester);
+
+	@Query(SUMMARY_SELECT + "where c.doctor = :doctor order by t.requestId")
+	List<TestRequestSummary> findSummariesByDoctor(@Param("doctor") User doctor);
+
+	@Query("select t.requestId, t.status from TestRequest t where t.createdBy = :user order by t.requestId")
+	List<Object[]> findHistoryEntries(@Param("user") User user);
+
+	@Query(SUMMARY_SELECT + "where t.requestId = :id and t.createdBy = :user")
+	Optional<TestRequestSummary> findSummaryByIdAndCreatedBy(@Param("id") Long id, @Param("user") User user);
+
+	@Query(SUMMARY_SELECT + "where t.requestId = :id and l.tester = :tester")
+	Optional<TestRequestSummary> findSummaryByIdAndTester(@Param("id") Long id, @Param("tester") User tester);
+
+	@Query(SUMMARY_SELECT + "where t.requestId = :id and c.doctor = :doctor")
+	Optional<TestRequestSummary> findSummaryByIdAndDoctor(@Param("id") Long id, @Param("doctor") User doctor);
+
+	@Query(SUMMARY_SELECT + "where t.requestId = :id")
+	Optional<TestRequestSummary> findSummaryById(@Param("id") Long id);
+
+	//By id lookups for each role, the ownership or assignment check is part of the primary key lookup
+	@Query("select t from TestRequest t left join fetch t.labResult left join fetch t.consultation where t.requestId = :id and t.createdBy = :user")
+	Optional<TestRequest> findWithResultsByIdAndCreatedBy(@Param("id") Long id, @Param("user") User user);
+
+	@Query("select t from TestRequest t join fetch t.labResult l left join fetch t.consultation where t.requestId = :id and l.tester = :tester")
+	Optional<TestRequest> findWithResultsByIdAndTester(@Param("id") Long id, @Param("tester") User tester);
+
+	@Query("select t from TestRequest t left join fetch t.labResult join fetch t.consultation c where t.requestId = :id and c.doctor = :doctor")
+	Optional<TestRequest> findWithResultsByIdAndDoctor(@Param("id") Long id, @Param("doctor") User doctor);
+
+	@Query("select t from TestRequest t left join fetch t.labResult left join fetch t.consultation where t.requestId = :id")
+	Optional<TestRequest> findWithResultsById(@Param("id") Long id);
+
+	//Locked like claims, a transition that commits first no longer has an expired lease and drops out of the result
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+	List<TestRequest> findByLeaseExpiresAtBeforeOrderByLeaseExpiresAtAsc(LocalDateTime now, Pageable pageable);
+
+	@Query("select t.requestId, t.status, t.pinCode, t.priorityKey from TestRequest t where t.status in :statuses")
+	List<Object[]> findQueueEntries(@Param("statuses") Collection<RequestStatus> statuses);
+
+	//Fills the owning foreign keys for rows created before TestRequest owned them, run once by DataMigrationService
+	@Modifying
+	@Transactional
+	@Query(value = "update test_request set lab_result_id = (select l.result_id from lab_result l where l.request_request_id = test_request.request_id) where lab_result_id is null and exists (select 1 from lab_result l where l.request_request_id = test_request.request_id)", nativeQuery = true)
+	int backfillLabResultLinks();
+
+	@Modifying
+	@Transactional
+	@Query(value = "update test_request set consultation_id = (select c.id from consultation c where c.request_request_id = test_request.request_id) where consultation_id is null and exists (select 1 from consultation c where c.request_request_id = test_request.request_id)", nativeQuery = true)
+	int backfillConsultationLinks();
 	
 
 }
@@ -3,10 +3,16 @@ package org.upgrad.upstac.testrequests;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.search.ContactDetailsChanged;
+import org.upgrad.upstac.testrequests.feed.TestRequestStatusChanged;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
 import org.upgrad.upstac.users.User;
 
+import javax.transaction.Transactional;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -16,16 +22,29 @@ public class TestRequestService {
     @Autowired
     private TestRequestRepository testRequestRepository;
 
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
 
 
     private static Logger logger = LoggerFactory.getLogger(TestRequestService.class);
 
 
 
+    @Transactional
     public TestRequest createTestRequestFrom(User user,CreateTestRequest createTestRequest) {
 
         validateExistingRequestsNotPresentWithSameDetails(createTestRequest);
 
+        TestRequest testRequest = newTestRequestFrom(user, createTestRequest);
+        TestRequest savedRequest = testRequestRepository.save(testRequest);
+        applicationEventPublisher.publishEvent(TestRequestStatusChanged.from(testRequest, null));
+        applicationEventPublisher.publishEvent(ContactDetailsChanged.of(testRequest));
+        return savedRequest;
+    }
+
+    static TestRequest newTestRequestFrom(User user, CreateTestRequest createTestRequest) {
+
         TestRequest testRequest = new TestRequest();
 
         testRequest.setName(createTestRequest.getName());
@@ -37,9 +56,10 @@ public class TestRequestService {
         testRequest.setPinCode(createTestRequest.getPinCode());
         testRequest.setAddress(createTestRequest.getAddress());
         testRequest.setGender(createTestRequest.getGender());
+        testRequest.setPriorityKey(QueuePriority.priorityKeyFor(testRequest, Instant.now()));
 
         testRequest.setCreatedBy(user);
-        return testRequestRepository.save(testRequest);
+        return testRequest;
     }
 
     public void validateExistingRequestsNotPresentWithSameDetails(CreateTestRequest createTestRequest) {
@@ -56,12 +76,12 @@ public class TestRequestService {
 
     public List<TestRequest> findByStatus(RequestStatus requestStatus){
 
-        return testRequestRepository.findByStatus(requestStatus);
+        return testRequestRepository.findByStatusOrderByPriorityKeyAsc(requestStatus);
     }
 
-    public List<TestRequest> getHistoryFor(User loggedInUser){
+    public List<TestRequestSummary> getHistoryFor(User loggedInUser){
 
-        return testRequestRepository.findByCreatedBy(loggedInUser);
+        return testRequestRepository.findSummariesByCreatedBy(loggedInUser);
     }
 
 
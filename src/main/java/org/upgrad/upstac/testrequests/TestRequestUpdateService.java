@@ -1,25 +1,42 @@
 package org.upgrad.upstac.testrequests;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
+import org.upgrad.upstac.config.datasource.UseWorkload;
+import org.upgrad.upstac.config.datasource.Workload;
 import org.upgrad.upstac.exception.AppException;
 import org.upgrad.upstac.testrequests.consultation.Consultation;
 import org.upgrad.upstac.testrequests.consultation.ConsultationService;
 import org.upgrad.upstac.testrequests.consultation.CreateConsultationRequest;
+import org.upgrad.upstac.testrequests.feed.TestRequestStatusChanged;
 import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
 import org.upgrad.upstac.testrequests.lab.LabResult;
 import org.upgrad.upstac.testrequests.lab.LabResultService;
 import org.upgrad.upstac.testrequests.lab.CreateLabResult;
+import org.upgrad.upstac.testrequests.versions.ListVersions;
 import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
 
 import javax.transaction.Transactional;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Valid;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConstraintViolation;
 
+@UseWorkload(Workload.TRANSACTIONAL)
 @Service
 @Slf4j
 @Validated
@@ -29,6 +46,9 @@ public class TestRequestUpdateService {
     private TestRequestRepository testRequestRepository;
 
 
+    @Autowired
+    private TestRequestQueryService testRequestQueryService;
+
     @Autowired
     private TestRequestFlowService testRequestFlowService;
 
@@ -40,29 +60,174 @@ public class TestRequestUpdateService {
     @Autowired
     private ConsultationService consultationService;
 
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ListVersions listVersions;
+
+    @Value("${upstac.lease.duration-minutes:120}")
+    private long leaseDurationInMinutes;
 
+    @Value("${upstac.queue.claim-candidates:10}")
+    private int claimCandidates;
+
+
+    //Flushed here so a version conflict with the lease reaper or another transition surfaces as an AppException.
+    //The lazy results are loaded before the transaction ends, the response is written without open-in-view
     @Transactional
     public TestRequest saveTestRequest(@Valid TestRequest result) {
 
-
-        return testRequestRepository.save(result);
+        try {
+            TestRequest saved = testRequestRepository.saveAndFlush(result);
+            Hibernate.initialize(saved.getLabResult());
+            Hibernate.initialize(saved.getConsultation());
+            return saved;
+        } catch (OptimisticLockingFailureException e) {
+            throw new AppException("Request was changed by someone else, reload and try again", e);
+        }
     }
 
 
     TestRequest updateStatusAndSave(TestRequest testRequest, RequestStatus status) {
+        RequestStatus previousStatus = testRequest.getStatus();
         testRequest.setStatus(status);
+
+        if (status == RequestStatus.LAB_TEST_COMPLETED)
+            testRequest.setPriorityKey(QueuePriority.priorityKeyFor(testRequest, Instant.now()));
+
+        if (isAssigned(status))
+            testRequest.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(leaseDurationInMinutes));
+        else
+            testRequest.setLeaseExpiresAt(null);
+
+        return saveAndPublish(testRequest, previousStatus);
+    }
+
+    TestRequest saveAndPublish(TestRequest testRequest, RequestStatus previousStatus) {
+        return saveAndPublish(testRequest, previousStatus, null);
+    }
+
+    TestRequest saveAndPublish(TestRequest testRequest, RequestStatus previousStatus, User releasedFrom) {
+        TestRequest savedRequest = saveTestRequest(testRequest);
+        TestRequestStatusChanged event = TestRequestStatusChanged.from(savedRequest, previousStatus);
+        if (null != releasedFrom)
+            event.setReleasedFromId(releasedFrom.getId());
+        applicationEventPublisher.publishEvent(event);
+        return savedRequest;
+    }
+
+    static boolean isAssigned(RequestStatus status) {
+        return status == RequestStatus.LAB_TEST_IN_PROGRESS || status == RequestStatus.DIAGNOSIS_IN_PROCESS;
+    }
+
+    @Transactional
+    public TestRequest renewLease(Long id, User assignee) {
+
+        TestRequest testRequest = testRequestRepository.findByRequestId(id)
+                .filter(request -> isAssigned(request.getStatus()))
+                .filter(request -> isAssignedTo(request, assignee))
+                .orElseThrow(() -> new AppException("Invalid ID or State"));
+
+        testRequest.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(leaseDurationInMinutes));
+        //Not a status change, the worklist shows the new expiry
+        listVersions.changed(ListVersions.worklist(assignee));
         return saveTestRequest(testRequest);
     }
 
+    private boolean isAssignedTo(TestRequest testRequest, User assignee) {
+
+        User assignedTo = null;
+        if (testRequest.getStatus() == RequestStatus.LAB_TEST_IN_PROGRESS && null != testRequest.getLabResult())
+            assignedTo = testRequest.getLabResult().getTester();
+        else if (testRequest.getStatus() == RequestStatus.DIAGNOSIS_IN_PROCESS && null != testRequest.getConsultation())
+            assignedTo = testRequest.getConsultation().getDoctor();
+
+        return null != assignedTo && assignedTo.getId().equals(assignee.getId());
+    }
+
+    //Returns expired assignments to the queue they were claimed from, one transaction per batch
+    @Transactional
+    public int expireLeases(LocalDateTime now, int batchSize) {
+
+        List<TestRequest> expired = testRequestRepository.findByLeaseExpiresAtBeforeOrderByLeaseExpiresAtAsc(now, PageRequest.of(0, batchSize));
+
+        for (TestRequest testRequest : expired) {
+
+            RequestStatus from = testRequest.getStatus();
+            RequestStatus to;
+            User releasedFrom;
+
+            if (from == RequestStatus.LAB_TEST_IN_PROGRESS) {
+                to = RequestStatus.INITIATED;
+                releasedFrom = null != testRequest.getLabResult() ? testRequest.getLabResult().getTester() : null;
+                labResultService.release(testRequest);
+                testRequest.setLabResult(null);
+            } else if (from == RequestStatus.DIAGNOSIS_IN_PROCESS) {
+                to = RequestStatus.LAB_TEST_COMPLETED;
+                releasedFrom = null != testRequest.getConsultation() ? testRequest.getConsultation().getDoctor() : null;
+                consultationService.release(testRequest);
+                testRequest.setConsultation(null);
+            } else {
+                testRequest.setLeaseExpiresAt(null);
+                saveTestRequest(testRequest);
+                continue;
+            }
+
+            log.info("lease expired for request {}, returning it from {} to {}", testRequest.getRequestId(), from, to);
+            testRequestFlowService.log(testRequest, from, to, null);
+            testRequest.setStatus(to);
+            testRequest.setLeaseExpiresAt(null);
+            saveAndPublish(testRequest, from, releasedFrom);
+        }
+
+        return expired.size();
+    }
 
+
+    //Transitions run in one read-write transaction, so their state checks read the primary when replicas are routed.
+    //Assignments claim the row with a locking read, so two testers or doctors can never take the same request
+    @Transactional
     public TestRequest assignForLabTest(Long id, User tester) {
-        TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id, RequestStatus.INITIATED).orElseThrow(() -> new AppException("Invalid ID"));
+        TestRequest testRequest = testRequestRepository.claimByRequestIdAndStatus(id, RequestStatus.INITIATED).orElseThrow(() -> new AppException("Invalid ID"));
+        return assignForLabTest(testRequest, tester);
+    }
+
+    @Transactional
+    public TestRequest assignNextForLabTest(User tester) {
+        TestRequest testRequest = claimNext(RequestStatus.INITIATED, userService.findPinCodesCovered(tester));
+        return assignForLabTest(testRequest, tester);
+    }
+
+    private TestRequest assignForLabTest(TestRequest testRequest, User tester) {
         LabResult labResult = labResultService.assignForLabTest(testRequest, tester);
         testRequestFlowService.log(testRequest, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS, tester);
         testRequest.setLabResult(labResult);
         return updateStatusAndSave(testRequest, RequestStatus.LAB_TEST_IN_PROGRESS);
     }
 
+    //Walks the queue in claim order and takes the first request nobody else claimed in the meantime
+    private TestRequest claimNext(RequestStatus requestStatus, Set<Integer> pinCodes) {
+
+        for (int page = 0; ; page++) {
+
+            List<Long> candidates = testRequestQueryService.findQueueCandidates(requestStatus, pinCodes, page, claimCandidates);
+
+            for (Long candidate : candidates) {
+                Optional<TestRequest> claimed = testRequestRepository.claimByRequestIdAndStatus(candidate, requestStatus);
+                if (claimed.isPresent())
+                    return claimed.get();
+            }
+
+            if (candidates.size() < claimCandidates)
+                throw new AppException("No requests in queue");
+        }
+    }
+
+    @Transactional
     public TestRequest updateLabTest(Long id, @Valid CreateLabResult createLabResult, User tester) {
 
         TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id, RequestStatus.LAB_TEST_IN_PROGRESS).orElseThrow(() -> new AppException("Invalid ID or State"));
@@ -74,8 +239,19 @@ public class TestRequestUpdateService {
         return updateStatusAndSave(testRequest, RequestStatus.LAB_TEST_COMPLETED);
     }
 
+    @Transactional
     public TestRequest assignForConsultation(Long id, User doctor) {
-        TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id, RequestStatus.LAB_TEST_COMPLETED).orElseThrow(() -> new AppException("Invalid ID or State"));
+        TestRequest testRequest = testRequestRepository.claimByRequestIdAndStatus(id, RequestStatus.LAB_TEST_COMPLETED).orElseThrow(() -> new AppException("Invalid ID or State"));
+        return assignForConsultation(testRequest, doctor);
+    }
+
+    @Transactional
+    public TestRequest assignNextForConsultation(User doctor) {
+        TestRequest testRequest = claimNext(RequestStatus.LAB_TEST_COMPLETED, Collections.emptySet());
+        return assignForConsultation(testRequest, doctor);
+    }
+
+    private TestRequest assignForConsultation(TestRequest testRequest, User doctor) {
         Consultation consultation = consultationService.assignForConsultation(testRequest, doctor);
         testRequestFlowService.log(testRequest, RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS, doctor);
         testRequest.setConsultation(consultation);
@@ -83,6 +259,7 @@ public class TestRequestUpdateService {
     }
 
 
+    @Transactional
     public TestRequest updateConsultation(Long id, @Valid CreateConsultationRequest createConsultationRequest, User doctor) {
 
         TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id, RequestStatus.DIAGNOSIS_IN_PROCESS).orElseThrow(() -> new AppException("Invalid ID or State"));
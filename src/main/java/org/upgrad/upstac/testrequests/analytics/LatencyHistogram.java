@@ -0,0 +1,98 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size log-linear histogram of millisecond latencies, in the style of HdrHistogram.
+ *
+ * Values below 32 get a bucket each; above that every power of two is split into 16 equal buckets, so any
+ * recorded value is reported within about 6% of itself whatever its magnitude. Values above MAX_VALUE (a bit
+ * over two years) are counted as MAX_VALUE. Recording is lock free and memory is the same 4 KB however many
+ * values are recorded. Bucket counts can be read out and added back, which is how TurnaroundAnalytics sums the
+ * histograms of every node.
+ */
+public class LatencyHistogram {
+
+    static final int LINEAR_BUCKETS = 32;
+    static final int SUB_BUCKETS = 16;
+    static final int MAX_EXPONENT = 36;
+    static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+
+    public void record(long value) {
+
+        long bounded = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(bounded));
+        totalCount.incrementAndGet();
+        maxValue.accumulateAndGet(bounded, Math::max);
+    }
+
+    //Adds values already counted elsewhere, their largest is passed to raiseMaxValue
+    public void add(int index, long count) {
+
+        counts.addAndGet(index, count);
+        totalCount.addAndGet(count);
+    }
+
+    public void raiseMaxValue(long value) {
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    public int buckets() {
+        return counts.length();
+    }
+
+    public long countAt(int index) {
+        return counts.get(index);
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    //Highest value in the bucket holding the given percentile, 0 when nothing was recorded
+    public long valueAtPercentile(double percentile) {
+
+        long total = totalCount.get();
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            seen += counts.get(index);
+            if (seen >= rank)
+                return Math.min(highestValueAt(index), maxValue.get());
+        }
+        return maxValue.get();
+    }
+
+    static int indexOf(long value) {
+
+        if (value < LINEAR_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - 4)) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - 5) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueAt(int index) {
+
+        if (index < LINEAR_BUCKETS)
+            return index;
+
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 5;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << (exponent - 4)) - 1;
+    }
+}
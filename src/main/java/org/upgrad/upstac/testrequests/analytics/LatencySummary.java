@@ -0,0 +1,26 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import lombok.Data;
+
+//Percentiles of one histogram, all in milliseconds
+@Data
+public class LatencySummary {
+
+    private long count;
+    private long p50;
+    private long p90;
+    private long p99;
+    private long max;
+
+
+    public static LatencySummary of(LatencyHistogram histogram) {
+
+        LatencySummary summary = new LatencySummary();
+        summary.setCount(histogram.getTotalCount());
+        summary.setP50(histogram.valueAtPercentile(50));
+        summary.setP90(histogram.valueAtPercentile(90));
+        summary.setP99(histogram.valueAtPercentile(99));
+        summary.setMax(histogram.getMaxValue());
+        return summary;
+    }
+}
@@ -0,0 +1,347 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.upgrad.upstac.config.datasource.UseWorkload;
+import org.upgrad.upstac.config.datasource.Workload;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.flow.TestRequestFlowLogged;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Latency histograms of the request workflow, shared by every node through TurnaroundBucket rows.
+ *
+ * Each transition records the time spent in the status it leaves, under its edge (e.g. INITIATED->LAB_TEST_IN_PROGRESS)
+ * and, when a tester or doctor made it, under that assignee. The status was entered at the request's statusChangedAt,
+ * or at creation when it leaves INITIATED for the first time; requests last changed before statusChangedAt was kept
+ * record no edge latency for their next transition. Reaching COMPLETED records the time since the request was
+ * created, overall and per pin code.
+ *
+ * A node counts its own transitions in memory and adds them to the bucket rows every upstac.analytics.flush-interval-ms
+ * and at shutdown, so reports are totals over every node and survive restarts; a node that dies loses at most one
+ * interval. Reports read the bucket rows of the metric asked for. Nothing is read at startup: transitions from before
+ * the first node started counting are replayed once, by the turnaround-histograms data migration.
+ */
+@Component
+public class TurnaroundAnalytics {
+
+    private static final Logger logger = LoggerFactory.getLogger(TurnaroundAnalytics.class);
+
+    static final String END_TO_END = "endToEnd";
+    static final String PIN_CODE = "pinCode:";
+    static final String ASSIGNEE = "assignee:";
+    static final String EDGE = "edge:";
+
+    //Bucket row holding the largest value of its metric instead of a count
+    static final int MAX_BUCKET = -1;
+
+    static final String LIVE = "live";
+    static final String REPLAY = "replay";
+
+    //Row holding the epoch millisecond the first node started counting, the replay stops there
+    static final String LIVE_SINCE = "live-since";
+
+    @Autowired
+    private TurnaroundBucketRepository turnaroundBucketRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${upstac.analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${upstac.analytics.fetch-size:500}")
+    private int fetchSize;
+
+    //Counted since the last flush, by metric
+    private Map<String, LatencyHistogram> recorded = new HashMap<>();
+
+    //Bucket rows are never deleted, once seen they are added to without checking
+    private final Set<String> existingBuckets = ConcurrentHashMap.newKeySet();
+
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+
+        if (enabled)
+            logger.info("turnaround analytics counting since {}", liveSince());
+    }
+
+    //Inserted by the first node to start, every later node finds it
+    Instant liveSince() {
+
+        createIfMissing(bucket(LIVE_SINCE, LIVE_SINCE, 0, Instant.now().toEpochMilli()));
+        return turnaroundBucketRepository.findById(LIVE_SINCE)
+                .map(bucket -> Instant.ofEpochMilli(bucket.getTotal()))
+                .orElseThrow(() -> new IllegalStateException("No " + LIVE_SINCE + " turnaround bucket"));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFlowLogged(TestRequestFlowLogged event) {
+
+        if (enabled == false)
+            return;
+
+        record(event, event.getEnteredAt(), recorded);
+    }
+
+    static void record(TestRequestFlowLogged event, Instant entered, Map<String, LatencyHistogram> histograms) {
+
+        Instant happenedAt = event.getHappenedAt();
+        if (null == happenedAt)
+            return;
+
+        if (null == entered && event.getFromStatus() == RequestStatus.INITIATED)
+            entered = event.getRequestCreatedAt();
+
+        if (null != entered && null != event.getFromStatus()) {
+
+            long millis = millisBetween(entered, happenedAt);
+            histogramOf(histograms, EDGE + edgeOf(event.getFromStatus(), event.getToStatus())).record(millis);
+
+            if (null != event.getChangedById() && isAssigned(event.getFromStatus()))
+                histogramOf(histograms, ASSIGNEE + event.getChangedById()).record(millis);
+        }
+
+        if (event.getToStatus() == RequestStatus.COMPLETED && null != event.getRequestCreatedAt()) {
+
+            long millis = millisBetween(event.getRequestCreatedAt(), happenedAt);
+            histogramOf(histograms, END_TO_END).record(millis);
+            if (null != event.getPinCode())
+                histogramOf(histograms, PIN_CODE + event.getPinCode()).record(millis);
+        }
+    }
+
+    //Counts that could not be written are kept for the next flush
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${upstac.analytics.flush-interval-ms:10000}")
+    public void flush() {
+
+        Map<String, LatencyHistogram> flushing;
+        synchronized (this) {
+            if (recorded.isEmpty())
+                return;
+            flushing = recorded;
+            recorded = new HashMap<>();
+        }
+
+        try {
+            List<TurnaroundBucket> buckets = bucketsOf(LIVE, flushing);
+            buckets.forEach(bucket -> createIfMissing(bucket(bucket.getId(), bucket.getMetric(), bucket.getBucket(), 0)));
+
+            new TransactionTemplate(transactionManager).execute(status -> {
+                for (TurnaroundBucket bucket : buckets) {
+                    if (bucket.getBucket() == MAX_BUCKET)
+                        turnaroundBucketRepository.raise(bucket.getId(), bucket.getTotal());
+                    else
+                        turnaroundBucketRepository.add(bucket.getId(), bucket.getTotal());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("could not write turnaround histograms, keeping them for the next flush", e);
+            synchronized (this) {
+                flushing.forEach((metric, histogram) -> addTo(histogramOf(recorded, metric), histogram));
+            }
+        }
+    }
+
+    //Created in a transaction of its own, so a row another node creates at the same time only fails this insert
+    private void createIfMissing(TurnaroundBucket bucket) {
+
+        if (existingBuckets.contains(bucket.getId()))
+            return;
+
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            requiresNew.execute(status -> {
+                if (!turnaroundBucketRepository.existsById(bucket.getId())) {
+                    entityManager.persist(bucket);
+                    entityManager.flush();
+                }
+                return null;
+            });
+            existingBuckets.add(bucket.getId());
+        } catch (DataIntegrityViolationException | PersistenceException e) {
+            //Created by another node meanwhile, the update finds it
+        }
+    }
+
+    /**
+     * Replays the flow rows written before the first node started counting, streamed in request order so the
+     * previous row of a request gives the time its status was entered. The replayed counts are inserted as rows of
+     * their own in one transaction, so a second node running the migration at the same time fails on the same ids.
+     */
+    @UseWorkload(Workload.REPORTING)
+    public int backfill() {
+
+        Instant liveSince = liveSince();
+        Map<String, LatencyHistogram> replayed = new HashMap<>();
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        int transitions = readOnly.execute(status -> replay(liveSince, replayed));
+
+        try {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                bucketsOf(REPLAY, replayed).forEach(entityManager::persist);
+                entityManager.flush();
+                return null;
+            });
+        } catch (DataIntegrityViolationException | PersistenceException e) {
+            logger.info("turnaround histograms were replayed by another node");
+            return 0;
+        }
+        return transitions;
+    }
+
+    private int replay(Instant liveSince, Map<String, LatencyHistogram> replayed) {
+
+        int count = 0;
+        Long previousRequestId = null;
+        Instant entered = null;
+
+        try (Stream<Object[]> rows = entityManager.createQuery("select t.requestId, f.fromStatus, f.toStatus, f.happenedAt, t.createdAt, t.pinCode, u.id "
+                + "from TestRequestFlow f join f.request t left join f.changedBy u where f.happenedAt < :liveSince "
+                + "order by t.requestId, f.happenedAt, f.id", Object[].class)
+                .setParameter("liveSince", liveSince)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()) {
+
+            for (Object[] columns : (Iterable<Object[]>) rows::iterator) {
+
+                TestRequestFlowLogged event = new TestRequestFlowLogged();
+                event.setRequestId((Long) columns[0]);
+                event.setFromStatus((RequestStatus) columns[1]);
+                event.setToStatus((RequestStatus) columns[2]);
+                event.setHappenedAt((Instant) columns[3]);
+                event.setRequestCreatedAt((Instant) columns[4]);
+                event.setPinCode((Integer) columns[5]);
+                event.setChangedById((Long) columns[6]);
+
+                if (!event.getRequestId().equals(previousRequestId))
+                    entered = null;
+
+                record(event, entered, replayed);
+                previousRequestId = event.getRequestId();
+                entered = event.getHappenedAt();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    //Sorted by id, so two nodes flushing at once update shared rows in the same order
+    static List<TurnaroundBucket> bucketsOf(String source, Map<String, LatencyHistogram> histograms) {
+
+        List<TurnaroundBucket> buckets = new ArrayList<>();
+        histograms.forEach((metric, histogram) -> {
+            for (int index = 0; index < histogram.buckets(); index++)
+                if (histogram.countAt(index) > 0)
+                    buckets.add(bucket(source + "|" + metric + "|" + index, metric, index, histogram.countAt(index)));
+            buckets.add(bucket(source + "|" + metric + "|max", metric, MAX_BUCKET, histogram.getMaxValue()));
+        });
+        buckets.sort(Comparator.comparing(TurnaroundBucket::getId));
+        return buckets;
+    }
+
+    static Map<String, LatencyHistogram> histogramsOf(List<Object[]> totals) {
+
+        Map<String, LatencyHistogram> histograms = new HashMap<>();
+        for (Object[] columns : totals) {
+            LatencyHistogram histogram = histogramOf(histograms, (String) columns[0]);
+            if ((Integer) columns[1] == MAX_BUCKET)
+                histogram.raiseMaxValue((Long) columns[3]);
+            else
+                histogram.add((Integer) columns[1], (Long) columns[2]);
+        }
+        return histograms;
+    }
+
+    public LatencySummary endToEnd() {
+        return summaryOf(END_TO_END).orElseGet(LatencySummary::new);
+    }
+
+    public Optional<LatencySummary> endToEndForPinCode(Integer pinCode) {
+        return summaryOf(PIN_CODE + pinCode);
+    }
+
+    public Optional<LatencySummary> forAssignee(Long assigneeId) {
+        return summaryOf(ASSIGNEE + assigneeId);
+    }
+
+    public Map<String, LatencySummary> byEdge() {
+
+        Map<String, LatencySummary> edges = new TreeMap<>();
+        histogramsOf(turnaroundBucketRepository.findTotalsByMetricPrefix(EDGE + "%"))
+                .forEach((metric, histogram) -> edges.put(metric.substring(EDGE.length()), LatencySummary.of(histogram)));
+        return edges;
+    }
+
+    private Optional<LatencySummary> summaryOf(String metric) {
+        return Optional.ofNullable(histogramsOf(turnaroundBucketRepository.findTotalsByMetric(metric)).get(metric)).map(LatencySummary::of);
+    }
+
+    static String edgeOf(RequestStatus from, RequestStatus to) {
+        return from + "->" + to;
+    }
+
+    private static boolean isAssigned(RequestStatus status) {
+        return status == RequestStatus.LAB_TEST_IN_PROGRESS || status == RequestStatus.DIAGNOSIS_IN_PROCESS;
+    }
+
+    private static long millisBetween(Instant from, Instant to) {
+        return Math.max(0, Duration.between(from, to).toMillis());
+    }
+
+    private static void addTo(LatencyHistogram target, LatencyHistogram histogram) {
+
+        for (int index = 0; index < histogram.buckets(); index++)
+            if (histogram.countAt(index) > 0)
+                target.add(index, histogram.countAt(index));
+        target.raiseMaxValue(histogram.getMaxValue());
+    }
+
+    private static TurnaroundBucket bucket(String id, String metric, int index, long total) {
+
+        TurnaroundBucket bucket = new TurnaroundBucket();
+        bucket.setId(id);
+        bucket.setMetric(metric);
+        bucket.setBucket(index);
+        bucket.setTotal(total);
+        return bucket;
+    }
+
+    private static <K> LatencyHistogram histogramOf(Map<K, LatencyHistogram> histograms, K key) {
+        return histograms.computeIfAbsent(key, ignored -> new LatencyHistogram());
+    }
+}
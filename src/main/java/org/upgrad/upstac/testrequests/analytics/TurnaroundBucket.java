@@ -0,0 +1,27 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+//One bucket of a turnaround histogram, summed over every node, see TurnaroundAnalytics
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_turnaround_bucket_metric", columnList = "metric,bucket"))
+public class TurnaroundBucket {
+
+    //Source, metric and bucket, e.g. live|edge:INITIATED->LAB_TEST_IN_PROGRESS|96
+    @Id
+    private String id;
+
+    private String metric;
+
+    private int bucket;
+
+    //Values counted in the bucket, or the largest value of the metric in its MAX_BUCKET row
+    private long total;
+
+}
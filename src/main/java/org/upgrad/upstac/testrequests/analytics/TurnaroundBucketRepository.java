@@ -0,0 +1,29 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TurnaroundBucketRepository extends JpaRepository<TurnaroundBucket, String> {
+
+    @Modifying
+    @Query("update TurnaroundBucket b set b.total = b.total + :count where b.id = :id")
+    int add(@Param("id") String id, @Param("count") long count);
+
+    @Modifying
+    @Query("update TurnaroundBucket b set b.total = case when b.total < :value then :value else b.total end where b.id = :id")
+    int raise(@Param("id") String id, @Param("value") long value);
+
+    //Rows of metric, bucket, summed count and largest total, the sum for counts and the largest for MAX_BUCKET
+    @Query("select b.metric, b.bucket, sum(b.total), max(b.total) from TurnaroundBucket b where b.metric = :metric group by b.metric, b.bucket")
+    List<Object[]> findTotalsByMetric(@Param("metric") String metric);
+
+    @Query("select b.metric, b.bucket, sum(b.total), max(b.total) from TurnaroundBucket b where b.metric like :prefix group by b.metric, b.bucket")
+    List<Object[]> findTotalsByMetricPrefix(@Param("prefix") String prefix);
+
+}
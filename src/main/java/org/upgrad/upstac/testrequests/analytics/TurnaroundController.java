@@ -0,0 +1,41 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api/government/analytics")
+public class TurnaroundController {
+
+    Logger log = LoggerFactory.getLogger(TurnaroundController.class);
+
+    @Autowired
+    private TurnaroundAnalytics turnaroundAnalytics;
+
+
+    //Totals of every node read from the turnaround buckets, e.g. /api/government/analytics/turnaround?pinCode=560001&assigneeId=3
+    @GetMapping("/turnaround")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public TurnaroundReport getTurnaround(@RequestParam(required = false) Integer pinCode, @RequestParam(required = false) Long assigneeId) {
+
+        TurnaroundReport report = new TurnaroundReport();
+        report.setEndToEnd(turnaroundAnalytics.endToEnd());
+        report.setEdges(turnaroundAnalytics.byEdge());
+
+        if (null != pinCode)
+            report.setPinCode(turnaroundAnalytics.endToEndForPinCode(pinCode).orElseGet(LatencySummary::new));
+
+        if (null != assigneeId)
+            report.setAssignee(turnaroundAnalytics.forAssignee(assigneeId).orElseGet(LatencySummary::new));
+
+        return report;
+    }
+
+}
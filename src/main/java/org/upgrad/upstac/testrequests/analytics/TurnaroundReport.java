@@ -0,0 +1,17 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.Map;
+
+//Latencies in milliseconds, pinCode and assignee are only present when asked for
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TurnaroundReport {
+
+    private LatencySummary endToEnd;
+    private LatencySummary pinCode;
+    private LatencySummary assignee;
+    private Map<String, LatencySummary> edges;
+}
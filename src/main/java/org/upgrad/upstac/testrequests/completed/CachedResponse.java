@@ -0,0 +1,42 @@
+package org.upgrad.upstac.testrequests.completed;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.time.Instant;
+
+//Encoded JSON of a completed request, with the ids needed to authorize it without a query
+@Getter
+public class CachedResponse {
+
+    private final Long requestId;
+    private final Long ownerId;
+    private final Long testerId;
+    private final Long doctorId;
+
+    private final ByteBuffer json;
+
+    private final Instant cachedAt;
+
+
+    CachedResponse(TestRequestSummary summary, ByteBuffer json, Instant cachedAt) {
+        this.requestId = summary.getRequestId();
+        this.ownerId = null != summary.getCreatedBy() ? summary.getCreatedBy().getId() : null;
+        this.testerId = null != summary.getLabResult() && null != summary.getLabResult().getTester() ? summary.getLabResult().getTester().getId() : null;
+        this.doctorId = null != summary.getConsultation() && null != summary.getConsultation().getDoctor() ? summary.getConsultation().getDoctor().getId() : null;
+        this.json = json;
+        this.cachedAt = cachedAt;
+    }
+
+    public int size() {
+        return json.capacity();
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        Channels.newChannel(outputStream).write(json.duplicate());
+    }
+}
@@ -0,0 +1,99 @@
+package org.upgrad.upstac.testrequests.completed;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.upgrad.upstac.search.ContactDetailsChanged;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded LRU of the encoded JSON for COMPLETED test requests, keyed by request id.
+ *
+ * A completed request, its lab result and its consultation never change again, but the JSON also carries the
+ * contact details of the request and of its owner, tester and doctor. Entries are evicted on the
+ * ContactDetailsChanged event for any of them; events are only seen by the node that made the change, so
+ * entries also expire after upstac.completed-cache.max-age-minutes to bound how long other nodes serve old
+ * details. With upstac.completed-cache.off-heap the bytes live in direct buffers outside the heap.
+ */
+@Component
+public class CompletedRequestCache {
+
+    @Value("${upstac.completed-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${upstac.completed-cache.off-heap:false}")
+    private boolean offHeap;
+
+    @Value("${upstac.completed-cache.max-age-minutes:10}")
+    private long maxAgeInMinutes;
+
+    private Map<Long, CachedResponse> entries;
+
+
+    @PostConstruct
+    void init() {
+        entries = Collections.synchronizedMap(new LinkedHashMap<Long, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public Optional<CachedResponse> get(Long requestId) {
+
+        CachedResponse cached = entries.get(requestId);
+        if (null != cached && cached.getCachedAt().plus(Duration.ofMinutes(maxAgeInMinutes)).isBefore(Instant.now())) {
+            entries.remove(requestId, cached);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cached);
+    }
+
+    public void put(TestRequestSummary summary, byte[] json) {
+
+        if (summary.getStatus() != RequestStatus.COMPLETED || maxEntries <= 0)
+            return;
+
+        ByteBuffer buffer;
+        if (offHeap) {
+            buffer = ByteBuffer.allocateDirect(json.length);
+            buffer.put(json);
+            buffer.flip();
+        } else {
+            buffer = ByteBuffer.wrap(json);
+        }
+
+        entries.put(summary.getRequestId(), new CachedResponse(summary, buffer.asReadOnlyBuffer(), Instant.now()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContactDetailsChanged(ContactDetailsChanged event) {
+
+        if (event.getKind() == ContactDetailsChanged.Kind.TEST_REQUEST) {
+            entries.remove(event.getId());
+            return;
+        }
+
+        Long userId = event.getId();
+        synchronized (entries) {
+            entries.values().removeIf(cached -> userId.equals(cached.getOwnerId())
+                    || userId.equals(cached.getTesterId())
+                    || userId.equals(cached.getDoctorId()));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,132 @@
+package org.upgrad.upstac.testrequests.completed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequestQueryService;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//JSON bodies for the detail and history endpoints, completed requests are written from CompletedRequestCache
+@Service
+public class CompletedResponseService {
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    private TestRequestQueryService testRequestQueryService;
+
+    @Autowired
+    private CompletedRequestCache completedRequestCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+
+    public Optional<byte[]> detailFor(User user, Long id) {
+
+        Optional<CachedResponse> cached = completedRequestCache.get(id);
+        if (cached.isPresent())
+            return cached.filter(response -> isVisibleTo(response, user)).map(this::toBytes);
+
+        return testRequestQueryService.findSummaryForUserByID(user, id).map(this::encode);
+    }
+
+    //Only the requests that are not cached are loaded, cached ones are copied into the array as they are
+    public byte[] historyFor(User user) {
+
+        List<Long> ids = new ArrayList<>();
+        Map<Long, CachedResponse> cachedById = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+
+        for (Object[] entry : testRequestRepository.findHistoryEntries(user)) {
+            Long id = (Long) entry[0];
+            ids.add(id);
+
+            Optional<CachedResponse> cached = entry[1] == RequestStatus.COMPLETED ? completedRequestCache.get(id) : Optional.empty();
+            if (cached.isPresent())
+                cachedById.put(id, cached.get());
+            else
+                missing.add(id);
+        }
+
+        Map<Long, TestRequestSummary> loadedById = missing.isEmpty()
+                ? Collections.emptyMap()
+                : testRequestRepository.findSummariesByRequestIdIn(missing)
+                    .stream()
+                    .collect(Collectors.toMap(TestRequestSummary::getRequestId, Function.identity()));
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write('[');
+            boolean first = true;
+            for (Long id : ids) {
+
+                CachedResponse cached = cachedById.get(id);
+                TestRequestSummary summary = loadedById.get(id);
+                if (null == cached && null == summary)
+                    continue;
+
+                if (first == false)
+                    out.write(',');
+                first = false;
+
+                if (null != cached)
+                    cached.writeTo(out);
+                else
+                    out.write(encode(summary));
+            }
+            out.write(']');
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new AppException("Unable to write history", e);
+        }
+    }
+
+    private boolean isVisibleTo(CachedResponse response, User user) {
+
+        switch (testRequestQueryService.roleOf(user)) {
+            case USER:
+                return user.getId().equals(response.getOwnerId());
+            case TESTER:
+                return user.getId().equals(response.getTesterId());
+            case DOCTOR:
+                return user.getId().equals(response.getDoctorId());
+            default:
+                return true;
+        }
+    }
+
+    private byte[] encode(TestRequestSummary summary) {
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(summary);
+            completedRequestCache.put(summary, json);
+            return json;
+        } catch (JsonProcessingException e) {
+            throw new AppException("Unable to write test request " + summary.getRequestId(), e);
+        }
+    }
+
+    private byte[] toBytes(CachedResponse response) {
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(response.size());
+            response.writeTo(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new AppException("Unable to write test request " + response.getRequestId(), e);
+        }
+    }
+}
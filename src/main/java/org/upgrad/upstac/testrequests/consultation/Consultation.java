@@ -1,27 +1,28 @@
 package org.upgrad.upstac.testrequests.consultation;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Data;
-import lombok.ToString;
-import org.upgrad.upstac.testrequests.TestRequest;
+import org.hibernate.annotations.GenericGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
 import org.upgrad.upstac.users.User;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Data
 @Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Consultation {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = "org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator")
     Long id;
 
-    @OneToOne(fetch = FetchType.LAZY)
-    @JsonIgnore
-    @ToString.Exclude
-    private TestRequest request;
+    //Reached only from TestRequest, which owns the foreign key; a mapped back reference cannot be lazy and would
+    //cost a query per consultation. The request_request_id column of older rows is only read by the link migration
 
     private DoctorSuggestion suggestion;
 
@@ -29,6 +30,7 @@ public class Consultation {
     private String comments;
 
     private LocalDate updatedOn;
+    private Instant updatedAt;
 
     @ManyToOne
     User doctor;
@@ -1,12 +1,15 @@
 package org.upgrad.upstac.testrequests.consultation;
 
 
+import io.swagger.annotations.ApiImplicitParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.upgrad.upstac.config.security.UserLoggedInService;
 import org.upgrad.upstac.exception.AppException;
@@ -15,9 +18,14 @@ import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.testrequests.TestRequestQueryService;
 import org.upgrad.upstac.testrequests.TestRequestUpdateService;
 import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
+import org.upgrad.upstac.testrequests.models.TestRequestFields;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.testrequests.versions.ListVersions;
 import org.upgrad.upstac.users.User;
+import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.ConstraintViolationException;
+import java.util.Collections;
 import java.util.List;
 
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
@@ -44,16 +52,22 @@ public class ConsultationController {
     @Autowired
     private UserLoggedInService userLoggedInService;
 
+    @Autowired
+    private ListVersions listVersions;
+
 
     @GetMapping("/in-queue")
     @PreAuthorize("hasAnyRole('DOCTOR')")
-    public List<TestRequest> getForConsultations() {
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
+    public List<TestRequestSummary> getForConsultations(@RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size, WebRequest webRequest) {
         //Implement this method to get the list of test requests having status as 'LAB_TEST_COMPLETED'
         // make use of the findBy() method from testRequestQueryService class
         //return the result
         // For reference check the method requestHistory() method from TestRequestController class
         try {
-            return testRequestQueryService.findBy(RequestStatus.LAB_TEST_COMPLETED);
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.queue(RequestStatus.LAB_TEST_COMPLETED), webRequest)))
+                return null;
+            return testRequestQueryService.findQueue(RequestStatus.LAB_TEST_COMPLETED, Collections.emptySet(), page, size);
         } catch (AppException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
@@ -61,9 +75,25 @@ public class ConsultationController {
 
     }
 
+    //Same queue with only the requested fields of each request
+    @ApiIgnore
+    @GetMapping(value = "/in-queue", params = "fields")
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    public ResponseEntity<?> getFieldsForConsultations(@RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size, @RequestParam String fields, WebRequest webRequest) {
+
+        try {
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.queue(RequestStatus.LAB_TEST_COMPLETED), webRequest)))
+                return null;
+            return ResponseEntity.ok(testRequestQueryService.findQueue(RequestStatus.LAB_TEST_COMPLETED, Collections.emptySet(), page, size, TestRequestFields.CATALOG.compile(fields)));
+        } catch (AppException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyRole('DOCTOR')")
-    public List<TestRequest> getForDoctor() {
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
+    public List<TestRequestSummary> getForDoctor(WebRequest webRequest) {
 
         // Create an object of User class and store the current logged in user first
         //Implement this method to return the list of test requests assigned to current doctor(make use of the above created User object)
@@ -71,12 +101,29 @@ public class ConsultationController {
         // For reference check the method getPendingTests() method from TestRequestController class
         try {
             User user = userLoggedInService.getLoggedInUser();
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.worklist(user), webRequest)))
+                return null;
             return testRequestQueryService.findByDoctor(user);
         } catch (AppException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
+    @ApiIgnore
+    @GetMapping(params = "fields")
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    public ResponseEntity<?> getFieldsForDoctor(@RequestParam String fields, WebRequest webRequest) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.worklist(user), webRequest)))
+                return null;
+            return ResponseEntity.ok(testRequestQueryService.findByDoctor(user, TestRequestFields.CATALOG.compile(fields)));
+        } catch (AppException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
 
     @PreAuthorize("hasAnyRole('DOCTOR')")
     @PutMapping("/assign/{id}")
@@ -96,6 +143,30 @@ public class ConsultationController {
     }
 
 
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    @PutMapping("/assign/next")
+    public TestRequest assignNextForConsultation() {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return testRequestUpdateService.assignNextForConsultation(user);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    @PutMapping("/renew/{id}")
+    public TestRequest renewConsultationLease(@PathVariable Long id) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return testRequestUpdateService.renewLease(id, user);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
     @PreAuthorize("hasAnyRole('DOCTOR')")
     @PutMapping("/update/{id}")
     public TestRequest updateConsultation(@PathVariable Long id, @RequestBody CreateConsultationRequest testResult) {
@@ -2,7 +2,6 @@ package org.upgrad.upstac.testrequests.consultation;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
-import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
 import java.util.List;
@@ -23,9 +22,6 @@ public interface ConsultationRepository extends JpaRepository<Consultation,Long>
 
 
     List<Consultation> findByDoctor(User user);
-    Optional<Consultation> findByRequest(TestRequest testRequest);
-
-    Optional<Consultation> findByDoctorAndRequest(User doctor,TestRequest testRequest);
 
 
 }
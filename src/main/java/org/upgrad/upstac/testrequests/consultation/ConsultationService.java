@@ -9,7 +9,9 @@ import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
 import javax.transaction.Transactional;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Optional;
 
 @Service
 @Validated
@@ -27,12 +29,17 @@ public class ConsultationService {
         // create object of Consultation class and use the setter methods to set doctor and testRequest details
         // make use of save() method of consultationRepository to return the Consultation object
         Consultation consultation = new Consultation();
-        consultation.setRequest(testRequest);
         consultation.setUpdatedOn(LocalDate.now());
         consultation.setDoctor(doctor);
         return consultationRepository.save(consultation);
     }
 
+    @Transactional
+    public void release(TestRequest testRequest) {
+
+        Optional.ofNullable(testRequest.getConsultation()).ifPresent(consultationRepository::delete);
+    }
+
     public Consultation updateConsultation(TestRequest testRequest, CreateConsultationRequest createConsultationRequest) {
         //Implement this method to update the consultation
         // create an object of Consultation and make use of setters to set Suggestion, Comments, and UpdatedOn values
@@ -41,6 +48,7 @@ public class ConsultationService {
         consultation.setComments(createConsultationRequest.getComments());
         consultation.setSuggestion(createConsultationRequest.getSuggestion());
         consultation.setUpdatedOn(LocalDate.now());
+        consultation.setUpdatedAt(Instant.now());
         return consultationRepository.save(consultation);
     }
 
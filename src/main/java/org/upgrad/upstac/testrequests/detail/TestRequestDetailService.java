@@ -0,0 +1,103 @@
+package org.upgrad.upstac.testrequests.detail;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.stereotype.Service;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.DeadlineExceededException;
+import org.upgrad.upstac.testrequests.TestRequestQueryService;
+import org.upgrad.upstac.testrequests.flow.TestRequestFlowRepository;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+import org.upgrad.upstac.testrequests.models.TestRequestFlowSummary;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.User;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads everything shown for one case for GET /api/testrequests/{id}/full.
+ *
+ * The role scoped request query (which joins the lab result, consultation, tester and doctor) and the flow
+ * timeline run in parallel on a bounded pool, so the latency is the slower of the two. The timeline is dropped
+ * when the request is not visible to the caller; both are reads by id, so nothing about other requests leaks.
+ * The tasks carry the caller's SecurityContext, which the replica routing needs to keep a user's reads on the
+ * primary right after their writes. When the pool is full the caller runs the queries itself, and past
+ * upstac.full-detail.deadline-ms for both the request fails with 504.
+ */
+@Service
+public class TestRequestDetailService {
+
+    private static Logger logger = LoggerFactory.getLogger(TestRequestDetailService.class);
+
+    @Autowired
+    private TestRequestQueryService testRequestQueryService;
+
+    @Autowired
+    private TestRequestFlowRepository testRequestFlowRepository;
+
+    @Value("${upstac.full-detail.threads:8}")
+    private int threads;
+
+    @Value("${upstac.full-detail.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${upstac.full-detail.deadline-ms:2000}")
+    private long deadlineInMs;
+
+    private ThreadPoolExecutor executor;
+
+    private Executor securedExecutor;
+
+
+    @PostConstruct
+    void start() {
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "test-request-detail-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        securedExecutor = new DelegatingSecurityContextExecutor(executor);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public Optional<TestRequestDetail> findDetailForUserByID(User user, Long id) {
+
+        CompletableFuture<Optional<TestRequestSummary>> request = CompletableFuture.supplyAsync(() -> testRequestQueryService.findSummaryForUserByID(user, id), securedExecutor);
+        CompletableFuture<List<TestRequestFlowSummary>> flow = CompletableFuture.supplyAsync(() -> testRequestFlowRepository.findSummariesByRequestId(id), securedExecutor);
+
+        CompletableFuture<Optional<TestRequestDetail>> detail = request.thenCompose(summary -> summary.isPresent()
+                ? flow.thenApply(steps -> Optional.of(new TestRequestDetail(summary.get(), steps)))
+                : CompletableFuture.completedFuture(Optional.empty()));
+
+        try {
+            return detail.get(deadlineInMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            request.cancel(true);
+            flow.cancel(true);
+            logger.warn("detail for request {} not loaded within {} ms", id, deadlineInMs);
+            throw new DeadlineExceededException("Request details not loaded in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Interrupted while loading request details", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new AppException("Unable to load request details", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.upgrad.upstac.testrequests.export;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.upgrad.upstac.testrequests.RequestStatus;
+
+import java.time.LocalDate;
+
+//Optional filters of /api/government/export, bound from query parameters
+@Data
+public class ExportFilter {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    private RequestStatus status;
+
+    private Integer pinCode;
+
+}
@@ -0,0 +1,18 @@
+package org.upgrad.upstac.testrequests.export;
+
+import org.upgrad.upstac.exception.AppException;
+
+import java.util.Locale;
+
+public enum ExportFormat {
+    CSV, NDJSON;
+
+    //Accepts any case, so format=csv works as well as format=CSV
+    public static ExportFormat of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new AppException("Unknown export format " + name + ", use CSV or NDJSON");
+        }
+    }
+}
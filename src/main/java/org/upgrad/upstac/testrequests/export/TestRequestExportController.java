@@ -0,0 +1,49 @@
+package org.upgrad.upstac.testrequests.export;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.upgrad.upstac.exception.AppException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+
+
+@RestController
+@RequestMapping("/api/government")
+public class TestRequestExportController {
+
+    Logger log = LoggerFactory.getLogger(TestRequestExportController.class);
+
+    @Autowired
+    private TestRequestExportService testRequestExportService;
+
+
+    //Streams straight to the servlet response, e.g. /api/government/export?format=CSV&status=COMPLETED&from=2020-08-01
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public void exportTestRequests(ExportFilter filter, @RequestParam(defaultValue = "NDJSON") String format, HttpServletResponse response) throws IOException {
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.of(format);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+
+        boolean csv = exportFormat == ExportFormat.CSV;
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"test-requests." + (csv ? "csv" : "ndjson") + "\"");
+
+        testRequestExportService.export(filter, exportFormat, response.getOutputStream());
+    }
+
+}
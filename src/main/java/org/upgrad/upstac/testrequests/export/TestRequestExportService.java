@@ -0,0 +1,176 @@
+package org.upgrad.upstac.testrequests.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.upgrad.upstac.config.datasource.UseWorkload;
+import org.upgrad.upstac.config.datasource.Workload;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.models.ConsultationSummary;
+import org.upgrad.upstac.testrequests.models.LabResultSummary;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Streams test requests with their lab result and consultation to the response as CSV or NDJSON.
+ *
+ * Rows come from a forward only cursor over the summary projection, read in a read only transaction with a
+ * fixed fetch size, and each row is written out as soon as it is read. Nothing is held per row, so memory
+ * use does not grow with the number of rows. MySQL would read the whole result before returning the first
+ * row unless the connection has useCursorFetch=true, so there the fetch size is Integer.MIN_VALUE, which
+ * makes the driver stream rows one by one whichever pool or replica the export reads from.
+ */
+@UseWorkload(Workload.REPORTING)
+@Service
+public class TestRequestExportService {
+
+    private static Logger logger = LoggerFactory.getLogger(TestRequestExportService.class);
+
+    static final List<String> CSV_HEADER = Arrays.asList("requestId", "created", "status", "name", "gender", "age", "address", "pinCode",
+            "email", "phoneNumber", "result", "bloodPressure", "heartBeat", "temperature", "oxygenLevel", "labComments", "labUpdatedOn",
+            "tester", "suggestion", "consultationComments", "consultationUpdatedOn", "doctor");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${upstac.export.fetch-size:500}")
+    private int fetchSize;
+
+    private volatile Boolean mySql;
+
+
+    @Transactional(readOnly = true)
+    public long export(ExportFilter filter, ExportFormat format, OutputStream outputStream) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        long rows = 0;
+
+        if (format == ExportFormat.CSV) {
+            writeCsvLine(writer, CSV_HEADER);
+            writer.write('\n');
+        }
+
+        try (Stream<TestRequestSummary> summaries = queryFor(filter).getResultStream()) {
+
+            for (TestRequestSummary summary : (Iterable<TestRequestSummary>) summaries::iterator) {
+
+                if (format == ExportFormat.CSV)
+                    writeCsvLine(writer, csvValuesOf(summary));
+                else
+                    writer.write(objectMapper.writeValueAsString(summary));
+                writer.write('\n');
+                rows++;
+            }
+        }
+
+        writer.flush();
+        logger.info("exported {} test requests as {}", rows, format);
+        return rows;
+    }
+
+    private TypedQuery<TestRequestSummary> queryFor(ExportFilter filter) {
+
+        List<String> conditions = new ArrayList<>();
+        if (null != filter.getFrom())
+            conditions.add("t.created >= :from");
+        if (null != filter.getTo())
+            conditions.add("t.created <= :to");
+        if (null != filter.getStatus())
+            conditions.add("t.status = :status");
+        if (null != filter.getPinCode())
+            conditions.add("t.pinCode = :pinCode");
+
+        String where = conditions.isEmpty() ? "" : "where " + String.join(" and ", conditions) + " ";
+        TypedQuery<TestRequestSummary> query = entityManager.createQuery(TestRequestRepository.SUMMARY_SELECT + where + "order by t.requestId", TestRequestSummary.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSizeHint())
+                .setHint(QueryHints.HINT_READONLY, true);
+
+        if (null != filter.getFrom())
+            query.setParameter("from", filter.getFrom());
+        if (null != filter.getTo())
+            query.setParameter("to", filter.getTo());
+        if (null != filter.getStatus())
+            query.setParameter("status", filter.getStatus());
+        if (null != filter.getPinCode())
+            query.setParameter("pinCode", filter.getPinCode());
+
+        return query;
+    }
+
+    //Read from the connection of the export transaction, all pools and replicas run the same database
+    private int fetchSizeHint() {
+
+        if (null == mySql)
+            mySql = entityManager.unwrap(Session.class)
+                    .doReturningWork(connection -> connection.getMetaData().getDatabaseProductName())
+                    .toLowerCase(Locale.ROOT).contains("mysql");
+
+        return mySql ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    static List<Object> csvValuesOf(TestRequestSummary summary) {
+
+        LabResultSummary labResult = summary.getLabResult();
+        ConsultationSummary consultation = summary.getConsultation();
+
+        return Arrays.asList(summary.getRequestId(), summary.getCreated(), summary.getStatus(), summary.getName(), summary.getGender(),
+                summary.getAge(), summary.getAddress(), summary.getPinCode(), summary.getEmail(), summary.getPhoneNumber(),
+                null != labResult ? labResult.getResult() : null,
+                null != labResult ? labResult.getBloodPressure() : null,
+                null != labResult ? labResult.getHeartBeat() : null,
+                null != labResult ? labResult.getTemperature() : null,
+                null != labResult ? labResult.getOxygenLevel() : null,
+                null != labResult ? labResult.getComments() : null,
+                null != labResult ? labResult.getUpdatedOn() : null,
+                null != labResult ? userNameOf(labResult.getTester()) : null,
+                null != consultation ? consultation.getSuggestion() : null,
+                null != consultation ? consultation.getComments() : null,
+                null != consultation ? consultation.getUpdatedOn() : null,
+                null != consultation ? userNameOf(consultation.getDoctor()) : null);
+    }
+
+    private static String userNameOf(UserSummary user) {
+        return null != user ? user.getUserName() : null;
+    }
+
+    static void writeCsvLine(Writer writer, List<?> values) throws IOException {
+
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0)
+                writer.write(',');
+            writer.write(csvEscape(values.get(i)));
+        }
+    }
+
+    static String csvEscape(Object value) {
+
+        if (null == value)
+            return "";
+
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0)
+            return text;
+
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,88 @@
+package org.upgrad.upstac.testrequests.feed;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.users.User;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+//One subscriber with its own bounded outbox, sent by at most one thread at a time
+class FeedSubscription {
+
+    private final SseEmitter emitter;
+
+    private final Predicate<TestRequestStatusChanged> filter;
+
+    private final Queue<SseEmitter.SseEventBuilder> outbox;
+
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+
+    FeedSubscription(SseEmitter emitter, Predicate<TestRequestStatusChanged> filter, int capacity) {
+        this.emitter = emitter;
+        this.filter = filter;
+        this.outbox = new ArrayBlockingQueue<>(capacity);
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    boolean wants(TestRequestStatusChanged event) {
+        return filter.test(event);
+    }
+
+    //false when the outbox is full, the subscriber has stopped reading
+    boolean offer(SseEmitter.SseEventBuilder event) {
+        return outbox.offer(event);
+    }
+
+    SseEmitter.SseEventBuilder poll() {
+        return outbox.poll();
+    }
+
+    boolean hasPending() {
+        return !outbox.isEmpty();
+    }
+
+    //true for the one caller that should start sending
+    boolean claimSending() {
+        return sending.compareAndSet(false, true);
+    }
+
+    void releaseSending() {
+        sending.set(false);
+    }
+
+    void discard() {
+        outbox.clear();
+    }
+
+
+    //Testers and doctors follow their queue and their own assignments, patients follow their own requests.
+    //pinCodes are the ones a tester covers, unused for other roles
+    static Predicate<TestRequestStatusChanged> filterFor(User user, Set<Integer> pinCodes) {
+
+        Long userId = user.getId();
+
+        if (user.doesRoleIsAuthority())
+            return event -> true;
+
+        if (user.doesRoleIsTester()) {
+            return event -> Objects.equals(userId, event.getTesterId())
+                    || (event.touches(RequestStatus.INITIATED) && (pinCodes.isEmpty() || pinCodes.contains(event.getPinCode())));
+        }
+
+        if (user.doesRoleIsDoctor())
+            return event -> Objects.equals(userId, event.getDoctorId())
+                    || event.touches(RequestStatus.LAB_TEST_COMPLETED);
+
+        return event -> Objects.equals(userId, event.getCreatedById());
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.upgrad.upstac.testrequests.feed;
+
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.upgrad.upstac.config.security.UserLoggedInService;
+import org.upgrad.upstac.users.User;
+
+
+@RestController
+public class TestRequestFeedController {
+
+
+    @Autowired
+    private TestRequestFeedService testRequestFeedService;
+
+    @Autowired
+    private UserLoggedInService userLoggedInService;
+
+
+    //Pushes status transitions instead of clients polling the queue and history endpoints
+    @PreAuthorize("hasAnyRole('USER','GOVERNMENT_AUTHORITY','TESTER','DOCTOR')")
+    @GetMapping(value = "/api/testrequests/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe() {
+
+        User user = userLoggedInService.getLoggedInUser();
+        return testRequestFeedService.subscribe(user);
+    }
+
+
+}
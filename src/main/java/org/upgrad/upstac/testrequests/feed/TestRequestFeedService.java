@@ -0,0 +1,160 @@
+package org.upgrad.upstac.testrequests.feed;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Pushes status transitions to the subscribers that want them.
+ *
+ * Publishing only puts the event in each subscriber's outbox, of upstac.feed.outbox-capacity events, and a pool of
+ * upstac.feed.sender-threads drains every outbox on its own, so a slow client delays nobody else. A client whose outbox
+ * fills has stopped reading and is dropped; until its socket write gives up it holds one sender thread. A comment is
+ * sent every upstac.feed.heartbeat-ms so proxies keep idle streams open and closed clients are noticed.
+ */
+@Service
+public class TestRequestFeedService {
+
+    private static Logger logger = LoggerFactory.getLogger(TestRequestFeedService.class);
+
+    @Autowired
+    private UserService userService;
+
+    @Value("${upstac.feed.timeout-ms:1800000}")
+    private long timeoutInMs;
+
+    @Value("${upstac.feed.sender-threads:8}")
+    private int senderThreads = 8;
+
+    @Value("${upstac.feed.outbox-capacity:256}")
+    private int outboxCapacity = 256;
+
+    private final List<FeedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private ExecutorService senderPool;
+
+    private Executor senders;
+
+
+    @PostConstruct
+    void start() {
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        senderPool = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "test-request-feed-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        senders = senderPool;
+    }
+
+    public SseEmitter subscribe(User user) {
+
+        SseEmitter emitter = new SseEmitter(timeoutInMs);
+        Set<Integer> pinCodes = user.doesRoleIsTester() ? userService.findPinCodesCovered(user) : Collections.emptySet();
+        subscribe(emitter, FeedSubscription.filterFor(user, pinCodes));
+        return emitter;
+    }
+
+    FeedSubscription subscribe(SseEmitter emitter, Predicate<TestRequestStatusChanged> filter) {
+
+        FeedSubscription subscription = new FeedSubscription(emitter, filter, outboxCapacity);
+
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+        emitter.onError(throwable -> subscriptions.remove(subscription));
+
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(TestRequestStatusChanged event) {
+        publish(event);
+    }
+
+    void publish(TestRequestStatusChanged event) {
+
+        for (FeedSubscription subscription : subscriptions) {
+
+            if (subscription.wants(event) == false)
+                continue;
+
+            enqueue(subscription, SseEmitter.event()
+                    .id(event.getRequestId() + "-" + event.getToStatus())
+                    .name("status")
+                    .data(event));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${upstac.feed.heartbeat-ms:15000}")
+    public void heartbeat() {
+
+        for (FeedSubscription subscription : subscriptions)
+            enqueue(subscription, SseEmitter.event().comment("heartbeat"));
+    }
+
+    private void enqueue(FeedSubscription subscription, SseEmitter.SseEventBuilder event) {
+
+        if (subscription.offer(event) == false) {
+            //Not completed here, that waits for the send the client is stuck in; its socket or timeout ends it
+            logger.debug("dropping feed subscriber with {} events unsent", outboxCapacity);
+            drop(subscription);
+            return;
+        }
+
+        if (subscription.claimSending())
+            senders.execute(() -> drain(subscription));
+    }
+
+    //Rechecks after letting go, an event offered just before then found sending still claimed
+    private void drain(FeedSubscription subscription) {
+
+        do {
+            SseEmitter.SseEventBuilder event;
+            while (null != (event = subscription.poll())) {
+                try {
+                    subscription.getEmitter().send(event);
+                } catch (IOException | IllegalStateException e) {
+                    logger.debug("dropping feed subscriber {}", e.getMessage());
+                    drop(subscription);
+                    return;
+                }
+            }
+            subscription.releaseSending();
+        } while (subscription.hasPending() && subscription.claimSending());
+    }
+
+    private void drop(FeedSubscription subscription) {
+        subscriptions.remove(subscription);
+        subscription.discard();
+    }
+
+    int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senderPool.shutdownNow();
+        subscriptions.forEach(subscription -> subscription.getEmitter().complete());
+    }
+
+}
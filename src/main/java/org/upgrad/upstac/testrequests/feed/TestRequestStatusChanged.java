@@ -0,0 +1,60 @@
+package org.upgrad.upstac.testrequests.feed;
+
+import lombok.Data;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.users.User;
+
+import java.time.Instant;
+
+@Data
+public class TestRequestStatusChanged {
+
+    private Long requestId;
+
+    //null when the request has just been created
+    private RequestStatus fromStatus;
+    private RequestStatus toStatus;
+
+    private Integer pinCode;
+    private Long priorityKey;
+
+    private Long createdById;
+    private Long testerId;
+    private Long doctorId;
+
+    //Set when an expired lease took the request back from this tester or doctor
+    private Long releasedFromId;
+
+    private Instant happenedAt;
+
+
+    public static TestRequestStatusChanged from(TestRequest testRequest, RequestStatus fromStatus) {
+
+        TestRequestStatusChanged event = new TestRequestStatusChanged();
+        event.setRequestId(testRequest.getRequestId());
+        event.setFromStatus(fromStatus);
+        event.setToStatus(testRequest.getStatus());
+        event.setPinCode(testRequest.getPinCode());
+        event.setPriorityKey(testRequest.getPriorityKey());
+        event.setCreatedById(idOf(testRequest.getCreatedBy()));
+
+        if (null != testRequest.getLabResult())
+            event.setTesterId(idOf(testRequest.getLabResult().getTester()));
+
+        if (null != testRequest.getConsultation())
+            event.setDoctorId(idOf(testRequest.getConsultation().getDoctor()));
+
+        event.setHappenedAt(Instant.now());
+        return event;
+    }
+
+    private static Long idOf(User user) {
+        return null != user ? user.getId() : null;
+    }
+
+    public boolean touches(RequestStatus status) {
+        return status == fromStatus || status == toStatus;
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.consultation.Consultation;
+import org.upgrad.upstac.testrequests.lab.LabResult;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+//One filterable column, the aliases are the ones SUMMARY_SELECT joins under
+public enum Criterion {
+
+    STATUS(TestRequest.class, "status", true, "t.status = :status", RequestFilter::getStatus),
+    RESULT(LabResult.class, "result", true, "l.result = :result", RequestFilter::getResult),
+    SUGGESTION(Consultation.class, "suggestion", true, "c.suggestion = :suggestion", RequestFilter::getSuggestion),
+    PIN_CODE(TestRequest.class, "pinCode", true, "t.pinCode = :pinCode", RequestFilter::getPinCode),
+    GENDER(TestRequest.class, "gender", true, "t.gender = :gender", RequestFilter::getGender),
+    MIN_AGE(TestRequest.class, "age", false, "t.age >= :minAge", RequestFilter::getMinAge),
+    MAX_AGE(TestRequest.class, "age", false, "t.age <= :maxAge", RequestFilter::getMaxAge),
+    FROM(TestRequest.class, "created", false, "t.created >= :from", RequestFilter::getFrom),
+    TO(TestRequest.class, "created", false, "t.created <= :to", RequestFilter::getTo);
+
+    private final Class<?> entity;
+    private final String column;
+    private final boolean equality;
+    private final String predicate;
+    private final Function<RequestFilter, Object> value;
+
+    Criterion(Class<?> entity, String column, boolean equality, String predicate, Function<RequestFilter, Object> value) {
+        this.entity = entity;
+        this.column = column;
+        this.equality = equality;
+        this.predicate = predicate;
+        this.value = value;
+    }
+
+    public Class<?> getEntity() {
+        return entity;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public boolean isEquality() {
+        return equality;
+    }
+
+    public String getPredicate() {
+        return predicate;
+    }
+
+    public String getParameter() {
+        return predicate.substring(predicate.indexOf(':') + 1);
+    }
+
+    //Criteria given in the filter with their values, in declaration order
+    public static Map<Criterion, Object> valuesOf(RequestFilter filter) {
+
+        Map<Criterion, Object> values = new EnumMap<>(Criterion.class);
+        for (Criterion criterion : values())
+            if (null != criterion.value.apply(filter))
+                values.put(criterion, criterion.value.apply(filter));
+        return values;
+    }
+}
@@ -0,0 +1,17 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+
+import java.util.List;
+
+//nextAfter is the cursor for the following page, null on the last page
+@Data
+@AllArgsConstructor
+public class FilterPage {
+
+    private List<TestRequestSummary> requests;
+    private Long nextAfter;
+    private String index;
+}
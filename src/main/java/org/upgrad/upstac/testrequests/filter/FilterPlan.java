@@ -0,0 +1,19 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Set;
+
+//Query for one filter shape, with the index expected to serve it
+@Data
+@AllArgsConstructor
+public class FilterPlan {
+
+    private Set<Criterion> shape;
+    private String index;
+    private String jpql;
+
+    //Pages after the first of a plan read in (created, requestId) order, which seek past the created date of the cursor; null otherwise
+    private String nextPageJpql;
+}
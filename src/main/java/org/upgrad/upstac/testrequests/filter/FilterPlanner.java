@@ -0,0 +1,151 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import org.springframework.stereotype.Component;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a filter shape (which criteria are present, not their values) into one query and the composite index
+ * that serves it.
+ *
+ * Pages are read in request id order, so only indexes that end in requestId are considered, and one serves a
+ * shape only when the shape has an equality criterion on every column before requestId; that equality prefix
+ * then hands back rows already in requestId order and the keyset cursor is a seek into it. The one exception
+ * is created right before requestId with a from or to criterion: request ids are time ordered, so reading the
+ * created range in (created, requestId) order is request id order too, and later pages also seek past the
+ * created date of the cursor. Other range criteria, low cardinality columns such as gender, and criteria on the
+ * lab result or consultation are checked on the rows read that way. The index with the most columns wins. The
+ * indexes are read from the @Table annotation of TestRequest, so the planner only knows about indexes the
+ * schema actually has. Shapes no index can serve are rejected instead of falling back to a table scan.
+ *
+ * There are only a few hundred possible shapes, so every plan is kept; the query text of a shape never changes,
+ * which also lets Hibernate reuse its own parsed plan.
+ */
+@Component
+public class FilterPlanner {
+
+    static final List<Class<?>> INDEXED_ENTITIES = Collections.singletonList(TestRequest.class);
+
+    static final String ORDER_COLUMN = "requestId";
+
+    //The only range column whose order agrees with request id order
+    static final String CREATED_COLUMN = "created";
+
+    private final List<IndexDefinition> indexes = indexesOf(INDEXED_ENTITIES);
+
+    private final Map<Set<Criterion>, FilterPlan> plans = new ConcurrentHashMap<>();
+
+
+    public FilterPlan planFor(Set<Criterion> shape) {
+
+        if (shape.isEmpty())
+            throw new AppException("At least one filter is required");
+
+        return plans.computeIfAbsent(EnumSet.copyOf(shape), this::plan);
+    }
+
+    int cachedPlans() {
+        return plans.size();
+    }
+
+    private FilterPlan plan(Set<Criterion> shape) {
+
+        IndexDefinition best = null;
+        int bestScore = 0;
+        for (IndexDefinition index : indexes) {
+            int score = index.score(shape);
+            if (score > bestScore) {
+                best = index;
+                bestScore = score;
+            }
+        }
+
+        if (null == best)
+            throw new AppException("No index supports filtering by " + shape + ", add one of " + leadingCriteria());
+
+        String where = TestRequestRepository.SUMMARY_SELECT + "where " + shape.stream().map(Criterion::getPredicate).collect(Collectors.joining(" and "));
+        if (best.seeksCreatedRange(shape) == false)
+            return new FilterPlan(Collections.unmodifiableSet(shape), best.name, where + " and t.requestId > :after order by t.requestId", null);
+
+        String order = " order by t.created, t.requestId";
+        return new FilterPlan(Collections.unmodifiableSet(shape), best.name, where + " and t.requestId > :after" + order,
+                where + " and t.created >= :afterCreated and t.requestId > :after" + order);
+    }
+
+    //Criteria that on their own can use an index
+    private Set<Criterion> leadingCriteria() {
+
+        Set<Criterion> leading = EnumSet.noneOf(Criterion.class);
+        for (Criterion criterion : Criterion.values())
+            for (IndexDefinition index : indexes)
+                if (index.score(EnumSet.of(criterion)) > 0)
+                    leading.add(criterion);
+        return leading;
+    }
+
+    static List<IndexDefinition> indexesOf(List<Class<?>> entities) {
+
+        List<IndexDefinition> definitions = new ArrayList<>();
+        for (Class<?> entity : entities) {
+            Table table = entity.getAnnotation(Table.class);
+            if (null == table)
+                continue;
+            for (Index index : table.indexes())
+                definitions.add(new IndexDefinition(entity, index.name(), Arrays.stream(index.columnList().split(","))
+                        .map(String::trim)
+                        .collect(Collectors.toList())));
+        }
+        return definitions;
+    }
+
+    static class IndexDefinition {
+
+        final Class<?> entity;
+        final String name;
+        final List<String> columns;
+
+        IndexDefinition(Class<?> entity, String name, List<String> columns) {
+            this.entity = entity;
+            this.name = name;
+            this.columns = columns;
+        }
+
+        //Columns before requestId when the shape has an equality criterion on each of them, or on each but a
+        //created range right before requestId, otherwise 0
+        int score(Set<Criterion> shape) {
+
+            int last = columns.size() - 1;
+            if (last < 1 || columns.get(last).equals(ORDER_COLUMN) == false)
+                return 0;
+
+            List<String> equalityColumns = columns.subList(0, last);
+            if (columns.get(last - 1).equals(CREATED_COLUMN)) {
+                if (seeksCreatedRange(shape) == false)
+                    return 0;
+                equalityColumns = columns.subList(0, last - 1);
+            }
+
+            for (String column : equalityColumns) {
+                boolean equality = shape.stream()
+                        .anyMatch(criterion -> criterion.isEquality() && criterion.getEntity() == entity && criterion.getColumn().equals(column));
+                if (equality == false)
+                    return 0;
+            }
+            return last;
+        }
+
+        boolean seeksCreatedRange(Set<Criterion> shape) {
+
+            int last = columns.size() - 1;
+            return last >= 1 && columns.get(last - 1).equals(CREATED_COLUMN) && shape.stream()
+                    .anyMatch(criterion -> criterion.isEquality() == false && criterion.getEntity() == entity && criterion.getColumn().equals(CREATED_COLUMN));
+        }
+    }
+}
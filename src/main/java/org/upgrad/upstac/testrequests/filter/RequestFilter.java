@@ -0,0 +1,36 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.LocalDate;
+
+//Optional filters of /api/government/requests, bound from query parameters, all given filters must match
+@Data
+public class RequestFilter {
+
+    private RequestStatus status;
+
+    private TestStatus result;
+
+    private DoctorSuggestion suggestion;
+
+    private Integer pinCode;
+
+    private Gender gender;
+
+    private Integer minAge;
+
+    private Integer maxAge;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+}
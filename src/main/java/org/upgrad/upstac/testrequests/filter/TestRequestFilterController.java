@@ -0,0 +1,38 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.upgrad.upstac.exception.AppException;
+
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+
+
+@RestController
+@RequestMapping("/api/government")
+public class TestRequestFilterController {
+
+    Logger log = LoggerFactory.getLogger(TestRequestFilterController.class);
+
+    @Autowired
+    private TestRequestFilterService testRequestFilterService;
+
+
+    //e.g. /api/government/requests?status=COMPLETED&from=2020-08-01&size=100, then pass nextAfter back as after
+    @GetMapping("/requests")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public FilterPage findRequests(RequestFilter filter, @RequestParam(required = false) Long after, @RequestParam(defaultValue = "50") int size) {
+
+        try {
+            return testRequestFilterService.find(filter, after, size);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.upgrad.upstac.config.datasource.UseWorkload;
+import org.upgrad.upstac.config.datasource.Workload;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Pages through test requests matching a RequestFilter in request id order. Pages are keyset based: the
+ * cursor is the last request id of the previous page, so each page costs the same however deep it is.
+ */
+@UseWorkload(Workload.REPORTING)
+@Service
+public class TestRequestFilterService {
+
+    static final int MAX_PAGE_SIZE = 500;
+
+    @Autowired
+    private FilterPlanner filterPlanner;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    @Transactional(readOnly = true)
+    public FilterPage find(RequestFilter filter, Long after, int size) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE)
+            throw new AppException("Page size should be between 1 and " + MAX_PAGE_SIZE);
+
+        validateRanges(filter);
+
+        Map<Criterion, Object> values = Criterion.valuesOf(filter);
+        FilterPlan plan = filterPlanner.planFor(values.keySet());
+
+        Optional<LocalDate> afterCreated = null != after && null != plan.getNextPageJpql() ? createdOf(after) : Optional.empty();
+
+        TypedQuery<TestRequestSummary> query = entityManager.createQuery(afterCreated.isPresent() ? plan.getNextPageJpql() : plan.getJpql(), TestRequestSummary.class)
+                .setParameter("after", null == after ? 0L : after)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setMaxResults(size);
+        values.forEach((criterion, value) -> query.setParameter(criterion.getParameter(), value));
+        afterCreated.ifPresent(created -> query.setParameter("afterCreated", created));
+
+        List<TestRequestSummary> requests = query.getResultList();
+        Long nextAfter = requests.size() < size ? null : requests.get(requests.size() - 1).getRequestId();
+        return new FilterPage(requests, nextAfter, plan.getIndex());
+    }
+
+    //A cursor whose request is gone pages on without the created seek
+    private Optional<LocalDate> createdOf(Long requestId) {
+
+        return entityManager.createQuery("select t.created from TestRequest t where t.requestId = :requestId", LocalDate.class)
+                .setParameter("requestId", requestId)
+                .getResultList().stream().findFirst();
+    }
+
+    private void validateRanges(RequestFilter filter) {
+
+        if (null != filter.getMinAge() && null != filter.getMaxAge() && filter.getMinAge() > filter.getMaxAge())
+            throw new AppException("minAge cannot be greater than maxAge");
+
+        if (null != filter.getFrom() && null != filter.getTo() && filter.getFrom().isAfter(filter.getTo()))
+            throw new AppException("from cannot be after to");
+    }
+}
@@ -0,0 +1,559 @@
+package org.upgrad.upstac.testrequests.flow;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIds;
+import org.upgrad.upstac.testrequests.RequestStatus;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Optional write-behind mode of the flow log, turned on with upstac.flow.write-behind.enabled.
+ *
+ * Flow rows are queued once the transition commits and a single writer thread inserts them in JDBC batches.
+ * Every queued row is first appended to a local journal, replayed at the next startup, so rows survive a crash
+ * of the process (and of the machine with fsync on). The journal is split into segments of segment-rows rows;
+ * a segment is deleted as soon as every row in it has been written, so under steady load the journal holds
+ * about one segment instead of growing until the queue happens to be empty. Each row gets its id when it is
+ * submitted and the id is journaled with it, so replaying a segment after a crash between a batch insert and
+ * the delete skips the rows already in the table instead of writing them twice.
+ *
+ * A batch the database refuses for integrity reasons is split until the refused rows are found; those are
+ * appended to the .rejected file next to the journal and counted, the rest of the batch is written. Other
+ * failures, such as the database being down, retry the rows not yet written with a growing delay.
+ *
+ * When the queue stays full for offer-timeout-ms the caller writes its row itself, so a slow database slows
+ * transitions down instead of losing rows. That write runs after the caller's transaction committed, so a
+ * failure is counted and logged rather than thrown, and the row stays in its segment for the next startup.
+ * On shutdown the queue is drained before the data source closes.
+ */
+@Component
+public class FlowWriteBehind {
+
+    static final String INSERT = "insert into test_request_flow (id, request_request_id, from_status, to_status, changed_by_id, happened_on, happened_at) values (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowWriteBehind.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${upstac.flow.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upstac.flow.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${upstac.flow.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${upstac.flow.write-behind.flush-interval-ms:200}")
+    private long flushIntervalInMilliSeconds;
+
+    @Value("${upstac.flow.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutInMilliSeconds;
+
+    @Value("${upstac.flow.write-behind.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutInMilliSeconds;
+
+    //No default, the journal holds rows until they are written and has to survive restarts
+    @Value("${upstac.flow.write-behind.journal:}")
+    private String journalPath;
+
+    @Value("${upstac.flow.write-behind.fsync:false}")
+    private boolean fsync;
+
+    @Value("${upstac.flow.write-behind.segment-rows:10000}")
+    private int segmentRows;
+
+    @Value("${spring.jpa.properties." + TimeOrderedIdGenerator.NODE_ID_SETTING + ":}")
+    private String nodeId;
+
+    @Value("${spring.jpa.properties." + TimeOrderedIdGenerator.STATE_FILE_SETTING + ":}")
+    private String idStateFile;
+
+    private TimeOrderedIds ids;
+
+    private BlockingQueue<Journaled> queue;
+
+    private FileChannel journal;
+
+    private final Object journalLock = new Object();
+
+    //Segment being appended to and its row count, guarded by journalLock
+    private long segment;
+    private int segmentRowCount;
+
+    //Rows not yet inserted per segment, a segment is deleted when its count reaches zero; guarded by journalLock
+    private final Map<Long, AtomicLong> unwrittenBySegment = new HashMap<>();
+
+    private final AtomicLong unwritten = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    private Counter written;
+    private Counter callerWrites;
+    private Counter callerWriteFailures;
+    private Counter failedBatches;
+    private Counter rejectedRows;
+    private Timer batchTimer;
+    private Timer enqueueTimer;
+
+
+    @PostConstruct
+    public void start() throws IOException {
+
+        if (enabled == false)
+            return;
+
+        open();
+
+        writer = new Thread(this::drain, "flow-writer");
+        writer.start();
+    }
+
+    //Recovers what a previous run left and opens a new journal, without starting the writer
+    void open() throws IOException {
+
+        if (journalPath.trim().isEmpty())
+            throw new IllegalStateException("Set upstac.flow.write-behind.journal to a file on persistent storage when upstac.flow.write-behind.enabled is true");
+
+        ids = TimeOrderedIds.forNode(TimeOrderedIds.nodeIdOf(nodeId), TimeOrderedIds.stateFileOf(idStateFile));
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        meterRegistry.gauge("upstac.flow.write_behind.queue.size", queue, BlockingQueue::size);
+        meterRegistry.gauge("upstac.flow.write_behind.unwritten", unwritten);
+        written = meterRegistry.counter("upstac.flow.write_behind.written");
+        callerWrites = meterRegistry.counter("upstac.flow.write_behind.caller_writes");
+        callerWriteFailures = meterRegistry.counter("upstac.flow.write_behind.caller_write_failures");
+        meterRegistry.gauge("upstac.flow.write_behind.journal.segments", unwrittenBySegment, segments -> {
+            synchronized (journalLock) {
+                return segments.size();
+            }
+        });
+        failedBatches = meterRegistry.counter("upstac.flow.write_behind.failed_batches");
+        rejectedRows = meterRegistry.counter("upstac.flow.write_behind.rejected_rows");
+        batchTimer = meterRegistry.timer("upstac.flow.write_behind.batch");
+        enqueueTimer = meterRegistry.timer("upstac.flow.write_behind.enqueue");
+
+        Path path = Paths.get(journalPath);
+        if (null != path.getParent())
+            Files.createDirectories(path.getParent());
+
+        segment = recover(path) + 1;
+        segmentRowCount = 0;
+        journal = openSegment(segment);
+        running = true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Queues the row once the surrounding transaction commits, nothing is written if it rolls back.
+    //The id is assigned now so the event published for the row carries it
+    public void submitAfterCommit(TestRequestFlowLogged flow) {
+
+        assignId(flow);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive() == false) {
+            submit(flow);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(flow);
+            }
+        });
+    }
+
+    void submit(TestRequestFlowLogged flow) {
+
+        if (running == false) {
+            insertFromCaller(flow, null);
+            return;
+        }
+
+        long started = System.nanoTime();
+        try {
+            Journaled journaled;
+            try {
+                journaled = journal(flow);
+            } catch (IOException e) {
+                logger.warn("could not journal flow of request {}, writing it directly", flow.getRequestId(), e);
+                insertFromCaller(flow, null);
+                return;
+            }
+
+            try {
+                if (queue.offer(journaled, offerTimeoutInMilliSeconds, TimeUnit.MILLISECONDS) == false) {
+                    callerWrites.increment();
+                    insertFromCaller(flow, journaled);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                insertFromCaller(flow, journaled);
+            }
+        } finally {
+            enqueueTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Journaled journal(TestRequestFlowLogged flow) throws IOException {
+
+        assignId(flow);
+        synchronized (journalLock) {
+            if (segmentRowCount >= segmentRows)
+                rotate();
+
+            journal.write(ByteBuffer.wrap(toLine(flow).getBytes(StandardCharsets.UTF_8)));
+            if (fsync)
+                journal.force(false);
+
+            segmentRowCount++;
+            unwrittenBySegment.computeIfAbsent(segment, key -> new AtomicLong()).incrementAndGet();
+            unwritten.incrementAndGet();
+            return new Journaled(flow, segment);
+        }
+    }
+
+    //Called after the caller's transaction committed, so a failure must not reach the caller
+    private void insertFromCaller(TestRequestFlowLogged flow, Journaled journaled) {
+
+        try {
+            insert(Collections.singletonList(flow));
+            if (null != journaled)
+                written(Collections.singletonList(journaled));
+        } catch (RuntimeException e) {
+            if (null != callerWriteFailures)
+                callerWriteFailures.increment();
+            if (null == journaled)
+                logger.error("lost flow row {}, it could neither be journaled nor written", toLine(flow).trim(), e);
+            else
+                logger.error("could not write flow of request {}, it stays in journal segment {} until the next start", flow.getRequestId(), journaled.segment, e);
+        }
+    }
+
+    private void drain() {
+
+        List<Journaled> batch = new ArrayList<>(batchSize);
+        while (running || queue.isEmpty() == false) {
+
+            try {
+                Journaled first = queue.poll(flushIntervalInMilliSeconds, TimeUnit.MILLISECONDS);
+                if (null == first)
+                    continue;
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                insertWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void insertWithRetry(List<Journaled> batch) throws InterruptedException {
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                batchTimer.record(() -> insertOrSplit(batch));
+                return;
+            } catch (RuntimeException e) {
+                failedBatches.increment();
+                //Only the rows not yet written are retried
+                batch.removeIf(journaled -> journaled.written);
+                if (batch.isEmpty())
+                    return;
+                if (running == false && attempt >= 3) {
+                    logger.error("giving up on {} flow rows during shutdown, they stay in the journal for the next start", batch.size(), e);
+                    return;
+                }
+                logger.warn("flow batch of {} rows failed, attempt {}", batch.size(), attempt, e);
+                Thread.sleep(Math.min(100L << Math.min(attempt, 6), 5000L));
+            }
+        }
+    }
+
+    //Halves a refused batch until the refused rows are alone, a refused row whose id is already in the table was
+    //written by an earlier attempt that failed after part of its batch went in
+    private void insertOrSplit(List<Journaled> batch) {
+
+        try {
+            insert(batch.stream().map(journaled -> journaled.flow).collect(Collectors.toList()));
+            written(batch);
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() > 1) {
+                int half = batch.size() / 2;
+                insertOrSplit(batch.subList(0, half));
+                insertOrSplit(batch.subList(half, batch.size()));
+                return;
+            }
+
+            Journaled refused = batch.get(0);
+            if (existingIds(Collections.singletonList(refused.flow)).isEmpty())
+                reject(refused.flow, e);
+            written(batch);
+        }
+    }
+
+    private void reject(TestRequestFlowLogged flow, DataAccessException e) {
+
+        rejectedRows.increment();
+        Path rejected = Paths.get(journalPath + ".rejected");
+        try {
+            Files.write(rejected, toLine(flow).getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            logger.error("database refused flow row {}, set it aside in {}", toLine(flow).trim(), rejected, e);
+        } catch (IOException io) {
+            logger.error("database refused flow row {} and it could not be set aside in {}", toLine(flow).trim(), rejected, e);
+        }
+    }
+
+    private void written(List<Journaled> rows) {
+
+        written.increment(rows.size());
+        unwritten.addAndGet(-rows.size());
+
+        synchronized (journalLock) {
+            for (Journaled row : rows) {
+                row.written = true;
+                AtomicLong left = unwrittenBySegment.get(row.segment);
+                if (null != left && left.decrementAndGet() == 0)
+                    release(row.segment);
+            }
+        }
+    }
+
+    //Every row of the segment is in the table, the current one is emptied and an older one deleted
+    private void release(long written) {
+
+        unwrittenBySegment.remove(written);
+        try {
+            if (written == segment) {
+                journal.truncate(0);
+                segmentRowCount = 0;
+            } else {
+                Files.deleteIfExists(segmentPath(written));
+            }
+        } catch (IOException e) {
+            logger.warn("could not release flow journal segment {}", segmentPath(written), e);
+        }
+    }
+
+    private void rotate() throws IOException {
+
+        journal.close();
+        segment++;
+        segmentRowCount = 0;
+        journal = openSegment(segment);
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    Path segmentPath(long number) {
+        return Paths.get(journalPath + "." + number);
+    }
+
+    void insert(List<TestRequestFlowLogged> rows) {
+
+        rows.forEach(this::assignId);
+        jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), (statement, flow) -> {
+            statement.setLong(1, flow.getFlowId());
+            setLong(statement, 2, flow.getRequestId());
+            setStatus(statement, 3, flow.getFromStatus());
+            setStatus(statement, 4, flow.getToStatus());
+            setLong(statement, 5, flow.getChangedById());
+            statement.setDate(6, Date.valueOf(flow.getHappenedAt().atZone(ZoneId.systemDefault()).toLocalDate()));
+            statement.setTimestamp(7, Timestamp.from(flow.getHappenedAt()));
+        });
+    }
+
+    private void assignId(TestRequestFlowLogged flow) {
+        if (null == flow.getFlowId())
+            flow.setFlowId(ids.next());
+    }
+
+    private Set<Long> existingIds(List<TestRequestFlowLogged> rows) {
+
+        List<Long> flowIds = rows.stream().map(TestRequestFlowLogged::getFlowId).filter(Objects::nonNull).collect(Collectors.toList());
+        if (flowIds.isEmpty())
+            return Collections.emptySet();
+
+        String placeholders = flowIds.stream().map(id -> "?").collect(Collectors.joining(","));
+        return new HashSet<>(jdbcTemplate.queryForList("select id from test_request_flow where id in (" + placeholders + ")", Long.class, flowIds.toArray()));
+    }
+
+    //Rows left by a previous run that stopped before writing them, in segment order; returns the last segment number
+    private long recover(Path path) throws IOException {
+
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        if (Files.exists(path))
+            segments.put(-1L, path);
+
+        Path directory = null != path.getParent() ? path.getParent() : Paths.get(".");
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("[0-9]+"))
+                    segments.put(Long.valueOf(suffix), file);
+            }
+        }
+
+        for (Path file : segments.values())
+            recoverSegment(file);
+
+        return segments.isEmpty() ? 0 : Math.max(0, segments.lastKey());
+    }
+
+    private void recoverSegment(Path file) throws IOException {
+
+        List<TestRequestFlowLogged> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+            if (line.isEmpty() == false)
+                rows.add(fromLine(line));
+
+        int recovered = 0;
+        try {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<TestRequestFlowLogged> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                //Written before the crash, the segment was not deleted yet
+                Set<Long> existing = existingIds(batch);
+                List<TestRequestFlowLogged> missing = batch.stream().filter(flow -> existing.contains(flow.getFlowId()) == false).collect(Collectors.toList());
+                if (missing.isEmpty() == false)
+                    insert(missing);
+                recovered += missing.size();
+            }
+        } catch (DataAccessException e) {
+            //Set aside rather than lose them
+            Path unrecovered = Paths.get(file + ".unrecovered-" + System.currentTimeMillis());
+            Files.move(file, unrecovered);
+            logger.error("could not write {} flow rows left in {}, moved them to {}", rows.size(), file, unrecovered, e);
+            return;
+        }
+
+        Files.delete(file);
+        if (rows.isEmpty() == false)
+            logger.info("recovered {} of {} flow rows from {}, the rest were written before", recovered, rows.size(), file);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+
+        if (running == false)
+            return;
+
+        running = false;
+        writer.join(shutdownTimeoutInMilliSeconds);
+        if (writer.isAlive())
+            logger.warn("flow writer still busy after {} ms, remaining rows stay in {}", shutdownTimeoutInMilliSeconds, journalPath);
+
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+
+    //A queued row and the journal segment it was appended to
+    static class Journaled {
+
+        final TestRequestFlowLogged flow;
+        final long segment;
+
+        //Set by the writer thread only
+        boolean written;
+
+        Journaled(TestRequestFlowLogged flow, long segment) {
+            this.flow = flow;
+            this.segment = segment;
+        }
+    }
+
+    static String toLine(TestRequestFlowLogged flow) {
+        return flow.getFlowId() + "\t" + flow.getRequestId() + "\t" + nameOf(flow.getFromStatus()) + "\t" + nameOf(flow.getToStatus()) + "\t"
+                + (null == flow.getChangedById() ? "" : flow.getChangedById()) + "\t" + flow.getHappenedAt() + "\n";
+    }
+
+    static TestRequestFlowLogged fromLine(String line) {
+
+        String[] columns = line.split("\t", -1);
+        TestRequestFlowLogged flow = new TestRequestFlowLogged();
+
+        //Lines journaled before ids were assigned up front have no id column, they get one when inserted
+        int first = 0;
+        if (columns.length > 5) {
+            flow.setFlowId("null".equals(columns[0]) ? null : Long.valueOf(columns[0]));
+            first = 1;
+        }
+
+        flow.setRequestId(Long.valueOf(columns[first]));
+        flow.setFromStatus(columns[first + 1].isEmpty() ? null : RequestStatus.valueOf(columns[first + 1]));
+        flow.setToStatus(columns[first + 2].isEmpty() ? null : RequestStatus.valueOf(columns[first + 2]));
+        flow.setChangedById(columns[first + 3].isEmpty() ? null : Long.valueOf(columns[first + 3]));
+        flow.setHappenedAt(Instant.parse(columns[first + 4]));
+        return flow;
+    }
+
+    private static String nameOf(RequestStatus status) {
+        return null == status ? "" : status.name();
+    }
+
+    private static void setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (null == value)
+            statement.setNull(index, Types.BIGINT);
+        else
+            statement.setLong(index, value);
+    }
+
+    //Statuses are stored by ordinal, as Hibernate maps them
+    private static void setStatus(PreparedStatement statement, int index, RequestStatus status) throws SQLException {
+        if (null == status)
+            statement.setNull(index, Types.INTEGER);
+        else
+            statement.setInt(index, status.ordinal());
+    }
+}
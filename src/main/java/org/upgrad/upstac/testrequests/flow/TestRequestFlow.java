@@ -2,20 +2,25 @@ package org.upgrad.upstac.testrequests.flow;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
 import org.upgrad.upstac.testrequests.RequestStatus;
 import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_test_request_flow_request_happened_at", columnList = "request_request_id,happenedAt,id"))
 public class TestRequestFlow {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = "org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator")
     Long id;
 
 
@@ -32,6 +37,8 @@ public class TestRequestFlow {
 
     private LocalDate happenedOn=LocalDate.now();
 
+    private Instant happenedAt = Instant.now();
+
 
 
 
@@ -0,0 +1,46 @@
+package org.upgrad.upstac.testrequests.flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.upgrad.upstac.testrequests.models.TestRequestFlowSummary;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+
+
+@RestController
+@RequestMapping("/api/government")
+public class TestRequestFlowController {
+
+    static final int MAX_REQUEST_IDS = 500;
+
+    Logger log = LoggerFactory.getLogger(TestRequestFlowController.class);
+
+    @Autowired
+    private TestRequestFlowService testRequestFlowService;
+
+
+    //Timelines for a page of requests in one call, e.g. /api/government/timelines?ids=12,15,18
+    @GetMapping("/timelines")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public Map<Long, List<TestRequestFlowSummary>> getTimelines(@RequestParam List<Long> ids) {
+
+        LinkedHashSet<Long> requestIds = new LinkedHashSet<>(ids);
+        requestIds.remove(null);
+
+        if (requestIds.isEmpty() || requestIds.size() > MAX_REQUEST_IDS)
+            throw asBadRequest("Between 1 and " + MAX_REQUEST_IDS + " request ids are required");
+
+        return testRequestFlowService.findTimelines(requestIds);
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.upgrad.upstac.testrequests.flow;
+
+import lombok.Data;
+import org.upgrad.upstac.testrequests.RequestStatus;
+
+import java.time.Instant;
+
+//Published for every TestRequestFlow row, delivered after the transaction that wrote it commits
+@Data
+public class TestRequestFlowLogged {
+
+    //Assigned by FlowWriteBehind in write-behind mode, before the row is inserted
+    private Long flowId;
+    private Long requestId;
+    private RequestStatus fromStatus;
+    private RequestStatus toStatus;
+    private Instant happenedAt;
+
+    //When the request entered fromStatus, null when not known
+    private Instant enteredAt;
+
+    private Instant requestCreatedAt;
+    private Integer pinCode;
+
+    //null when the transition was not made by a tester or doctor, e.g. an expired lease
+    private Long changedById;
+
+
+    public static TestRequestFlowLogged from(TestRequestFlow testRequestFlow) {
+
+        TestRequestFlowLogged event = new TestRequestFlowLogged();
+        event.setFlowId(testRequestFlow.getId());
+        event.setRequestId(testRequestFlow.getRequest().getRequestId());
+        event.setFromStatus(testRequestFlow.getFromStatus());
+        event.setToStatus(testRequestFlow.getToStatus());
+        event.setHappenedAt(testRequestFlow.getHappenedAt());
+        event.setRequestCreatedAt(testRequestFlow.getRequest().getCreatedAt());
+        event.setPinCode(testRequestFlow.getRequest().getPinCode());
+        event.setChangedById(null != testRequestFlow.getChangedBy() ? testRequestFlow.getChangedBy().getId() : null);
+        return event;
+    }
+}
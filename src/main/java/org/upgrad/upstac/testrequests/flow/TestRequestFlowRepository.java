@@ -1,8 +1,12 @@
 package org.upgrad.upstac.testrequests.flow;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.models.TestRequestFlowSummary;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,5 +26,15 @@ public interface TestRequestFlowRepository extends JpaRepository<TestRequestFlow
 
     List<TestRequestFlow> findByRequest(TestRequest request);
 
+    @Query("select new org.upgrad.upstac.testrequests.models.TestRequestFlowSummary(f.fromStatus, f.toStatus, f.happenedOn, f.happenedAt, u.id, u.userName, u.firstName, u.lastName) "
+            + "from TestRequestFlow f left join f.changedBy u where f.request.requestId = :requestId order by f.id")
+    List<TestRequestFlowSummary> findSummariesByRequestId(@Param("requestId") Long requestId);
+
+    //Timelines of many requests in one query, read in idx_test_request_flow_request_happened_at order; steps from
+    //before happenedAt existed have none and sort first
+    @Query("select new org.upgrad.upstac.testrequests.models.TestRequestFlowSummary(f.request.requestId, f.fromStatus, f.toStatus, f.happenedOn, f.happenedAt, u.id, u.userName, u.firstName, u.lastName) "
+            + "from TestRequestFlow f left join f.changedBy u where f.request.requestId in :requestIds order by f.request.requestId, f.happenedAt, f.id")
+    List<TestRequestFlowSummary> findSummariesByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
+
 
 }
@@ -1,14 +1,19 @@
 package org.upgrad.upstac.testrequests.flow;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
+import org.upgrad.upstac.config.datasource.UseWorkload;
+import org.upgrad.upstac.config.datasource.Workload;
 import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.models.TestRequestFlowSummary;
 import org.upgrad.upstac.users.User;
 
 import javax.transaction.Transactional;
-import java.util.List;
+import java.time.Instant;
+import java.util.*;
 
 @Service
 @Validated
@@ -17,6 +22,12 @@ public class TestRequestFlowService {
     @Autowired
     private TestRequestFlowRepository testRequestFlowRepository;
 
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private FlowWriteBehind flowWriteBehind;
+
 
     @Transactional
     public void log(TestRequest testRequest, RequestStatus from, RequestStatus to, User changedBy) {
@@ -25,7 +36,22 @@ public class TestRequestFlowService {
         testRequestFlow.setRequest(testRequest);
         testRequestFlow.setFromStatus(from);
         testRequestFlow.setToStatus(to);
-        testRequestFlowRepository.save(testRequestFlow);
+
+        //Every caller saves the request after logging its transition
+        Instant enteredAt = testRequest.getStatusChangedAt();
+        testRequest.setStatusChangedAt(testRequestFlow.getHappenedAt());
+
+        if (flowWriteBehind.isEnabled()) {
+            TestRequestFlowLogged flowLogged = TestRequestFlowLogged.from(testRequestFlow);
+            flowLogged.setEnteredAt(enteredAt);
+            flowWriteBehind.submitAfterCommit(flowLogged);
+            applicationEventPublisher.publishEvent(flowLogged);
+            return;
+        }
+
+        TestRequestFlowLogged flowLogged = TestRequestFlowLogged.from(testRequestFlowRepository.save(testRequestFlow));
+        flowLogged.setEnteredAt(enteredAt);
+        applicationEventPublisher.publishEvent(flowLogged);
     }
 
 
@@ -35,4 +61,21 @@ public class TestRequestFlowService {
         return testRequestFlowRepository.findByRequest(testRequest);
     }
 
+    //Timeline of each request, in the order the ids were given, every id is present even without any steps
+    @UseWorkload(Workload.REPORTING)
+    public Map<Long, List<TestRequestFlowSummary>> findTimelines(Collection<Long> requestIds) {
+
+        Map<Long, List<TestRequestFlowSummary>> timelines = new LinkedHashMap<>();
+        for (Long requestId : requestIds)
+            timelines.put(requestId, new ArrayList<>());
+
+        if (timelines.isEmpty())
+            return timelines;
+
+        for (TestRequestFlowSummary step : testRequestFlowRepository.findSummariesByRequestIdIn(timelines.keySet()))
+            timelines.get(step.getRequestId()).add(step);
+
+        return timelines;
+    }
+
 }
@@ -0,0 +1,59 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.upgrad.upstac.config.security.UserLoggedInService;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.ServiceUnavailableException;
+import org.upgrad.upstac.testrequests.CreateTestRequest;
+import org.upgrad.upstac.users.User;
+
+import java.net.URI;
+
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asNotFound;
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asServiceUnavailable;
+
+
+@RestController
+@RequestMapping("/api/testrequests/intake")
+public class IntakeController {
+
+    Logger log = LoggerFactory.getLogger(IntakeController.class);
+
+    @Autowired
+    private IntakeService intakeService;
+
+    @Autowired
+    private UserLoggedInService userLoggedInService;
+
+
+    //Accepts the request without waiting for the database, the ticket resolves once it is created or rejected
+    @PostMapping
+    public ResponseEntity<IntakeTicket> submit(@RequestBody CreateTestRequest testRequest) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            IntakeTicket ticket = intakeService.submit(user, testRequest);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/testrequests/intake/" + ticket.getTicket()))
+                    .body(ticket);
+        } catch (ServiceUnavailableException e) {
+            throw asServiceUnavailable(e.getMessage());
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{ticket}")
+    public IntakeTicket getTicket(@PathVariable Long ticket) {
+
+        User user = userLoggedInService.getLoggedInUser();
+        return intakeService.findTicket(user, ticket)
+                .orElseThrow(() -> asNotFound("Unknown ticket"));
+    }
+
+}
@@ -0,0 +1,12 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import lombok.Data;
+import org.upgrad.upstac.testrequests.CreateTestRequest;
+
+//Payload of an intake record, stored as JSON
+@Data
+class IntakeEntry {
+
+    private Long userId;
+    private CreateTestRequest request;
+}
@@ -0,0 +1,128 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.upgrad.upstac.exception.AppException;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of intake records over a sequence of memory-mapped segments.
+ *
+ * Writes land in the page cache, so they survive a crash of the process; with fsync on every append is also
+ * forced to disk. A segment is deleted once it is full and every record in it has been created or rejected.
+ */
+class IntakeJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntakeJournal.class);
+
+    private static final String PREFIX = "intake-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final boolean fsync;
+
+    private IntakeSegment current;
+
+    private long nextSegment;
+
+
+    IntakeJournal(Path directory, int segmentSize, boolean fsync) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+    }
+
+    //Opens the segments left by a previous run and returns their records in append order
+    synchronized List<IntakeRecord> open() throws IOException {
+
+        Files.createDirectories(directory);
+
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            files.forEach(paths::add);
+        }
+        paths.sort(null);
+
+        List<IntakeRecord> records = new ArrayList<>();
+        for (Path path : paths) {
+
+            IntakeSegment segment = IntakeSegment.open(path, segmentSize);
+            records.addAll(segment.read());
+            nextSegment = Math.max(nextSegment, sequenceOf(path) + 1);
+
+            segment.seal();
+            if (segment.hasPending() == false)
+                segment.delete();
+        }
+
+        current = newSegment();
+        return records;
+    }
+
+    synchronized IntakeRecord append(long ticket, byte[] payload) throws IOException {
+
+        if (IntakeSegment.HEADER_SIZE + payload.length > segmentSize)
+            throw new AppException("Request is too large");
+
+        if (current.fits(payload.length) == false) {
+            IntakeSegment full = current;
+            current = newSegment();
+            full.seal();
+            if (full.hasPending() == false)
+                full.delete();
+        }
+
+        IntakeRecord record = current.append(ticket, payload);
+        if (fsync)
+            current.force();
+        return record;
+    }
+
+    void created(IntakeRecord record, long requestId) {
+        finish(record, IntakeSegment.CREATED, requestId);
+    }
+
+    void rejected(IntakeRecord record) {
+        finish(record, IntakeSegment.REJECTED, 0L);
+    }
+
+    private void finish(IntakeRecord record, byte state, long requestId) {
+
+        IntakeSegment segment = record.getSegment();
+        if (segment.finish(record, state, requestId) == false)
+            return;
+
+        synchronized (this) {
+            if (segment.isSealed() && segment.hasPending() == false) {
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    logger.warn("could not delete intake segment {}", segment.getPath(), e);
+                }
+            }
+        }
+    }
+
+    synchronized void close() {
+        if (null != current)
+            current.force();
+    }
+
+    private IntakeSegment newSegment() throws IOException {
+        return IntakeSegment.open(directory.resolve(String.format("%s%020d%s", PREFIX, nextSegment++, SUFFIX)), segmentSize);
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
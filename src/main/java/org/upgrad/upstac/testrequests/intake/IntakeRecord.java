@@ -0,0 +1,16 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import lombok.Data;
+
+//One journaled request, state and requestId are only meaningful for records read back from disk
+@Data
+class IntakeRecord {
+
+    private final IntakeSegment segment;
+    private final int offset;
+    private final long ticket;
+    private final byte[] payload;
+
+    private byte state;
+    private long requestId;
+}
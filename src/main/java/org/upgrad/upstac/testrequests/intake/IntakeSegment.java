@@ -0,0 +1,129 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed size, memory-mapped file of intake records.
+ *
+ * Each record is a header (payload length, state, ticket, request id) followed by the payload. The length is
+ * written last, so a record cut short by a crash reads as the end of the segment. States are updated in place.
+ */
+class IntakeSegment {
+
+    static final byte PENDING = 0;
+    static final byte CREATED = 1;
+    static final byte REJECTED = 2;
+
+    static final int HEADER_SIZE = 4 + 1 + 8 + 8;
+
+    private final Path path;
+
+    private final MappedByteBuffer buffer;
+
+    private int writePosition;
+
+    //Pending records, the segment is deleted once this is zero and it is no longer written to
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile boolean sealed;
+
+
+    private IntakeSegment(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static IntakeSegment open(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            //A segment written with a larger size setting is mapped whole
+            return new IntakeSegment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size())));
+        }
+    }
+
+    //Called once when the segment is opened, leaves the write position after the last complete record
+    List<IntakeRecord> read() {
+
+        List<IntakeRecord> records = new ArrayList<>();
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > buffer.capacity())
+                break;
+
+            byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++)
+                payload[i] = buffer.get(offset + HEADER_SIZE + i);
+
+            IntakeRecord record = new IntakeRecord(this, offset, buffer.getLong(offset + 5), payload);
+            record.setState(buffer.get(offset + 4));
+            record.setRequestId(buffer.getLong(offset + 13));
+            if (record.getState() == PENDING)
+                pending.incrementAndGet();
+
+            records.add(record);
+            offset += HEADER_SIZE + length;
+        }
+        writePosition = offset;
+        return records;
+    }
+
+    boolean fits(int length) {
+        return writePosition + HEADER_SIZE + length <= buffer.capacity();
+    }
+
+    //Callers serialize appends, the journal holds its lock around this
+    IntakeRecord append(long ticket, byte[] payload) {
+
+        int offset = writePosition;
+        buffer.put(offset + 4, PENDING);
+        buffer.putLong(offset + 5, ticket);
+        buffer.putLong(offset + 13, 0L);
+        for (int i = 0; i < payload.length; i++)
+            buffer.put(offset + HEADER_SIZE + i, payload[i]);
+        buffer.putInt(offset, payload.length);
+
+        writePosition = offset + HEADER_SIZE + payload.length;
+        pending.incrementAndGet();
+        return new IntakeRecord(this, offset, ticket, payload);
+    }
+
+    //Returns true when this was the last pending record
+    boolean finish(IntakeRecord record, byte state, long requestId) {
+        buffer.putLong(record.getOffset() + 13, requestId);
+        buffer.put(record.getOffset() + 4, state);
+        return pending.decrementAndGet() == 0;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void seal() {
+        sealed = true;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    boolean hasPending() {
+        return pending.get() > 0;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    Path getPath() {
+        return path;
+    }
+}
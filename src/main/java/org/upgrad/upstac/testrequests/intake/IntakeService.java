@@ -0,0 +1,372 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.ServiceUnavailableException;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIds;
+import org.upgrad.upstac.testrequests.CreateTestRequest;
+import org.upgrad.upstac.testrequests.TestRequestBatchService;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.models.BatchItemResult;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous intake of test requests, turned on with upstac.intake.enabled.
+ *
+ * A submitted request is appended to the memory-mapped IntakeJournal and answered with a ticket straight away;
+ * a single drain thread takes the journaled requests in batches and creates them through TestRequestBatchService,
+ * which checks the batch for requests already in progress. One thread keeps that check race free. Requests
+ * still pending at shutdown or after a crash are drained again at the next start.
+ *
+ * Each created request stores its ticket in a unique column. A record whose request was committed before the
+ * crash but never journaled as created is resolved by that ticket, instead of being created again or rejected
+ * as already in progress.
+ *
+ * Outcomes are kept in memory for the most recent max-finished-tickets tickets. Older tickets, and tickets
+ * submitted on another node, resolve from the request stored with them once it is created.
+ */
+@Service
+public class IntakeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntakeService.class);
+
+    @Autowired
+    private TestRequestBatchService testRequestBatchService;
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${upstac.intake.enabled:false}")
+    private boolean enabled;
+
+    //No default, the journal holds accepted requests until they are created and has to survive restarts
+    @Value("${upstac.intake.directory:}")
+    private String directory;
+
+    @Value("${upstac.intake.segment-size-mb:16}")
+    private int segmentSizeInMegaBytes;
+
+    @Value("${upstac.intake.fsync:false}")
+    private boolean fsync;
+
+    @Value("${upstac.intake.batch-size:200}")
+    private int batchSize;
+
+    @Value("${upstac.intake.max-pending:100000}")
+    private int maxPending;
+
+    @Value("${upstac.intake.max-finished-tickets:100000}")
+    private int maxFinishedTickets;
+
+    @Value("${upstac.intake.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutInMilliSeconds;
+
+    @Value("${spring.jpa.properties." + TimeOrderedIdGenerator.NODE_ID_SETTING + ":}")
+    private String nodeId;
+
+    @Value("${spring.jpa.properties." + TimeOrderedIdGenerator.STATE_FILE_SETTING + ":}")
+    private String idStateFile;
+
+    private IntakeJournal journal;
+
+    private TimeOrderedIds tickets;
+
+    private final BlockingQueue<IntakeRecord> queue = new LinkedBlockingQueue<>();
+
+    private final Map<Long, IntakeTicket> pending = new ConcurrentHashMap<>();
+
+    private Map<Long, IntakeTicket> finished;
+
+    private volatile boolean running;
+
+    private Thread drainer;
+
+
+    @PostConstruct
+    public void start() throws IOException {
+
+        if (enabled == false)
+            return;
+
+        if (directory.trim().isEmpty())
+            throw new IllegalStateException("Set upstac.intake.directory to a persistent directory when upstac.intake.enabled is true");
+
+        tickets = TimeOrderedIds.forNode(TimeOrderedIds.nodeIdOf(nodeId), TimeOrderedIds.stateFileOf(idStateFile));
+        finished = Collections.synchronizedMap(new LinkedHashMap<Long, IntakeTicket>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, IntakeTicket> eldest) {
+                return size() > maxFinishedTickets;
+            }
+        });
+
+        journal = new IntakeJournal(Paths.get(directory), segmentSizeInMegaBytes << 20, fsync);
+        int recovered = 0;
+        for (IntakeRecord record : journal.open()) {
+            if (record.getState() == IntakeSegment.PENDING) {
+                pending.put(record.getTicket(), IntakeTicket.pending(record.getTicket(), userIdOf(record)));
+                queue.add(record);
+                recovered++;
+            } else {
+                finished.put(record.getTicket(), ticketOf(record));
+            }
+        }
+        if (recovered > 0)
+            logger.info("recovered {} pending intake requests from {}", recovered, directory);
+
+        running = true;
+        drainer = new Thread(this::drain, "intake-drain");
+        drainer.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public IntakeTicket submit(User user, CreateTestRequest createTestRequest) {
+
+        if (enabled == false)
+            throw new ServiceUnavailableException("Intake is not enabled");
+        if (null == createTestRequest)
+            throw new AppException("Empty request");
+        if (pending.size() >= maxPending)
+            throw new ServiceUnavailableException("Intake is full, try again later");
+
+        IntakeEntry entry = new IntakeEntry();
+        entry.setUserId(user.getId());
+        entry.setRequest(createTestRequest);
+
+        try {
+            long ticket = tickets.next();
+            IntakeRecord record = journal.append(ticket, objectMapper.writeValueAsBytes(entry));
+            IntakeTicket intakeTicket = IntakeTicket.pending(ticket, user.getId());
+            pending.put(ticket, intakeTicket);
+            queue.add(record);
+            return intakeTicket;
+        } catch (IOException e) {
+            logger.error("could not journal intake request", e);
+            throw new ServiceUnavailableException("Intake is not available, try again later");
+        }
+    }
+
+    public Optional<IntakeTicket> findTicket(User user, Long ticket) {
+
+        IntakeTicket intakeTicket = null;
+        if (enabled) {
+            intakeTicket = pending.get(ticket);
+            if (null == intakeTicket)
+                intakeTicket = finished.get(ticket);
+        }
+
+        if (null != intakeTicket)
+            return Optional.of(intakeTicket).filter(found -> Objects.equals(found.getUserId(), user.getId()));
+
+        //Read-write so a request created moments ago is read from the primary
+        Optional<Long> requestId = new TransactionTemplate(transactionManager)
+                .execute(status -> testRequestRepository.findRequestIdByIntakeTicketAndCreatedById(ticket, user.getId()));
+        return requestId.map(id -> IntakeTicket.created(ticket, user.getId(), id));
+    }
+
+    private void drain() {
+
+        List<IntakeRecord> batch = new ArrayList<>(batchSize);
+        while (running || queue.isEmpty() == false) {
+
+            try {
+                IntakeRecord first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (null == first)
+                    continue;
+
+                batch.add(first);
+                queue.drainTo(batch, Math.min(batchSize, TestRequestBatchService.MAX_BATCH_SIZE) - 1);
+                createWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void createWithRetry(List<IntakeRecord> batch) throws InterruptedException {
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                create(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (running == false && attempt >= 3) {
+                    logger.error("giving up on {} intake requests during shutdown, they stay journaled for the next start", batch.size(), e);
+                    return;
+                }
+                logger.warn("intake batch of {} requests failed, attempt {}", batch.size(), attempt, e);
+                Thread.sleep(Math.min(100L << Math.min(attempt, 6), 5000L));
+            }
+        }
+    }
+
+    //Requests are created per submitting user, as the synchronous endpoint does
+    private void create(List<IntakeRecord> batch) {
+
+        Map<Long, Long> alreadyCreated = requestIdsByTicket(batch);
+        Map<Long, List<IntakeRecord>> byUser = new LinkedHashMap<>();
+        Map<IntakeRecord, CreateTestRequest> requests = new HashMap<>();
+        for (IntakeRecord record : batch) {
+            if (pending.containsKey(record.getTicket()) == false)
+                continue;
+            if (alreadyCreated.containsKey(record.getTicket())) {
+                created(record, alreadyCreated.get(record.getTicket()));
+                continue;
+            }
+            IntakeEntry entry;
+            try {
+                entry = entryOf(record);
+            } catch (IllegalStateException e) {
+                logger.error("rejecting intake request", e);
+                rejected(record, "Unreadable request");
+                continue;
+            }
+            byUser.computeIfAbsent(entry.getUserId(), ignored -> new ArrayList<>()).add(record);
+            requests.put(record, entry.getRequest());
+        }
+
+        for (Map.Entry<Long, List<IntakeRecord>> group : byUser.entrySet()) {
+
+            List<IntakeRecord> records = group.getValue();
+            Optional<User> user = null == group.getKey() ? Optional.empty() : userService.findById(group.getKey());
+            if (user.isPresent() == false) {
+                records.forEach(record -> rejected(record, "Invalid User ID"));
+                continue;
+            }
+
+            List<CreateTestRequest> createTestRequests = new ArrayList<>(records.size());
+            List<Long> tickets = new ArrayList<>(records.size());
+            records.forEach(record -> {
+                createTestRequests.add(requests.get(record));
+                tickets.add(record.getTicket());
+            });
+
+            List<BatchItemResult> results = testRequestBatchService.createTestRequestsFrom(user.get(), createTestRequests, tickets).getItems();
+            Map<Long, Long> createdMeanwhile = null;
+            for (int i = 0; i < records.size(); i++) {
+                BatchItemResult result = results.get(i);
+                if (result.isCreated()) {
+                    created(records.get(i), result.getRequestId());
+                    continue;
+                }
+                //A failed save may be the unique ticket column, the request then exists already
+                if (null == createdMeanwhile)
+                    createdMeanwhile = requestIdsByTicket(records);
+                Long requestId = createdMeanwhile.get(records.get(i).getTicket());
+                if (null != requestId)
+                    created(records.get(i), requestId);
+                else
+                    rejected(records.get(i), result.getError());
+            }
+        }
+    }
+
+    //Read-write so the lookup reads the primary when replicas are routed
+    private Map<Long, Long> requestIdsByTicket(List<IntakeRecord> records) {
+
+        Map<Long, Long> requestIds = new HashMap<>();
+        List<Long> tickets = new ArrayList<>(records.size());
+        records.forEach(record -> tickets.add(record.getTicket()));
+        if (tickets.isEmpty())
+            return requestIds;
+
+        List<Object[]> rows = new TransactionTemplate(transactionManager).execute(status -> testRequestRepository.findRequestIdsByIntakeTicket(tickets));
+        for (Object[] columns : rows)
+            requestIds.put((Long) columns[0], (Long) columns[1]);
+        return requestIds;
+    }
+
+    private void created(IntakeRecord record, Long requestId) {
+
+        journal.created(record, requestId);
+        IntakeTicket intakeTicket = pending.remove(record.getTicket());
+        intakeTicket.setStatus(IntakeTicket.Status.CREATED);
+        intakeTicket.setRequestId(requestId);
+        finished.put(record.getTicket(), intakeTicket);
+    }
+
+    private void rejected(IntakeRecord record, String error) {
+
+        journal.rejected(record);
+        IntakeTicket intakeTicket = pending.remove(record.getTicket());
+        intakeTicket.setStatus(IntakeTicket.Status.REJECTED);
+        intakeTicket.setError(error);
+        finished.put(record.getTicket(), intakeTicket);
+    }
+
+    private IntakeEntry entryOf(IntakeRecord record) {
+        try {
+            return objectMapper.readValue(record.getPayload(), IntakeEntry.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("unreadable intake record " + record.getTicket(), e);
+        }
+    }
+
+    private Long userIdOf(IntakeRecord record) {
+        try {
+            return entryOf(record).getUserId();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    //Rejection messages are not journaled, tickets finished before a restart only keep their status
+    private IntakeTicket ticketOf(IntakeRecord record) {
+
+        IntakeTicket intakeTicket = IntakeTicket.pending(record.getTicket(), userIdOf(record));
+        if (record.getState() == IntakeSegment.CREATED) {
+            intakeTicket.setStatus(IntakeTicket.Status.CREATED);
+            intakeTicket.setRequestId(record.getRequestId());
+        } else {
+            intakeTicket.setStatus(IntakeTicket.Status.REJECTED);
+        }
+        return intakeTicket;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        if (running == false)
+            return;
+
+        running = false;
+        drainer.join(shutdownTimeoutInMilliSeconds);
+        if (drainer.isAlive())
+            logger.warn("intake drain still busy after {} ms, remaining requests stay in {}", shutdownTimeoutInMilliSeconds, directory);
+
+        journal.close();
+    }
+}
@@ -0,0 +1,37 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntakeTicket {
+
+    public enum Status {PENDING, CREATED, REJECTED}
+
+    private Long ticket;
+    private Status status;
+    private Long requestId;
+    private String error;
+
+    //Only the user who submitted the request can resolve its ticket
+    @JsonIgnore
+    private Long userId;
+
+
+    static IntakeTicket pending(long ticket, Long userId) {
+        IntakeTicket intakeTicket = new IntakeTicket();
+        intakeTicket.setTicket(ticket);
+        intakeTicket.setStatus(Status.PENDING);
+        intakeTicket.setUserId(userId);
+        return intakeTicket;
+    }
+
+    static IntakeTicket created(long ticket, Long userId, Long requestId) {
+        IntakeTicket intakeTicket = pending(ticket, userId);
+        intakeTicket.setStatus(Status.CREATED);
+        intakeTicket.setRequestId(requestId);
+        return intakeTicket;
+    }
+}
@@ -1,12 +1,15 @@
 package org.upgrad.upstac.testrequests.lab;
 
 
+import io.swagger.annotations.ApiImplicitParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.upgrad.upstac.config.security.UserLoggedInService;
 import org.upgrad.upstac.exception.AppException;
@@ -15,10 +18,16 @@ import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.testrequests.TestRequestQueryService;
 import org.upgrad.upstac.testrequests.TestRequestUpdateService;
 import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
+import org.upgrad.upstac.testrequests.models.TestRequestFields;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.testrequests.versions.ListVersions;
 import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.ConstraintViolationException;
 import java.util.List;
+import java.util.Set;
 
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConstraintViolation;
@@ -43,24 +52,73 @@ public class LabRequestController {
     @Autowired
     private UserLoggedInService userLoggedInService;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ListVersions listVersions;
+
 
     @GetMapping("/to-be-tested")
     @PreAuthorize("hasAnyRole('TESTER')")
-    public List<TestRequest> getForTests() {
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
+    public List<TestRequestSummary> getForTests(@RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size, WebRequest webRequest) {
 
         //Implement this method to return the list of test requests having status as 'INITIATED'
         //Make use of the findBy() method from testRequestQueryService class to get the list
         // For reference check the method requestHistory() method from TestRequestController class
         try {
-            return testRequestQueryService.findBy(RequestStatus.INITIATED);
+            User user = userLoggedInService.getLoggedInUser();
+            Set<Integer> pinCodes = userService.findPinCodesCovered(user);
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.queue(RequestStatus.INITIATED), webRequest, pinCodes)))
+                return null;
+            return testRequestQueryService.findQueue(RequestStatus.INITIATED, pinCodes, page, size);
+        } catch (AppException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    //Same queue with only the requested fields of each request
+    @ApiIgnore
+    @GetMapping(value = "/to-be-tested", params = "fields")
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public ResponseEntity<?> getFieldsForTests(@RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size, @RequestParam String fields, WebRequest webRequest) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            Set<Integer> pinCodes = userService.findPinCodesCovered(user);
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.queue(RequestStatus.INITIATED), webRequest, pinCodes)))
+                return null;
+            return ResponseEntity.ok(testRequestQueryService.findQueue(RequestStatus.INITIATED, pinCodes, page, size, TestRequestFields.CATALOG.compile(fields)));
         } catch (AppException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
+    @GetMapping("/coverage")
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public Set<Integer> getCoverage() {
+
+        User user = userLoggedInService.getLoggedInUser();
+        return userService.findPinCodesCovered(user);
+    }
+
+    @PutMapping("/coverage")
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public Set<Integer> updateCoverage(@RequestBody Set<Integer> pinCodes) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return userService.updateCoveragePinCodes(user, pinCodes);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyRole('TESTER')")
-    public List<TestRequest> getForTester() {
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
+    public List<TestRequestSummary> getForTester(WebRequest webRequest) {
 
         // Create an object of User class and store the current logged in user first
         //Implement this method to return the list of test requests assigned to current tester(make use of the above created User object)
@@ -68,6 +126,8 @@ public class LabRequestController {
         // For reference check the method getPendingTests() method from TestRequestController class
         try {
             User user = userLoggedInService.getLoggedInUser();
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.worklist(user), webRequest)))
+                return null;
             return testRequestQueryService.findByTester(user);
         } catch (AppException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
@@ -75,6 +135,21 @@ public class LabRequestController {
 
     }
 
+    @ApiIgnore
+    @GetMapping(params = "fields")
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public ResponseEntity<?> getFieldsForTester(@RequestParam String fields, WebRequest webRequest) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            if (webRequest.checkNotModified(listVersions.etagFor(ListVersions.worklist(user), webRequest)))
+                return null;
+            return ResponseEntity.ok(testRequestQueryService.findByTester(user, TestRequestFields.CATALOG.compile(fields)));
+        } catch (AppException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
 
     @PreAuthorize("hasAnyRole('TESTER')")
     @PutMapping("/assign/{id}")
@@ -95,6 +170,30 @@ public class LabRequestController {
         }
     }
 
+    @PreAuthorize("hasAnyRole('TESTER')")
+    @PutMapping("/assign/next")
+    public TestRequest assignNextForLabTest() {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return testRequestUpdateService.assignNextForLabTest(user);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
+    @PreAuthorize("hasAnyRole('TESTER')")
+    @PutMapping("/renew/{id}")
+    public TestRequest renewLabTestLease(@PathVariable Long id) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return testRequestUpdateService.renewLease(id, user);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
     @PreAuthorize("hasAnyRole('TESTER')")
     @PutMapping("/update/{id}")
     public TestRequest updateLabTest(@PathVariable Long id, @RequestBody CreateLabResult createLabResult) {
@@ -1,27 +1,28 @@
 package org.upgrad.upstac.testrequests.lab;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Data;
-import lombok.ToString;
-import org.upgrad.upstac.testrequests.TestRequest;
+import org.hibernate.annotations.GenericGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
 import org.upgrad.upstac.users.User;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Data
 @Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class LabResult {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = "org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator")
     Long resultId;
 
-    @OneToOne(fetch = FetchType.LAZY)
-    @JsonIgnore
-    @ToString.Exclude
-    private TestRequest request;
+    //Reached only from TestRequest, which owns the foreign key; a mapped back reference cannot be lazy and would
+    //cost a query per result. The request_request_id column of older rows is only read by the link migration
 
     private String bloodPressure;
     private String heartBeat;
@@ -30,6 +31,7 @@ public class LabResult {
     private String comments;
     private TestStatus result;
     private LocalDate updatedOn;
+    private Instant updatedAt;
 
     @ManyToOne
     private User tester;
@@ -1,7 +1,6 @@
 package org.upgrad.upstac.testrequests.lab;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
 import java.util.List;
@@ -22,8 +21,6 @@ public interface LabResultRepository extends JpaRepository<LabResult,Long> {
 
 
     List<LabResult> findByTester(User user);
-    Optional<LabResult> findByTesterAndRequest(User user,TestRequest testRequest);
-    Optional<LabResult> findByRequest(TestRequest request);
 
 
 }
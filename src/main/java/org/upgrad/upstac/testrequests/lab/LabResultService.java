@@ -9,6 +9,9 @@ import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
 import javax.transaction.Transactional;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
 
 @Service
 @Validated
@@ -27,7 +30,6 @@ public class LabResultService {
         // create object of LabResult class and use the setter methods to set tester and testRequest details
         // make use of saveLabResult() method to return the LabResult object
         LabResult labResult = new LabResult();
-        labResult.setRequest(testRequest);
         labResult.setTester(tester);
         return saveLabResult(labResult);
     }
@@ -46,6 +48,13 @@ public class LabResultService {
     }
 
 
+    @Transactional
+    public void release(TestRequest testRequest) {
+
+        Optional.ofNullable(testRequest.getLabResult()).ifPresent(labResultRepository::delete);
+    }
+
+
     public LabResult updateLabTest(TestRequest testRequest, CreateLabResult createLabResult) {
 
         //Implement this method to update the lab test
@@ -59,6 +68,8 @@ public class LabResultService {
         labResult.setOxygenLevel(createLabResult.getOxygenLevel());
         labResult.setTemperature(createLabResult.getTemperature());
         labResult.setResult(createLabResult.getResult());
+        labResult.setUpdatedOn(LocalDate.now());
+        labResult.setUpdatedAt(Instant.now());
         return saveLabResult(labResult);
     }
 
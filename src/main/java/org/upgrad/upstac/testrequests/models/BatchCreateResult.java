@@ -0,0 +1,27 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+public class BatchCreateResult {
+
+    private int created;
+    private int failed;
+    private List<BatchItemResult> items;
+
+
+    public static BatchCreateResult of(BatchItemResult[] items) {
+        BatchCreateResult result = new BatchCreateResult();
+        result.setItems(Arrays.asList(items));
+        for (BatchItemResult item : items) {
+            if (item.isCreated())
+                result.created++;
+            else
+                result.failed++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,31 @@
+package org.upgrad.upstac.testrequests.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+//Outcome of one item of a batch create, index is its position in the submitted array
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    private int index;
+    private boolean created;
+    private Long requestId;
+    private String error;
+
+
+    public static BatchItemResult created(int index, Long requestId) {
+        BatchItemResult result = new BatchItemResult();
+        result.setIndex(index);
+        result.setCreated(true);
+        result.setRequestId(requestId);
+        return result;
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        BatchItemResult result = new BatchItemResult();
+        result.setIndex(index);
+        result.setError(error);
+        return result;
+    }
+}
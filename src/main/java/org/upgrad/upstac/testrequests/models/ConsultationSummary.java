@@ -0,0 +1,20 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class ConsultationSummary {
+
+    private Long id;
+    private DoctorSuggestion suggestion;
+    private String comments;
+    private LocalDate updatedOn;
+    private UserSummary doctor;
+
+}
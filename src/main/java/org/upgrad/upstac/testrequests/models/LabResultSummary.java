@@ -0,0 +1,24 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class LabResultSummary {
+
+    private Long resultId;
+    private String bloodPressure;
+    private String heartBeat;
+    private String temperature;
+    private String oxygenLevel;
+    private String comments;
+    private TestStatus result;
+    private LocalDate updatedOn;
+    private UserSummary tester;
+
+}
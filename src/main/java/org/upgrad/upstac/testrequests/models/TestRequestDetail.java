@@ -0,0 +1,16 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+//Response of GET /api/testrequests/{id}/full, the request carries its lab result, consultation, tester and doctor
+@Data
+@AllArgsConstructor
+public class TestRequestDetail {
+
+    private TestRequestSummary request;
+    private List<TestRequestFlowSummary> flow;
+
+}
@@ -0,0 +1,47 @@
+package org.upgrad.upstac.testrequests.models;
+
+import org.upgrad.upstac.shared.fields.FieldCatalog;
+
+//Fields selectable with fields= on test request endpoints, named after the TestRequestSummary JSON
+public class TestRequestFields {
+
+    public static final FieldCatalog CATALOG = new FieldCatalog("TestRequest", "t", "t.requestId")
+            .join("u", "t", "t.createdBy")
+            .join("l", "t", "t.labResult")
+            .join("lt", "l", "l.tester")
+            .join("c", "t", "t.consultation")
+            .join("cd", "c", "c.doctor")
+            .field("requestId", "t.requestId")
+            .field("created", "t.created")
+            .field("status", "t.status")
+            .field("name", "t.name")
+            .field("gender", "t.gender")
+            .field("address", "t.address")
+            .field("age", "t.age")
+            .field("email", "t.email")
+            .field("phoneNumber", "t.phoneNumber")
+            .field("pinCode", "t.pinCode")
+            .field("priorityKey", "t.priorityKey")
+            .field("leaseExpiresAt", "t.leaseExpiresAt")
+            .field("createdBy.id", "u.id")
+            .field("createdBy.userName", "u.userName")
+            .field("createdBy.firstName", "u.firstName")
+            .field("createdBy.lastName", "u.lastName")
+            .field("labResult.resultId", "l.resultId")
+            .field("labResult.bloodPressure", "l.bloodPressure")
+            .field("labResult.heartBeat", "l.heartBeat")
+            .field("labResult.temperature", "l.temperature")
+            .field("labResult.oxygenLevel", "l.oxygenLevel")
+            .field("labResult.comments", "l.comments")
+            .field("labResult.result", "l.result")
+            .field("labResult.updatedOn", "l.updatedOn")
+            .field("labResult.tester.id", "lt.id")
+            .field("labResult.tester.userName", "lt.userName")
+            .field("consultation.id", "c.id")
+            .field("consultation.suggestion", "c.suggestion")
+            .field("consultation.comments", "c.comments")
+            .field("consultation.updatedOn", "c.updatedOn")
+            .field("consultation.doctor.id", "cd.id")
+            .field("consultation.doctor.userName", "cd.userName");
+
+}
@@ -0,0 +1,42 @@
+package org.upgrad.upstac.testrequests.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+//One step of a request's timeline, built by the TestRequestFlowRepository summary queries
+@Data
+public class TestRequestFlowSummary {
+
+    //Only set by the batched query, used to group the steps by request
+    @JsonIgnore
+    private Long requestId;
+
+    private RequestStatus fromStatus;
+    private RequestStatus toStatus;
+    private UserSummary changedBy;
+    private LocalDate happenedOn;
+
+    //null for steps logged before the time was kept
+    private Instant happenedAt;
+
+
+    public TestRequestFlowSummary(RequestStatus fromStatus, RequestStatus toStatus, LocalDate happenedOn, Instant happenedAt,
+                                  Long changedById, String changedByUserName, String changedByFirstName, String changedByLastName) {
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+        this.happenedOn = happenedOn;
+        this.happenedAt = happenedAt;
+        this.changedBy = UserSummary.of(changedById, changedByUserName, changedByFirstName, changedByLastName);
+    }
+
+    public TestRequestFlowSummary(Long requestId, RequestStatus fromStatus, RequestStatus toStatus, LocalDate happenedOn, Instant happenedAt,
+                                  Long changedById, String changedByUserName, String changedByFirstName, String changedByLastName) {
+        this(fromStatus, toStatus, happenedOn, happenedAt, changedById, changedByUserName, changedByFirstName, changedByLastName);
+        this.requestId = requestId;
+    }
+}
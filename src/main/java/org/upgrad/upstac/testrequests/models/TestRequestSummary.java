@@ -0,0 +1,74 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.Data;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.models.Gender;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Read model for the test request list endpoints.
+ *
+ * Built by a JPQL constructor expression (see TestRequestRepository#SUMMARY_SELECT) which joins the
+ * request with its creator, lab result and consultation in one query, so list endpoints never
+ * load managed entities or lazy proxies. The JSON keeps the shape of TestRequest with users
+ * reduced to their names.
+ */
+@Data
+public class TestRequestSummary {
+
+    private Long requestId;
+    private UserSummary createdBy;
+    private LocalDate created;
+    private RequestStatus status;
+    private String name;
+    private Gender gender;
+    private String address;
+    private Integer age;
+    private String email;
+    private String phoneNumber;
+    private Integer pinCode;
+    private Long priorityKey;
+    private LocalDateTime leaseExpiresAt;
+    private LabResultSummary labResult;
+    private ConsultationSummary consultation;
+
+
+    public TestRequestSummary(Long requestId, LocalDate created, RequestStatus status, String name, Gender gender,
+                              String address, Integer age, String email, String phoneNumber, Integer pinCode,
+                              Long priorityKey, LocalDateTime leaseExpiresAt,
+                              Long createdById, String createdByUserName, String createdByFirstName, String createdByLastName,
+                              Long resultId, String bloodPressure, String heartBeat, String temperature, String oxygenLevel,
+                              String labComments, TestStatus result, LocalDate labUpdatedOn,
+                              Long testerId, String testerUserName, String testerFirstName, String testerLastName,
+                              Long consultationId, DoctorSuggestion suggestion, String consultationComments, LocalDate consultationUpdatedOn,
+                              Long doctorId, String doctorUserName, String doctorFirstName, String doctorLastName) {
+
+        this.requestId = requestId;
+        this.created = created;
+        this.status = status;
+        this.name = name;
+        this.gender = gender;
+        this.address = address;
+        this.age = age;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+        this.pinCode = pinCode;
+        this.priorityKey = priorityKey;
+        this.leaseExpiresAt = leaseExpiresAt;
+        this.createdBy = UserSummary.of(createdById, createdByUserName, createdByFirstName, createdByLastName);
+
+        if (null != resultId)
+            this.labResult = new LabResultSummary(resultId, bloodPressure, heartBeat, temperature, oxygenLevel, labComments, result, labUpdatedOn,
+                    UserSummary.of(testerId, testerUserName, testerFirstName, testerLastName));
+
+        if (null != consultationId)
+            this.consultation = new ConsultationSummary(consultationId, suggestion, consultationComments, consultationUpdatedOn,
+                    UserSummary.of(doctorId, doctorUserName, doctorFirstName, doctorLastName));
+    }
+
+}
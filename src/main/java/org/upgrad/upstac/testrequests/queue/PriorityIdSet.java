@@ -0,0 +1,85 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of (priorityKey, requestId) pairs held in two parallel primitive arrays.
+ * Ordered by priority key, then by request id, so iteration follows queue order.
+ * Not thread safe, {@link QueueIndex} guards access.
+ */
+class PriorityIdSet {
+
+    private long[] keys = new long[16];
+    private long[] ids = new long[16];
+    private int size;
+
+
+    int size() {
+        return size;
+    }
+
+    long idAt(int position) {
+        return ids[position];
+    }
+
+    long keyAt(int position) {
+        return keys[position];
+    }
+
+    boolean add(long key, long id) {
+
+        int position = search(key, id);
+        if (position >= 0)
+            return false;
+
+        position = -(position + 1);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        keys[position] = key;
+        ids[position] = id;
+        size++;
+        return true;
+    }
+
+    boolean remove(long key, long id) {
+
+        int position = search(key, id);
+        if (position < 0)
+            return false;
+
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    private int search(long key, long id) {
+
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compare(keys[mid], ids[mid], key, id);
+
+            if (comparison < 0)
+                low = mid + 1;
+            else if (comparison > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    static int compare(long key, long id, long otherKey, long otherId) {
+        int comparison = Long.compare(key, otherKey);
+        return comparison != 0 ? comparison : Long.compare(id, otherId);
+    }
+
+}
@@ -0,0 +1,263 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.upgrad.upstac.config.datasource.UseWorkload;
+import org.upgrad.upstac.config.datasource.Workload;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.feed.TestRequestStatusChanged;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process index of the lab and consultation queues, keyed by status and then by pin code.
+ * Built at startup and kept current from the status change events published after each
+ * transition, so queue endpoints can page through ids and hydrate only the visible page.
+ *
+ * The index only sees transitions made on this node. Hydration drops entries another node has
+ * moved on, and the index is rebuilt from the database every upstac.queue-index.rebuild-interval-ms
+ * to pick up requests other nodes queued; until then those requests are missing from paged lists.
+ * It is therefore off unless upstac.queue-index.enabled=true, which only suits a single node;
+ * otherwise every queue is paged from the database.
+ */
+@Component
+public class QueueIndex {
+
+    static final Set<RequestStatus> QUEUED_STATUSES = Collections.unmodifiableSet(EnumSet.of(RequestStatus.INITIATED, RequestStatus.LAB_TEST_COMPLETED));
+
+    //Requests without a pin code are kept in their own bucket
+    static final int NO_PIN_CODE = -1;
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueIndex.class);
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Value("${upstac.queue-index.enabled:false}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<RequestStatus, TreeMap<Integer, PriorityIdSet>> queues = new EnumMap<>(RequestStatus.class);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private List<TestRequestStatusChanged> pendingWhileBuilding;
+
+    private volatile boolean ready = false;
+
+
+    @UseWorkload(Workload.REPORTING)
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${upstac.queue-index.rebuild-interval-ms:300000}", fixedDelayString = "${upstac.queue-index.rebuild-interval-ms:300000}")
+    public void build() {
+
+        if (enabled == false)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            pendingWhileBuilding = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Object[]> rows = testRequestRepository.findQueueEntries(QUEUED_STATUSES);
+
+        lock.writeLock().lock();
+        try {
+            queues.clear();
+            entries.clear();
+            for (Object[] row : rows)
+                put((Long) row[0], (RequestStatus) row[1], (Integer) row[2], (Long) row[3]);
+
+            pendingWhileBuilding.forEach(this::apply);
+            pendingWhileBuilding = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("queue index built with {} requests", rows.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(TestRequestStatusChanged event) {
+
+        if (enabled == false)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            if (null != pendingWhileBuilding)
+                pendingWhileBuilding.add(event);
+            else
+                apply(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isIndexed(RequestStatus status) {
+        return ready && QUEUED_STATUSES.contains(status);
+    }
+
+    //pinCodes null or empty means every pin code
+    public int count(RequestStatus status, Collection<Integer> pinCodes) {
+
+        lock.readLock().lock();
+        try {
+            return bucketsFor(status, pinCodes).stream().mapToInt(PriorityIdSet::size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> page(RequestStatus status, Collection<Integer> pinCodes, int offset, int limit) {
+
+        lock.readLock().lock();
+        try {
+            return merge(bucketsFor(status, pinCodes), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Neighbouring pin codes : every pin code in the given sorting districts (first three digits)
+    public List<Long> pageInDistricts(RequestStatus status, Collection<Integer> districts, int offset, int limit) {
+
+        lock.readLock().lock();
+        try {
+            TreeMap<Integer, PriorityIdSet> byPinCode = queues.get(status);
+            if (null == byPinCode)
+                return Collections.emptyList();
+
+            List<PriorityIdSet> buckets = new ArrayList<>();
+            for (Integer district : new TreeSet<>(districts))
+                buckets.addAll(byPinCode.subMap(district * 1000, true, district * 1000 + 999, true).values());
+
+            return merge(buckets, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void evict(Long requestId) {
+
+        lock.writeLock().lock();
+        try {
+            remove(requestId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private void apply(TestRequestStatusChanged event) {
+
+        remove(event.getRequestId());
+        if (QUEUED_STATUSES.contains(event.getToStatus()))
+            put(event.getRequestId(), event.getToStatus(), event.getPinCode(), event.getPriorityKey());
+    }
+
+    private void put(Long requestId, RequestStatus status, Integer pinCode, Long priorityKey) {
+
+        Entry entry = new Entry(status, null != pinCode ? pinCode : NO_PIN_CODE, null != priorityKey ? priorityKey : Long.MIN_VALUE);
+        queues.computeIfAbsent(status, key -> new TreeMap<>())
+                .computeIfAbsent(entry.pinCode, key -> new PriorityIdSet())
+                .add(entry.priorityKey, requestId);
+        entries.put(requestId, entry);
+    }
+
+    private void remove(Long requestId) {
+
+        Entry entry = entries.remove(requestId);
+        if (null == entry)
+            return;
+
+        TreeMap<Integer, PriorityIdSet> byPinCode = queues.get(entry.status);
+        PriorityIdSet bucket = byPinCode.get(entry.pinCode);
+        bucket.remove(entry.priorityKey, requestId);
+        if (bucket.size() == 0)
+            byPinCode.remove(entry.pinCode);
+    }
+
+    private List<PriorityIdSet> bucketsFor(RequestStatus status, Collection<Integer> pinCodes) {
+
+        TreeMap<Integer, PriorityIdSet> byPinCode = queues.get(status);
+        if (null == byPinCode)
+            return Collections.emptyList();
+
+        if (null == pinCodes || pinCodes.isEmpty())
+            return new ArrayList<>(byPinCode.values());
+
+        List<PriorityIdSet> buckets = new ArrayList<>();
+        for (Integer pinCode : new TreeSet<>(pinCodes)) {
+            PriorityIdSet bucket = byPinCode.get(pinCode);
+            if (null != bucket)
+                buckets.add(bucket);
+        }
+        return buckets;
+    }
+
+    //k-way merge of the buckets in queue order, skipping offset entries
+    static List<Long> merge(List<PriorityIdSet> buckets, int offset, int limit) {
+
+        List<Long> result = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+        int[] positions = new int[buckets.size()];
+        int skipped = 0;
+
+        while (result.size() < limit) {
+
+            int next = -1;
+            for (int i = 0; i < buckets.size(); i++) {
+                PriorityIdSet bucket = buckets.get(i);
+                if (positions[i] >= bucket.size())
+                    continue;
+
+                if (next < 0 || PriorityIdSet.compare(bucket.keyAt(positions[i]), bucket.idAt(positions[i]),
+                        buckets.get(next).keyAt(positions[next]), buckets.get(next).idAt(positions[next])) < 0)
+                    next = i;
+            }
+
+            if (next < 0)
+                break;
+
+            long id = buckets.get(next).idAt(positions[next]++);
+            if (skipped < offset)
+                skipped++;
+            else
+                result.add(id);
+        }
+        return result;
+    }
+
+
+    private static class Entry {
+
+        final RequestStatus status;
+        final int pinCode;
+        final long priorityKey;
+
+        Entry(RequestStatus status, int pinCode, long priorityKey) {
+            this.status = status;
+            this.pinCode = pinCode;
+            this.priorityKey = priorityKey;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.upgrad.upstac.testrequests.versions;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+//Row per list scope, bumped in the transaction of every change to the list, see ListVersions
+@Data
+@Entity
+public class ListVersion {
+
+    @Id
+    private String scope;
+
+    private long version;
+
+}
@@ -0,0 +1,17 @@
+package org.upgrad.upstac.testrequests.versions;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ListVersionRepository extends JpaRepository<ListVersion, String> {
+
+    //Locks the scope row until the changing transaction commits, so the new version and the change become visible together
+    @Modifying
+    @Query("update ListVersion v set v.version = v.version + 1 where v.scope = :scope")
+    int bump(@Param("scope") String scope);
+
+}
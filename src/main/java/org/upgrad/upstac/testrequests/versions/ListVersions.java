@@ -0,0 +1,188 @@
+package org.upgrad.upstac.testrequests.versions;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.WebRequest;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.feed.TestRequestStatusChanged;
+import org.upgrad.upstac.users.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Versions of the test request lists, used as strong ETags.
+ *
+ * There is one scope per user history, per status queue and per tester or doctor worklist, each with a
+ * ListVersion row. Every status change bumps the rows of the scopes the request left or joined just before
+ * its transaction commits, so the new version becomes visible together with the change on every node. A
+ * poll whose If-None-Match still matches costs one primary key read instead of the list query. Tags also
+ * carry a hash of the query string, Accept and gzip so every representation of a list has its own tag.
+ */
+@Component
+public class ListVersions {
+
+    @Autowired
+    private ListVersionRepository listVersionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //Scope rows are never deleted, once seen they are bumped without checking
+    private final Set<String> existingScopes = ConcurrentHashMap.newKeySet();
+
+
+    public static Scope history(User user) {
+        return history(user.getId());
+    }
+
+    private static Scope history(Long userId) {
+        return new Scope("history:" + userId);
+    }
+
+    public static Scope queue(RequestStatus status) {
+        return new Scope("queue:" + status);
+    }
+
+    public static Scope worklist(User user) {
+        return worklist(user.getId());
+    }
+
+    private static Scope worklist(Long userId) {
+        return new Scope("worklist:" + userId);
+    }
+
+
+    public String versionOf(Scope scope) {
+
+        long version = listVersionRepository.findById(scope.name).map(ListVersion::getVersion).orElse(0L);
+        return Long.toHexString(version);
+    }
+
+    @EventListener
+    public void onStatusChanged(TestRequestStatusChanged event) {
+
+        Stream<Scope> queues = Stream.of(event.getFromStatus(), event.getToStatus())
+                .filter(Objects::nonNull)
+                .map(ListVersions::queue);
+
+        Stream<Scope> worklists = Stream.of(event.getTesterId(), event.getDoctorId(), event.getReleasedFromId())
+                .filter(Objects::nonNull)
+                .map(ListVersions::worklist);
+
+        Stream<Scope> history = Stream.of(event.getCreatedById())
+                .filter(Objects::nonNull)
+                .map(ListVersions::history);
+
+        changed(Stream.of(queues, worklists, history).flatMap(scopes -> scopes).toArray(Scope[]::new));
+    }
+
+    //Bumped once per transaction, in name order so two transactions never wait on each other's rows
+    public void changed(Scope... scopes) {
+
+        Set<String> names = Arrays.stream(scopes).map(scope -> scope.name).collect(Collectors.toCollection(TreeSet::new));
+        names.forEach(this::createIfMissing);
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                names.forEach(listVersionRepository::bump);
+                return null;
+            });
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (null == pending) {
+            Set<String> bumped = new TreeSet<>();
+            TransactionSynchronizationManager.bindResource(this, bumped);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    bumped.forEach(listVersionRepository::bump);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(ListVersions.this);
+                }
+            });
+            pending = bumped;
+        }
+        pending.addAll(names);
+    }
+
+    //Created in a transaction of its own, before the changing transaction locks anything, so a row another node
+    //creates at the same time only fails this insert
+    private void createIfMissing(String scope) {
+
+        if (existingScopes.contains(scope))
+            return;
+
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            requiresNew.execute(status -> {
+                if (!listVersionRepository.existsById(scope)) {
+                    ListVersion listVersion = new ListVersion();
+                    listVersion.setScope(scope);
+                    entityManager.persist(listVersion);
+                    entityManager.flush();
+                }
+                return null;
+            });
+            existingScopes.add(scope);
+        } catch (DataIntegrityViolationException | PersistenceException e) {
+            //Created by another transaction meanwhile, the bump finds it
+        }
+    }
+
+    //Read before the list is queried, a change that commits meanwhile only makes the next poll refetch
+    public String etagFor(Scope scope, WebRequest webRequest, Object... variant) {
+
+        String parameters = webRequest.getParameterMap().entrySet().stream()
+                .map(parameter -> parameter.getKey() + "=" + String.join(",", parameter.getValue()))
+                .sorted()
+                .collect(Collectors.joining("&"));
+
+        String acceptEncoding = webRequest.getHeader("Accept-Encoding");
+        int variantHash = Objects.hash(scope.name, webRequest.getDescription(false), parameters, webRequest.getHeader("Accept"),
+                null != acceptEncoding && acceptEncoding.contains("gzip"), Arrays.hashCode(variant));
+
+        return "\"" + versionOf(scope) + "-" + Integer.toHexString(variantHash) + "\"";
+    }
+
+
+    public static final class Scope {
+
+        private final String name;
+
+        private Scope(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator;
 import org.upgrad.upstac.users.models.Gender;
 import org.upgrad.upstac.users.models.AccountStatus;
 import org.upgrad.upstac.users.roles.Role;
@@ -11,6 +13,7 @@ import org.upgrad.upstac.users.roles.Role;
 import javax.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.Set;
 
 @Entity
@@ -20,7 +23,8 @@ import java.util.Set;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = "org.upgrad.upstac.shared.ids.TimeOrderedIdGenerator")
     private Long id;
 
     @Column(unique = true)
@@ -68,6 +72,12 @@ public class User {
     @ManyToMany(fetch = FetchType.EAGER)
     private Set<Role> roles;
 
+    //Pin codes a tester collects samples from, defaults to their own pin code
+    @ElementCollection
+    @JsonIgnore
+    @ToString.Exclude
+    private Set<Integer> coveragePinCodes = new HashSet<>();
+
 
     public boolean doesRoleIsDoctor() {
 
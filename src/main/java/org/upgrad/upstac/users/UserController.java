@@ -1,6 +1,7 @@
 package org.upgrad.upstac.users;
 
 
+import io.swagger.annotations.ApiImplicitParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,15 +9,19 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.upgrad.upstac.config.security.UserLoggedInService;
+import org.upgrad.upstac.exception.AppException;
 import org.upgrad.upstac.exception.ForbiddenException;
 import org.upgrad.upstac.users.credentials.ChangePasswordRequest;
 import org.upgrad.upstac.users.credentials.ChangePasswordService;
 import org.upgrad.upstac.users.models.AccountStatus;
 import org.upgrad.upstac.users.models.UpdateUserDetailRequest;
+import org.upgrad.upstac.users.models.UserFields;
+import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.ConstraintViolationException;
 import java.util.List;
 
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConstraintViolation;
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asForbidden;
 
@@ -42,19 +47,47 @@ public class UserController {
 
     @PreAuthorize("hasRole('GOVERNMENT_AUTHORITY')")
     @GetMapping
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
     public List<User> listUsers() {
 
         return userService.findAll();
     }
 
+    //Same list with only the requested fields of each user
+    @PreAuthorize("hasRole('GOVERNMENT_AUTHORITY')")
+    @ApiIgnore
+    @GetMapping(params = "fields")
+    public ResponseEntity<?> listUserFields(@RequestParam String fields) {
+
+        try {
+            return ResponseEntity.ok(userService.findAll(UserFields.CATALOG.compile(fields)));
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
 
     @PreAuthorize("hasAnyRole('USER','GOVERNMENT_AUTHORITY','TESTER','DOCTOR')")
     @GetMapping(value = "/details")
+    @ApiImplicitParam(name = "fields", value = "Comma separated fields, only these are returned", paramType = "query", dataType = "string")
     public User getMyDetails() {
 
         return userLoggedInService.getLoggedInUser();
     }
 
+    @PreAuthorize("hasAnyRole('USER','GOVERNMENT_AUTHORITY','TESTER','DOCTOR')")
+    @ApiIgnore
+    @GetMapping(value = "/details", params = "fields")
+    public ResponseEntity<?> getMyDetailFields(@RequestParam String fields) {
+
+        try {
+            User user = userLoggedInService.getLoggedInUser();
+            return ResponseEntity.ok(userService.findById(user.getId(), UserFields.CATALOG.compile(fields)));
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+    }
+
 
     @PreAuthorize("hasAnyRole('USER','GOVERNMENT_AUTHORITY','TESTER','DOCTOR')")
     @PutMapping(value = "/changepassword")
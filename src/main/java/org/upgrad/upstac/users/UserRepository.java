@@ -1,6 +1,8 @@
 package org.upgrad.upstac.users;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.upgrad.upstac.users.models.AccountStatus;
 
@@ -17,6 +19,9 @@ public interface UserRepository extends CrudRepository<User, Long> {
     List<User> findAll();
     List<User> findByStatus(AccountStatus status);
 
+    @Query("select p from User u join u.coveragePinCodes p where u.id = :userId")
+    List<Integer> findCoveragePinCodes(@Param("userId") Long userId);
+
     void deleteById(Long id);
 
     Optional<User> findById(Long id);
@@ -5,12 +5,17 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.upgrad.upstac.auth.register.RegisterRequest;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.search.ContactDetailsChanged;
+import org.upgrad.upstac.shared.fields.FieldSelection;
+import org.upgrad.upstac.shared.fields.SparseFieldQuery;
 import org.upgrad.upstac.users.models.AccountStatus;
 import org.upgrad.upstac.users.models.UpdateUserDetailRequest;
 import org.upgrad.upstac.users.roles.Role;
@@ -40,6 +45,12 @@ public class UserService {
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+    @Autowired
+    private SparseFieldQuery sparseFieldQuery;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
     private static final Logger log = LoggerFactory.getLogger(UserService.class);
 
 
@@ -78,12 +89,29 @@ public class UserService {
     }
 
 
+    @Transactional(readOnly = true)
     public List<User> findAll() {
         List<User> list = new ArrayList<>();
         userRepository.findAll().iterator().forEachRemaining(list::add);
         return list;
     }
 
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> findAll(FieldSelection fields) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Object[] columns : sparseFieldQuery.list(fields, null, Collections.<String, Object>emptyMap(), "u.id"))
+            list.add(fields.toRow(columns));
+        return list;
+    }
+
+    public Map<String, Object> findById(Long id, FieldSelection fields) {
+        return sparseFieldQuery.list(fields, "u.id = :id", "id", id)
+                .stream()
+                .findFirst()
+                .map(fields::toRow)
+                .orElseThrow(() -> new AppException("Invalid User"));
+    }
+
 
 
 
@@ -159,7 +187,9 @@ public class UserService {
     @CachePut(value = "user")
     public User saveInDatabase(User newUser) {
         try{
-            return userRepository.save(newUser);
+            User savedUser = userRepository.save(newUser);
+            applicationEventPublisher.publishEvent(ContactDetailsChanged.of(savedUser));
+            return savedUser;
         }
         catch (DataIntegrityViolationException e) {
 
@@ -195,6 +225,33 @@ public class UserService {
     }
 
 
+    //Pin codes a tester collects samples from, defaults to their own pin code. Read with a query because the
+    //logged in user is detached and its lazy coverage can not be loaded any more
+    @Transactional(readOnly = true)
+    public Set<Integer> findPinCodesCovered(User user) {
+
+        Set<Integer> coverage = new HashSet<>(userRepository.findCoveragePinCodes(user.getId()));
+        if (coverage.isEmpty() == false)
+            return coverage;
+        else if (null != user.getPinCode())
+            return Collections.singleton(user.getPinCode());
+        else
+            return Collections.emptySet();
+    }
+
+    @Transactional
+    public Set<Integer> updateCoveragePinCodes(User user, Set<Integer> pinCodes) {
+
+        if (pinCodes.stream().anyMatch(pinCode -> null == pinCode || pinCode < 100000 || pinCode > 999999))
+            throw new AppException("Invalid Pin Code");
+
+        User stored = userRepository.findById(user.getId()).orElseThrow(() -> new AppException("Invalid User ID"));
+        stored.getCoveragePinCodes().clear();
+        stored.getCoveragePinCodes().addAll(pinCodes);
+        return findPinCodesCovered(saveInDatabase(stored));
+    }
+
+
     public Set<Role> getRoleFor(UserRole userRole) {
         return getRolesForUser(roleService.findByRole(userRole));
     }
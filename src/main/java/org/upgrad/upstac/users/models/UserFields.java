@@ -0,0 +1,23 @@
+package org.upgrad.upstac.users.models;
+
+import org.upgrad.upstac.shared.fields.FieldCatalog;
+
+//Fields selectable with fields= on user endpoints, password and roles are never selectable
+public class UserFields {
+
+    public static final FieldCatalog CATALOG = new FieldCatalog("User", "u", "u.id")
+            .field("id", "u.id")
+            .field("userName", "u.userName")
+            .field("created", "u.created")
+            .field("dateOfBirth", "u.dateOfBirth")
+            .field("updated", "u.updated")
+            .field("firstName", "u.firstName")
+            .field("lastName", "u.lastName")
+            .field("status", "u.status")
+            .field("email", "u.email")
+            .field("gender", "u.gender")
+            .field("phoneNumber", "u.phoneNumber")
+            .field("address", "u.address")
+            .field("pinCode", "u.pinCode");
+
+}
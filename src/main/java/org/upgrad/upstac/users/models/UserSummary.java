@@ -0,0 +1,22 @@
+package org.upgrad.upstac.users.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UserSummary {
+
+    private Long id;
+    private String userName;
+    private String firstName;
+    private String lastName;
+
+    public static UserSummary of(Long id, String userName, String firstName, String lastName) {
+
+        if (null == id)
+            return null;
+
+        return new UserSummary(id, userName, firstName, lastName);
+    }
+}
@@ -0,0 +1,100 @@
+package org.upgrad.upstac.config.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Routes between two embedded databases that each know their own name
+class ReplicaRoutingDataSourceTest {
+
+    ReplicaRoutingDataSource routing;
+
+    JdbcTemplate jdbcTemplate;
+
+    TransactionTemplate readWrite;
+
+    TransactionTemplate readOnly;
+
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("routing_primary");
+        DataSource replica = database("routing_replica");
+
+        routing = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), 200);
+        routing.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void when_transaction_is_read_only_expect_replica() {
+
+        assertEquals("routing_replica", readOnly.execute(status -> name()));
+        assertEquals("routing_primary", readWrite.execute(status -> name()));
+        assertEquals("routing_primary", name());
+    }
+
+    @Test
+    void when_user_has_just_written_expect_their_reads_on_primary_until_window_ends() throws Exception {
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("tester", null));
+        readWrite.execute(status -> jdbcTemplate.update("update marker set name = name"));
+
+        assertEquals("routing_primary", readOnly.execute(status -> name()));
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("doctor", null));
+        assertEquals("routing_replica", readOnly.execute(status -> name()));
+
+        Thread.sleep(300);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("tester", null));
+        assertEquals("routing_replica", readOnly.execute(status -> name()));
+    }
+
+    @Test
+    void when_write_rolls_back_expect_no_stickiness() {
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("tester", null));
+        readWrite.execute(status -> {
+            jdbcTemplate.update("update marker set name = name");
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertFalse(routing.isStickyToPrimary("tester"));
+    }
+
+    private String name() {
+        return jdbcTemplate.queryForObject("select name from marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists marker (name varchar(32))");
+        jdbcTemplate.execute("delete from marker");
+        jdbcTemplate.update("insert into marker values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,79 @@
+package org.upgrad.upstac.config.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.models.AccountStatus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//The replica is the same embedded database reached as a user that may only select, a write routed to it fails
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:upstac_routing;MODE=MySQL;DB_CLOSE_DELAY=-1;INIT=CREATE USER IF NOT EXISTS replica PASSWORD 'replica'\\\\;GRANT SELECT ON SCHEMA PUBLIC TO replica",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "upstac.datasource.routing.enabled=true",
+        "upstac.datasource.replica-urls=jdbc:h2:mem:upstac_routing",
+        "upstac.datasource.replica-username=replica",
+        "upstac.datasource.replica-password=replica",
+        "upstac.datasource.sticky-primary-ms=0"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingRequestTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    UserService userService;
+
+
+    //updateApprovalStatus reads the user in a read-only transaction, on the replica, then saves it in a read-write one
+    @TestConfiguration
+    static class ApprovalConfig {
+
+        @Bean
+        ApprovalController approvalController() {
+            return new ApprovalController();
+        }
+    }
+
+    @RestController
+    static class ApprovalController {
+
+        @Autowired
+        UserService userService;
+
+        @PutMapping("/test/routing/reject/{id}")
+        AccountStatus reject(@PathVariable Long id) {
+            return userService.updateApprovalStatus(id, AccountStatus.REJECTED).getStatus();
+        }
+    }
+
+
+    @Test
+    @WithUserDetails(value = "user")
+    void when_request_reads_then_writes_expect_write_on_primary() throws Exception {
+
+        User doctor = userService.findByUserName("doctor");
+
+        mockMvc.perform(put("/test/routing/reject/" + doctor.getId()))
+                .andExpect(status().isOk());
+
+        assertEquals(AccountStatus.REJECTED, userService.findByUserName("doctor").getStatus());
+    }
+}
@@ -0,0 +1,130 @@
+package org.upgrad.upstac.config.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequestQueryService;
+import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.models.AccountStatus;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Which pool served a request is read from the connection acquisitions each pool reports
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:upstac_workloads;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "upstac.datasource.workload-pools.enabled=true"
+})
+@AutoConfigureMockMvc
+class WorkloadPoolRequestTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    UserService userService;
+
+
+    @TestConfiguration
+    static class WorkloadConfig {
+
+        @Bean
+        WorkloadController workloadController() {
+            return new WorkloadController();
+        }
+    }
+
+    @RestController
+    static class WorkloadController {
+
+        @Autowired
+        TestRequestQueryService testRequestQueryService;
+
+        @Autowired
+        TestRequestFlowService testRequestFlowService;
+
+        @Autowired
+        UserService userService;
+
+        //An INTERACTIVE read, a REPORTING read, then a read-write transaction outside any @UseWorkload
+        @PutMapping("/test/workloads/reject/{id}")
+        AccountStatus reject(@PathVariable Long id) {
+            testRequestQueryService.findQueueCandidates(RequestStatus.INITIATED, Collections.emptySet(), 0, 10);
+            testRequestFlowService.findTimelines(Collections.singletonList(id));
+            return userService.updateApprovalStatus(id, AccountStatus.REJECTED).getStatus();
+        }
+
+        @GetMapping("/test/workloads/queue")
+        int queue() {
+            return testRequestQueryService.findQueueCandidates(RequestStatus.INITIATED, Collections.emptySet(), 0, 10).size();
+        }
+    }
+
+
+    @Test
+    @WithUserDetails(value = "user")
+    void when_request_only_reads_interactively_expect_only_interactive_pool() throws Exception {
+
+        Map<Workload, Long> before = acquisitions();
+        mockMvc.perform(get("/test/workloads/queue")).andExpect(status().isOk());
+        Map<Workload, Long> after = acquisitions();
+
+        assertEquals(1, after.get(Workload.INTERACTIVE) - before.get(Workload.INTERACTIVE));
+        assertEquals(0, after.get(Workload.TRANSACTIONAL) - before.get(Workload.TRANSACTIONAL));
+        assertEquals(0, after.get(Workload.REPORTING) - before.get(Workload.REPORTING));
+    }
+
+    //With the entity manager held for the request, all three would run on the connection of the first
+    @Test
+    @WithUserDetails(value = "user")
+    void when_request_mixes_workloads_expect_each_on_its_own_pool() throws Exception {
+
+        User doctor = userService.findByUserName("doctor");
+
+        Map<Workload, Long> before = acquisitions();
+        mockMvc.perform(put("/test/workloads/reject/" + doctor.getId())).andExpect(status().isOk());
+        Map<Workload, Long> after = acquisitions();
+
+        assertEquals(AccountStatus.REJECTED, userService.findByUserName("doctor").getStatus());
+        for (Workload workload : Workload.values())
+            assertTrue(after.get(workload) > before.get(workload), workload + " pool was not used");
+    }
+
+    private Map<Workload, Long> acquisitions() {
+
+        Map<Workload, Long> counts = new EnumMap<>(Workload.class);
+        for (Workload workload : Workload.values()) {
+            Timer timer = meterRegistry.find("hikaricp.connections.acquire").tag("pool", workload.key()).timer();
+            counts.put(workload, null == timer ? 0L : timer.count());
+        }
+        return counts;
+    }
+}
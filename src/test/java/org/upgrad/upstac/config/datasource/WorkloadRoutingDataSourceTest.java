@@ -0,0 +1,96 @@
+package org.upgrad.upstac.config.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Each workload's pool is an embedded database that knows its own name
+class WorkloadRoutingDataSourceTest {
+
+    JdbcTemplate jdbcTemplate;
+
+    TransactionTemplate readWrite;
+
+    TransactionTemplate readOnly;
+
+
+    @BeforeEach
+    void setUp() {
+        Map<Workload, DataSource> pools = new EnumMap<>(Workload.class);
+        for (Workload workload : Workload.values())
+            pools.put(workload, database("workload_" + workload.key()));
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(new WorkloadRoutingDataSource(pools));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    void when_no_workload_is_set_expect_pool_by_read_only_flag() {
+
+        assertEquals("workload_transactional", readWrite.execute(status -> name()));
+        assertEquals("workload_interactive", readOnly.execute(status -> name()));
+        assertEquals("workload_transactional", name());
+    }
+
+    @Test
+    void when_annotated_expect_its_pool_and_outermost_annotation_to_win() {
+
+        Reports reports = proxy(new Reports());
+
+        assertEquals("workload_reporting", reports.report());
+        assertEquals("workload_interactive", reports.lookup());
+        assertEquals("workload_reporting", reports.reportWithLookup(reports));
+        assertNull(Workload.current());
+    }
+
+    @UseWorkload(Workload.REPORTING)
+    class Reports {
+
+        public String report() {
+            return readOnly.execute(status -> name());
+        }
+
+        @UseWorkload(Workload.INTERACTIVE)
+        public String lookup() {
+            return readOnly.execute(status -> name());
+        }
+
+        public String reportWithLookup(Reports self) {
+            return self.lookup();
+        }
+    }
+
+    private String name() {
+        return jdbcTemplate.queryForObject("select name from marker", String.class);
+    }
+
+    private static <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(WorkloadAspect.class);
+        return factory.getProxy();
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists marker (name varchar(32))");
+        jdbcTemplate.execute("delete from marker");
+        jdbcTemplate.update("insert into marker values (?)", name);
+        return dataSource;
+    }
+}
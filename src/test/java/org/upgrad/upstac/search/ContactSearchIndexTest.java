@@ -0,0 +1,120 @@
+package org.upgrad.upstac.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Terms go to the database shared with the other tests, so every record is named after a word no other test uses
+@SpringBootTest
+class ContactSearchIndexTest {
+
+    private static final ContactDetailsChanged.Kind REQUEST = ContactDetailsChanged.Kind.TEST_REQUEST;
+
+    private static final ContactDetailsChanged.Kind USER = ContactDetailsChanged.Kind.USER;
+
+    private static final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    @Autowired
+    ContactSearchIndex contactSearchIndex;
+
+    @Autowired
+    ContactTermRepository contactTermRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final List<ContactDetailsChanged> applied = new ArrayList<>();
+
+
+    @AfterEach
+    public void removeTerms() {
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            applied.forEach(event -> contactTermRepository.deleteByRecord(event.getKind(), event.getId()));
+            return null;
+        });
+        applied.clear();
+    }
+
+    @Test
+    public void calling_search_should_match_name_email_and_phone_prefixes() {
+
+        String word = uniqueWord();
+        String phone = uniquePhone();
+        Long ravi = apply(REQUEST, "Ravi " + word + "kumar", word + ".k@" + word + ".com", "+91 " + phone.substring(0, 5) + " " + phone.substring(5));
+        Long anita = apply(REQUEST, "Anita " + word + "rao", word + "anita@" + word + ".com", uniquePhone());
+
+        //Prefix matches rank ahead of the near misses the fuzzy lookup adds
+        assertEquals(Collections.singletonList(ravi), contactSearchIndex.search(REQUEST, word + "kum", 1));
+        assertEquals(Collections.singletonList(ravi), contactSearchIndex.search(REQUEST, "Ravi " + word.toUpperCase(), 1));
+        assertEquals(Collections.singletonList(anita), contactSearchIndex.search(REQUEST, word + "anita@", 1));
+        assertEquals(Collections.singletonList(ravi), contactSearchIndex.search(REQUEST, phone.substring(0, 5) + "-" + phone.substring(5), 10));
+        assertEquals(Arrays.asList(ravi, anita), contactSearchIndex.search(REQUEST, word + ".com", 2));
+        assertTrue(contactSearchIndex.search(USER, word + "kum", 10).isEmpty());
+    }
+
+    @Test
+    public void calling_search_with_a_typo_should_find_the_near_miss() {
+
+        String word = uniqueWord();
+        Long id = apply(REQUEST, word + "srinivasan", "s@example.com", uniquePhone());
+
+        assertEquals(Collections.singletonList(id), contactSearchIndex.search(REQUEST, word + "srinovas", 10));
+        assertFalse(contactSearchIndex.search(REQUEST, word + "qqqqqqqq", 10).contains(id));
+    }
+
+    @Test
+    public void calling_search_after_details_change_should_not_match_old_terms() {
+
+        String word = uniqueWord();
+        Long id = apply(USER, "user " + word + "old Name", word + "old@example.com", "9111111111");
+        contactSearchIndex.onContactDetailsChanged(ContactDetailsChanged.of(USER, id, "user " + word + "new Name", word + "new@example.com", "9111111111"));
+
+        assertTrue(contactSearchIndex.search(USER, word + "old@", 10).isEmpty());
+        assertEquals(Collections.singletonList(id), contactSearchIndex.search(USER, word + "new@", 10));
+    }
+
+    @Test
+    public void calling_search_should_match_like_wildcards_literally() {
+
+        String word = uniqueWord();
+        Long wildcard = apply(USER, "user", word + "_%x@example.com", null);
+        Long plain = apply(USER, "user", word + "abx@example.com", null);
+
+        assertEquals(Collections.singletonList(wildcard), contactTermRepository.findRecordIdsByTermPrefix(USER, ContactSearchIndex.likePrefix(word + "_%"), PageRequest.of(0, 10)));
+        assertEquals(Collections.singletonList(plain), contactTermRepository.findRecordIdsByTermPrefix(USER, ContactSearchIndex.likePrefix(word + "ab"), PageRequest.of(0, 10)));
+        assertTrue(contactTermRepository.findRecordIdsByTermPrefix(USER, ContactSearchIndex.likePrefix(word + "a_"), PageRequest.of(0, 10)).isEmpty());
+    }
+
+    private Long apply(ContactDetailsChanged.Kind kind, String name, String email, String phoneNumber) {
+
+        ContactDetailsChanged event = ContactDetailsChanged.of(kind, sequence.incrementAndGet(), name, email, phoneNumber);
+        contactSearchIndex.onContactDetailsChanged(event);
+        applied.add(event);
+        return event.getId();
+    }
+
+    private static String uniqueWord() {
+
+        StringBuilder word = new StringBuilder("zq");
+        for (long value = sequence.incrementAndGet(); value > 0; value /= 26)
+            word.append((char) ('a' + value % 26));
+        return word.toString();
+    }
+
+    private static String uniquePhone() {
+        return String.valueOf(7000000000L + sequence.incrementAndGet() % 1000000000L);
+    }
+}
@@ -0,0 +1,52 @@
+package org.upgrad.upstac.shared.fields;
+
+import org.junit.jupiter.api.Test;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.models.TestRequestFields;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldCatalogTest {
+
+    @Test
+    public void when_selecting_queue_fields_expect_only_those_columns_and_no_joins() {
+
+        FieldSelection fields = TestRequestFields.CATALOG.compile("requestId,name,status,age,pinCode");
+
+        assertEquals("select t.requestId, t.requestId, t.name, t.status, t.age, t.pinCode from TestRequest t where t.status = :status order by t.priorityKey",
+                fields.toJpql("t.status = :status", "t.priorityKey"));
+        assertSame(fields, TestRequestFields.CATALOG.compile("requestId,name,status,age,pinCode"));
+    }
+
+    @Test
+    public void when_selecting_nested_field_expect_parent_join_and_nested_row() {
+
+        FieldSelection fields = TestRequestFields.CATALOG.compile("name, labResult.tester.userName");
+
+        assertEquals("select t.requestId, t.name, lt.userName from TestRequest t left join t.labResult l left join l.tester lt",
+                fields.toJpql(null, null));
+
+        Map<String, Object> row = fields.toRow(new Object[]{1L, "someone", "tester"});
+        assertEquals("someone", row.get("name"));
+        assertEquals("tester", ((Map<?, ?>) ((Map<?, ?>) row.get("labResult")).get("tester")).get("userName"));
+    }
+
+    @Test
+    public void when_selecting_prefix_expect_every_field_under_it() {
+
+        FieldSelection fields = TestRequestFields.CATALOG.compile("consultation.doctor");
+
+        assertEquals(Arrays.asList("consultation.doctor.id", "consultation.doctor.userName"), fields.getNames());
+    }
+
+    @Test
+    public void when_selecting_unknown_field_expect_exception() {
+
+        assertThrows(AppException.class, () -> TestRequestFields.CATALOG.compile("name,password"));
+        assertThrows(AppException.class, () -> TestRequestFields.CATALOG.compile(" , "));
+    }
+
+}
@@ -0,0 +1,145 @@
+package org.upgrad.upstac.shared.idempotency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+    IdempotencyStore idempotencyStore = new IdempotencyStore();
+
+    IdempotencyFilter idempotencyFilter = new IdempotencyFilter();
+
+    AtomicInteger calls = new AtomicInteger();
+
+    int status = 200;
+
+    String receivedBody;
+
+    FilterChain chain = (request, response) -> {
+        calls.incrementAndGet();
+        receivedBody = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
+        ((HttpServletResponse) response).setStatus(status);
+        response.setContentType("application/json");
+        response.getOutputStream().write(("{\"call\":" + calls.get() + "}").getBytes(StandardCharsets.UTF_8));
+    };
+
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyStore, "ttlInMinutes", 60L);
+        ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 100);
+        idempotencyStore.init();
+
+        ReflectionTestUtils.setField(idempotencyFilter, "idempotencyStore", idempotencyStore);
+        ReflectionTestUtils.setField(idempotencyFilter, "enabled", true);
+        ReflectionTestUtils.setField(idempotencyFilter, "paths", Arrays.asList("/api/testrequests", "/api/labrequests/**"));
+        ReflectionTestUtils.setField(idempotencyFilter, "maxBodyBytes", 1024);
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user", null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void when_request_is_retried_with_same_key_expect_stored_response_without_running_it() throws Exception {
+
+        MockHttpServletResponse first = send("POST", "/api/testrequests", "key-1");
+        MockHttpServletResponse retry = send("POST", "/api/testrequests", "key-1");
+
+        assertEquals(1, calls.get());
+        assertEquals(200, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void when_key_is_reused_for_another_request_or_user_expect_no_replay() throws Exception {
+
+        send("PUT", "/api/labrequests/update/1", "key-1");
+
+        assertEquals(422, send("PUT", "/api/labrequests/update/2", "key-1").getStatus());
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("tester", null));
+        assertEquals(200, send("PUT", "/api/labrequests/update/1", "key-1").getStatus());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void when_key_is_reused_with_another_body_expect_unprocessable_entity() throws Exception {
+
+        send("POST", "/api/testrequests", "key-1", "{\"name\":\"first\"}");
+
+        assertEquals("{\"name\":\"first\"}", receivedBody);
+        assertEquals(422, send("POST", "/api/testrequests", "key-1", "{\"name\":\"second\"}").getStatus());
+        assertEquals("true", send("POST", "/api/testrequests", "key-1", "{\"name\":\"first\"}").getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void when_request_fails_expect_retry_to_run_again() throws Exception {
+
+        status = 400;
+        send("POST", "/api/testrequests", "key-1");
+        status = 200;
+        MockHttpServletResponse retry = send("POST", "/api/testrequests", "key-1");
+
+        assertEquals(2, calls.get());
+        assertNull(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void when_first_request_is_still_running_expect_conflict() throws Exception {
+
+        assertNull(idempotencyStore.claim("user\nkey-1", IdempotencyFilter.fingerprintOf("POST", "/api/testrequests", new byte[0])));
+
+        assertEquals(409, send("POST", "/api/testrequests", "key-1").getStatus());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void when_path_is_not_listed_or_key_missing_expect_request_to_pass_through() throws Exception {
+
+        send("POST", "/users", "key-1");
+        send("POST", "/users", "key-1");
+        send("POST", "/api/testrequests", null);
+        send("POST", "/api/testrequests", null);
+
+        assertEquals(4, calls.get());
+        assertEquals(0, idempotencyStore.size());
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String key) throws Exception {
+        return send(method, uri, key, null);
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String key, String body) throws Exception {
+
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (null != body)
+            request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        if (null != key)
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        idempotencyFilter.doFilter(request, response, chain);
+        return response;
+    }
+}
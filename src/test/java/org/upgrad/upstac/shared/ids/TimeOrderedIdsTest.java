@@ -0,0 +1,84 @@
+package org.upgrad.upstac.shared.ids;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedIdsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void when_clock_goes_back_or_sequence_runs_out_expect_ids_still_increasing() {
+
+        AtomicLong clock = new AtomicLong(TimeOrderedIds.EPOCH_MILLIS + 1_000);
+        TimeOrderedIds ids = new TimeOrderedIds(3, clock::get);
+
+        long previous = ids.next();
+        for (int i = 0; i < 1_000; i++) {
+            if (i == 500)
+                clock.addAndGet(-200);
+            long next = ids.next();
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void when_generated_on_different_nodes_expect_distinct_ids_within_53_bits() {
+
+        AtomicLong clock = new AtomicLong(TimeOrderedIds.EPOCH_MILLIS + 60L * 365 * 24 * 3600 * 1000);
+
+        long first = new TimeOrderedIds(0, clock::get).next();
+        long second = new TimeOrderedIds(TimeOrderedIds.MAX_NODE_ID, clock::get).next();
+
+        assertNotEquals(first, second);
+        assertTrue(second < (1L << 53));
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedIds(TimeOrderedIds.MAX_NODE_ID + 1, clock::get));
+    }
+    @Test
+    public void when_node_id_is_missing_or_out_of_range_expect_startup_to_fail() {
+
+        assertEquals(0, TimeOrderedIds.nodeIdOf("0"));
+        assertEquals(31, TimeOrderedIds.nodeIdOf(" 31 "));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIds.nodeIdOf(null));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIds.nodeIdOf(""));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIds.nodeIdOf("${UPSTAC_NODE_ID}"));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIds.nodeIdOf("32"));
+    }
+
+    @Test
+    public void calling_next_after_a_restart_with_the_clock_behind_should_continue_past_the_stored_mark() {
+
+        Path stateFile = directory.resolve("ids-3");
+        AtomicLong clock = new AtomicLong(TimeOrderedIds.EPOCH_MILLIS + 1_000_000);
+
+        TimeOrderedIds beforeRestart = new TimeOrderedIds(3, clock::get, stateFile);
+        long last = 0;
+        for (int i = 0; i < 1_000; i++) {
+            clock.addAndGet(10);
+            last = beforeRestart.next();
+        }
+
+        //Restarted on a clock a minute behind, without any shutdown hook having run
+        clock.addAndGet(-60_000);
+        TimeOrderedIds afterRestart = new TimeOrderedIds(3, clock::get, stateFile);
+
+        assertTrue(afterRestart.next() > last);
+        assertTrue(new TimeOrderedIds(3, clock::get, stateFile).next() > last);
+    }
+
+    @Test
+    public void calling_stateFileOf_without_a_file_should_fail_startup() {
+
+        assertEquals(directory.resolve("ids-0"), TimeOrderedIds.stateFileOf(" " + directory.resolve("ids-0") + " "));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIds.stateFileOf(null));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIds.stateFileOf(""));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIds.stateFileOf("${UPSTAC_ID_STATE_FILE}"));
+    }
+}
@@ -0,0 +1,139 @@
+package org.upgrad.upstac.testrequests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.upgrad.upstac.config.loaddata.AppInitializationService;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Goes through the real logged in user, which is detached by the time the controller reads its coverage
+@SpringBootTest
+class LabRequestCoverageTest {
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    @Autowired
+    WebApplicationContext webApplicationContext;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TestRequestService testRequestService;
+
+    @Autowired
+    TestRequestRepository testRequestRepository;
+
+    MockMvc mockMvc;
+
+    UserDetails tester;
+
+    int pinCode;
+
+    int coveredPinCode;
+
+    private final List<Long> created = new ArrayList<>();
+
+
+    @BeforeEach
+    public void setUp() {
+
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).apply(springSecurity()).build();
+
+        pinCode = 980000 + sequence.incrementAndGet();
+        coveredPinCode = 980500 + sequence.incrementAndGet();
+        String userName = "coveragetester" + System.nanoTime();
+        userService.addTester(AppInitializationService.createRegisterRequestWith(userName, pinCode));
+        tester = userDetailsService.loadUserByUsername(userName);
+    }
+
+    //The database is shared with the controller tests, which pick any request in a given status
+    @AfterEach
+    public void completeCreatedRequests() {
+
+        for (TestRequest testRequest : testRequestRepository.findAllById(created)) {
+            testRequest.setStatus(RequestStatus.COMPLETED);
+            testRequest.setLeaseExpiresAt(null);
+            testRequestRepository.save(testRequest);
+        }
+        created.clear();
+    }
+
+    @Test
+    public void calling_coverage_endpoints_should_read_and_replace_the_covered_pin_codes() throws Exception {
+
+        mockMvc.perform(as(get("/api/labrequests/coverage")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value(pinCode));
+
+        mockMvc.perform(as(put("/api/labrequests/coverage")).contentType(MediaType.APPLICATION_JSON).content("[" + coveredPinCode + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value(coveredPinCode));
+
+        mockMvc.perform(as(get("/api/labrequests/coverage")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value(coveredPinCode));
+    }
+
+    @Test
+    public void calling_queue_and_assign_next_should_serve_the_covered_pin_codes() throws Exception {
+
+        mockMvc.perform(as(put("/api/labrequests/coverage")).contentType(MediaType.APPLICATION_JSON).content("[" + coveredPinCode + "]"))
+                .andExpect(status().isOk());
+        TestRequest testRequest = createTestRequest(coveredPinCode);
+
+        mockMvc.perform(as(get("/api/labrequests/to-be-tested")))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(as(put("/api/labrequests/assign/next")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requestId").value(testRequest.getRequestId()));
+    }
+
+    private MockHttpServletRequestBuilder as(MockHttpServletRequestBuilder request) {
+        return request.with(user(tester));
+    }
+
+    private TestRequest createTestRequest(int pinCode) {
+
+        int number = sequence.incrementAndGet();
+        CreateTestRequest createTestRequest = new CreateTestRequest();
+        createTestRequest.setName("coverage " + number);
+        createTestRequest.setGender(Gender.MALE);
+        createTestRequest.setAge(35);
+        createTestRequest.setAddress("some address");
+        createTestRequest.setEmail("coverage" + number + "@upgrad.com");
+        createTestRequest.setPhoneNumber(String.valueOf(8200000000L + number));
+        createTestRequest.setPinCode(pinCode);
+
+        User user = userService.findByUserName("user");
+        TestRequest testRequest = testRequestService.createTestRequestFrom(user, createTestRequest);
+        created.add(testRequest.getRequestId());
+        return testRequest;
+    }
+}
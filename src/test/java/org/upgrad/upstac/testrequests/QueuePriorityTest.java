@@ -0,0 +1,55 @@
+package org.upgrad.upstac.testrequests;
+
+import org.junit.jupiter.api.Test;
+import org.upgrad.upstac.testrequests.lab.LabResult;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueuePriorityTest {
+
+    @Test
+    public void when_lab_result_is_positive_for_elderly_patient_expect_served_before_negative_young_patient() {
+
+        Instant now = Instant.now();
+
+        TestRequest young = createTestRequestWith(25, TestStatus.NEGATIVE, "98");
+        TestRequest elderly = createTestRequestWith(70, TestStatus.POSITIVE, "91");
+
+        assertTrue(QueuePriority.priorityKeyFor(elderly, now) < QueuePriority.priorityKeyFor(young, now));
+    }
+
+    @Test
+    public void when_request_waited_longer_than_max_boost_expect_served_before_any_newer_request() {
+
+        Instant now = Instant.now();
+        Instant longAgo = now.minusSeconds(QueuePriority.MAX_BOOST_SECONDS + 1);
+
+        TestRequest waiting = createTestRequestWith(25, TestStatus.NEGATIVE, "98");
+        TestRequest urgent = createTestRequestWith(80, TestStatus.POSITIVE, "85");
+
+        assertTrue(QueuePriority.priorityKeyFor(waiting, longAgo) < QueuePriority.priorityKeyFor(urgent, now));
+    }
+
+    @Test
+    public void when_oxygen_level_is_not_a_number_expect_no_oxygen_boost() {
+
+        assertNull(QueuePriority.parseOxygenLevel("low"));
+        assertEquals(Integer.valueOf(92), QueuePriority.parseOxygenLevel("92%"));
+        assertEquals(0L, QueuePriority.clinicalBoostSeconds(createTestRequestWith(30, TestStatus.NEGATIVE, "low")));
+    }
+
+    private TestRequest createTestRequestWith(Integer age, TestStatus result, String oxygenLevel) {
+        LabResult labResult = new LabResult();
+        labResult.setResult(result);
+        labResult.setOxygenLevel(oxygenLevel);
+
+        TestRequest testRequest = new TestRequest();
+        testRequest.setAge(age);
+        testRequest.setLabResult(labResult);
+        return testRequest;
+    }
+
+}
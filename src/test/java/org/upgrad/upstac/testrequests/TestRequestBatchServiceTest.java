@@ -0,0 +1,114 @@
+package org.upgrad.upstac.testrequests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.models.BatchCreateResult;
+import org.upgrad.upstac.testrequests.models.BatchItemResult;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+
+@ExtendWith(MockitoExtension.class)
+class TestRequestBatchServiceTest {
+
+    @Mock
+    TestRequestRepository testRequestRepository;
+
+    @Mock
+    ApplicationEventPublisher applicationEventPublisher;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    TestRequestBatchService testRequestBatchService;
+
+    private final AtomicLong ids = new AtomicLong(100);
+
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(testRequestBatchService, "chunkSize", 10);
+        ReflectionTestUtils.setField(testRequestBatchService, "lookupSize", 10);
+
+        Mockito.when(testRequestRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<TestRequest> testRequests = invocation.getArgument(0);
+            if (testRequests.stream().anyMatch(testRequest -> "broken".equals(testRequest.getAddress())))
+                throw new DataIntegrityViolationException("address too long");
+            testRequests.forEach(testRequest -> testRequest.setRequestId(ids.incrementAndGet()));
+            return testRequests;
+        });
+    }
+
+    @Test
+    void when_batch_has_duplicates_and_a_failing_item_expect_only_those_to_fail() {
+
+        Mockito.when(testRequestRepository.findContactsInProgress(any(), any(), eq(RequestStatus.COMPLETED)))
+                .thenReturn(Collections.singletonList(new Object[]{"busy@upgrad.com", "9000000000"}));
+
+        List<CreateTestRequest> createTestRequests = Arrays.asList(
+                createTestRequest("one@upgrad.com", "9000000001", "address"),
+                createTestRequest("busy@upgrad.com", "9000000002", "address"),
+                createTestRequest("two@upgrad.com", "9000000001", "address"),
+                createTestRequest("three@upgrad.com", "9000000003", "broken"),
+                null,
+                createTestRequest("four@upgrad.com", "9000000004", "address"));
+
+        BatchCreateResult result = testRequestBatchService.createTestRequestsFrom(new User(), createTestRequests);
+
+        assertEquals(2, result.getCreated());
+        assertEquals(4, result.getFailed());
+
+        List<BatchItemResult> items = result.getItems();
+        assertTrue(items.get(0).isCreated());
+        assertNotNull(items.get(0).getRequestId());
+        assertEquals(TestRequestBatchService.ALREADY_IN_PROGRESS, items.get(1).getError());
+        assertEquals(TestRequestBatchService.ALREADY_IN_PROGRESS, items.get(2).getError());
+        assertFalse(items.get(3).isCreated());
+        assertFalse(items.get(4).isCreated());
+        assertTrue(items.get(5).isCreated());
+    }
+
+    @Test
+    void when_batch_is_too_large_expect_app_exception() {
+
+        Mockito.reset(testRequestRepository);
+        List<CreateTestRequest> createTestRequests = new ArrayList<>();
+        for (int i = 0; i <= TestRequestBatchService.MAX_BATCH_SIZE; i++)
+            createTestRequests.add(createTestRequest("camp" + i + "@upgrad.com", null, "address"));
+
+        assertThrows(AppException.class, () -> testRequestBatchService.createTestRequestsFrom(new User(), createTestRequests));
+    }
+
+    private CreateTestRequest createTestRequest(String email, String phoneNumber, String address) {
+        CreateTestRequest createTestRequest = new CreateTestRequest();
+        createTestRequest.setName("Camp");
+        createTestRequest.setGender(Gender.FEMALE);
+        createTestRequest.setAge(40);
+        createTestRequest.setAddress(address);
+        createTestRequest.setEmail(email);
+        createTestRequest.setPhoneNumber(phoneNumber);
+        createTestRequest.setPinCode(716768);
+        return createTestRequest;
+    }
+}
@@ -6,6 +6,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.upgrad.upstac.exception.AppException;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.models.Gender;
@@ -25,6 +26,9 @@ class TestRequestCreateServiceTest {
     @Mock
     TestRequestRepository testRequestRepository;
 
+    @Mock
+    ApplicationEventPublisher applicationEventPublisher;
+
 
     @InjectMocks
     TestRequestService testRequestService;
@@ -0,0 +1,121 @@
+package org.upgrad.upstac.testrequests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.testrequests.queue.QueueIndex;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+@ExtendWith(MockitoExtension.class)
+class TestRequestQueryServiceTest {
+
+    @Mock
+    TestRequestRepository testRequestRepository;
+
+    @Mock
+    QueueIndex queueIndex;
+
+    @InjectMocks
+    TestRequestQueryService testRequestQueryService;
+
+
+    @Test
+    public void without_coverage_every_pin_code_is_served() {
+
+        List<TestRequestSummary> all = Arrays.asList(summary(1L, 560034, 10L), summary(2L, 110001, 20L));
+        Mockito.when(testRequestRepository.findSummariesByStatus(RequestStatus.INITIATED)).thenReturn(all);
+
+        List<TestRequestSummary> result = testRequestQueryService.findSummariesBy(RequestStatus.INITIATED, Collections.emptySet());
+
+        assertThat(result, equalTo(all));
+        Mockito.verify(testRequestRepository, Mockito.never()).findSummariesByPinCodeInAndStatus(any(), any());
+    }
+
+    @Test
+    public void covered_pin_codes_are_served_before_their_districts() {
+
+        Set<Integer> pinCodes = Collections.singleton(560034);
+        List<TestRequestSummary> local = Collections.singletonList(summary(1L, 560034, 10L));
+        Mockito.when(testRequestRepository.findSummariesByPinCodeInAndStatus(pinCodes, RequestStatus.INITIATED)).thenReturn(local);
+
+        List<TestRequestSummary> result = testRequestQueryService.findSummariesBy(RequestStatus.INITIATED, pinCodes);
+
+        assertThat(result, equalTo(local));
+        Mockito.verify(testRequestRepository, Mockito.never()).findSummariesByPinCodeBetweenAndStatus(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    public void an_empty_local_queue_takes_work_from_each_district_once_in_priority_order() {
+
+        Set<Integer> pinCodes = new HashSet<>(Arrays.asList(560034, 560078, 110001));
+        Mockito.when(testRequestRepository.findSummariesByPinCodeInAndStatus(pinCodes, RequestStatus.INITIATED)).thenReturn(Collections.emptyList());
+        Mockito.when(testRequestRepository.findSummariesByPinCodeBetweenAndStatus(560000, 560999, RequestStatus.INITIATED))
+                .thenReturn(Arrays.asList(summary(1L, 560001, 30L), summary(2L, 560999, 50L)));
+        Mockito.when(testRequestRepository.findSummariesByPinCodeBetweenAndStatus(110000, 110999, RequestStatus.INITIATED))
+                .thenReturn(Collections.singletonList(summary(3L, 110002, 40L)));
+
+        List<TestRequestSummary> result = testRequestQueryService.findSummariesBy(RequestStatus.INITIATED, pinCodes);
+
+        assertThat(ids(result), contains(1L, 3L, 2L));
+        Mockito.verify(testRequestRepository, Mockito.times(2)).findSummariesByPinCodeBetweenAndStatus(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    public void a_queue_requested_without_paging_is_returned_whole() {
+
+        List<TestRequestSummary> all = new ArrayList<>();
+        for (long id = 1; id <= 60; id++)
+            all.add(summary(id, 560034, id));
+        Mockito.when(testRequestRepository.findSummariesByStatus(RequestStatus.LAB_TEST_COMPLETED)).thenReturn(all);
+
+        assertThat(testRequestQueryService.findQueue(RequestStatus.LAB_TEST_COMPLETED, Collections.emptySet(), null, null), hasSize(60));
+        assertThat(testRequestQueryService.findQueue(RequestStatus.LAB_TEST_COMPLETED, Collections.emptySet(), 1, null), hasSize(10));
+        assertThat(ids(testRequestQueryService.findQueue(RequestStatus.LAB_TEST_COMPLETED, Collections.emptySet(), null, 5)), contains(1L, 2L, 3L, 4L, 5L));
+    }
+
+    @Test
+    public void claim_candidates_from_districts_are_merged_by_priority_and_then_id() {
+
+        Set<Integer> pinCodes = new HashSet<>(Arrays.asList(560034, 110001));
+        Mockito.when(testRequestRepository.existsByPinCodeInAndStatus(pinCodes, RequestStatus.INITIATED)).thenReturn(false);
+        Mockito.when(testRequestRepository.findQueuedEntriesByPinCodeBetween(560000, 560999, RequestStatus.INITIATED, PageRequest.of(0, 4)))
+                .thenReturn(Arrays.asList(new Object[]{5L, 30L}, new Object[]{6L, 60L}));
+        Mockito.when(testRequestRepository.findQueuedEntriesByPinCodeBetween(110000, 110999, RequestStatus.INITIATED, PageRequest.of(0, 4)))
+                .thenReturn(Arrays.asList(new Object[]{4L, 30L}, new Object[]{7L, 50L}));
+
+        assertThat(testRequestQueryService.findQueueCandidates(RequestStatus.INITIATED, pinCodes, 1, 2), contains(7L, 6L));
+    }
+
+
+    private static List<Long> ids(List<TestRequestSummary> summaries) {
+
+        List<Long> ids = new ArrayList<>();
+        summaries.forEach(summary -> ids.add(summary.getRequestId()));
+        return ids;
+    }
+
+    private static TestRequestSummary summary(Long requestId, Integer pinCode, Long priorityKey) {
+
+        return new TestRequestSummary(requestId, null, RequestStatus.INITIATED, "someone", null,
+                null, null, null, null, pinCode,
+                priorityKey, null,
+                null, null, null, null,
+                null, null, null, null, null,
+                null, null, null,
+                null, null, null, null,
+                null, null, null, null,
+                null, null, null, null);
+    }
+
+}
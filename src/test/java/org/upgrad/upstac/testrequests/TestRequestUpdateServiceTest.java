@@ -0,0 +1,233 @@
+package org.upgrad.upstac.testrequests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.upgrad.upstac.config.loaddata.AppInitializationService;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.lab.CreateLabResult;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class TestRequestUpdateServiceTest {
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    @Autowired
+    TestRequestUpdateService testRequestUpdateService;
+
+    @Autowired
+    TestRequestService testRequestService;
+
+    @Autowired
+    TestRequestRepository testRequestRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final List<Long> created = new ArrayList<>();
+
+
+    //The database is shared with the controller tests, which pick any request in a given status
+    @AfterEach
+    public void completeCreatedRequests() {
+
+        for (TestRequest testRequest : testRequestRepository.findAllById(created)) {
+            testRequest.setStatus(RequestStatus.COMPLETED);
+            testRequest.setLeaseExpiresAt(null);
+            testRequestRepository.save(testRequest);
+        }
+        created.clear();
+    }
+
+    @Test
+    public void a_request_claimed_by_another_tester_cannot_be_assigned_again() throws Exception {
+
+        int pinCode = unusedPinCode();
+        TestRequest testRequest = createTestRequest(pinCode);
+        User first = createTester(pinCode);
+        User second = createTester(pinCode);
+
+        Future<?> holder = holdWhile(() -> testRequestUpdateService.assignForLabTest(testRequest.getRequestId(), first));
+
+        AppException result = assertThrows(AppException.class, () -> testRequestUpdateService.assignForLabTest(testRequest.getRequestId(), second));
+        holder.get();
+
+        assertThat(result.getMessage(), equalTo("Invalid ID"));
+        assertThat(testRequestRepository.findWithResultsById(testRequest.getRequestId()).get().getLabResult().getTester().getId(), equalTo(first.getId()));
+    }
+
+    @Test
+    public void assign_next_skips_a_request_claimed_by_another_tester() throws Exception {
+
+        int pinCode = unusedPinCode();
+        TestRequest older = createTestRequest(pinCode);
+        TestRequest newer = createTestRequest(pinCode);
+        User first = createTester(pinCode);
+        User second = createTester(pinCode);
+
+        Future<?> holder = holdWhile(() -> assertThat(testRequestUpdateService.assignNextForLabTest(first).getRequestId(), equalTo(older.getRequestId())));
+
+        TestRequest result = testRequestUpdateService.assignNextForLabTest(second);
+        holder.get();
+
+        assertThat(result.getRequestId(), equalTo(newer.getRequestId()));
+        assertThrows(AppException.class, () -> testRequestUpdateService.assignNextForLabTest(second));
+    }
+
+    @Test
+    public void an_expired_lease_returns_the_request_to_its_queue() {
+
+        int pinCode = unusedPinCode();
+        TestRequest testRequest = createTestRequest(pinCode);
+        User tester = createTester(pinCode);
+        testRequestUpdateService.assignForLabTest(testRequest.getRequestId(), tester);
+        expireLeaseOf(testRequest);
+
+        int reaped = testRequestUpdateService.expireLeases(LocalDateTime.now(), 100);
+
+        TestRequest result = testRequestRepository.findWithResultsById(testRequest.getRequestId()).get();
+        assertThat(reaped, greaterThanOrEqualTo(1));
+        assertThat(result.getStatus(), equalTo(RequestStatus.INITIATED));
+        assertThat(result.getLabResult(), nullValue());
+        assertThat(result.getLeaseExpiresAt(), nullValue());
+    }
+
+    @Test
+    public void a_lease_can_only_be_renewed_by_its_holder() {
+
+        int pinCode = unusedPinCode();
+        TestRequest testRequest = createTestRequest(pinCode);
+        User holder = createTester(pinCode);
+        User other = createTester(pinCode);
+        testRequestUpdateService.assignForLabTest(testRequest.getRequestId(), holder);
+
+        AppException result = assertThrows(AppException.class, () -> testRequestUpdateService.renewLease(testRequest.getRequestId(), other));
+
+        assertThat(result.getMessage(), equalTo("Invalid ID or State"));
+        assertThat(testRequestUpdateService.renewLease(testRequest.getRequestId(), holder).getLeaseExpiresAt(), notNullValue());
+    }
+
+    @Test
+    public void a_result_recorded_while_the_reaper_expires_the_lease_is_rejected() throws Exception {
+
+        int pinCode = unusedPinCode();
+        TestRequest testRequest = createTestRequest(pinCode);
+        User tester = createTester(pinCode);
+        testRequestUpdateService.assignForLabTest(testRequest.getRequestId(), tester);
+        expireLeaseOf(testRequest);
+
+        Future<?> reaper = holdWhile(() -> testRequestUpdateService.expireLeases(LocalDateTime.now(), 100));
+
+        assertThrows(AppException.class, () -> testRequestUpdateService.updateLabTest(testRequest.getRequestId(), negativeResult(), tester));
+        reaper.get();
+
+        assertThat(testRequestRepository.findById(testRequest.getRequestId()).get().getStatus(), equalTo(RequestStatus.INITIATED));
+    }
+
+    @Test
+    public void the_reaper_leaves_a_request_completed_while_it_waited() throws Exception {
+
+        int pinCode = unusedPinCode();
+        TestRequest testRequest = createTestRequest(pinCode);
+        User tester = createTester(pinCode);
+        testRequestUpdateService.assignForLabTest(testRequest.getRequestId(), tester);
+        expireLeaseOf(testRequest);
+
+        Future<?> update = holdWhile(() -> testRequestUpdateService.updateLabTest(testRequest.getRequestId(), negativeResult(), tester));
+
+        testRequestUpdateService.expireLeases(LocalDateTime.now(), 100);
+        update.get();
+
+        TestRequest result = testRequestRepository.findWithResultsById(testRequest.getRequestId()).get();
+        assertThat(result.getStatus(), equalTo(RequestStatus.LAB_TEST_COMPLETED));
+        assertThat(result.getLabResult().getResult(), equalTo(TestStatus.NEGATIVE));
+    }
+
+
+    private void expireLeaseOf(TestRequest testRequest) {
+
+        TestRequest assigned = testRequestRepository.findById(testRequest.getRequestId()).get();
+        assigned.setLeaseExpiresAt(LocalDateTime.now().minusMinutes(1));
+        testRequestRepository.save(assigned);
+    }
+
+    private static CreateLabResult negativeResult() {
+
+        CreateLabResult createLabResult = new CreateLabResult();
+        createLabResult.setBloodPressure("120");
+        createLabResult.setHeartBeat("72");
+        createLabResult.setTemperature("98");
+        createLabResult.setOxygenLevel("97");
+        createLabResult.setComments("ok");
+        createLabResult.setResult(TestStatus.NEGATIVE);
+        return createLabResult;
+    }
+
+    //Runs the action in a transaction on another thread and keeps it open for a while once the action is done
+    private Future<?> holdWhile(Runnable action) throws InterruptedException {
+
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> holder = executor.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            action.run();
+            done.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        executor.shutdown();
+
+        done.await(10, TimeUnit.SECONDS);
+        return holder;
+    }
+
+    private static int unusedPinCode() {
+        return 990000 + sequence.incrementAndGet();
+    }
+
+    private TestRequest createTestRequest(int pinCode) {
+
+        int number = sequence.incrementAndGet();
+        CreateTestRequest createTestRequest = new CreateTestRequest();
+        createTestRequest.setName("claim " + number);
+        createTestRequest.setGender(Gender.FEMALE);
+        createTestRequest.setAge(40);
+        createTestRequest.setAddress("some address");
+        createTestRequest.setEmail("claim" + number + "@upgrad.com");
+        createTestRequest.setPhoneNumber(String.valueOf(8100000000L + number));
+        createTestRequest.setPinCode(pinCode);
+
+        User user = userService.findByUserName("user");
+        TestRequest testRequest = testRequestService.createTestRequestFrom(user, createTestRequest);
+        created.add(testRequest.getRequestId());
+        return testRequest;
+    }
+
+    private User createTester(int pinCode) {
+        return userService.addTester(AppInitializationService.createRegisterRequestWith("claimtester" + sequence.incrementAndGet(), pinCode));
+    }
+
+}
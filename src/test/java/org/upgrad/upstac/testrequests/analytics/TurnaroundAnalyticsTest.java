@@ -0,0 +1,134 @@
+package org.upgrad.upstac.testrequests.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.flow.TestRequestFlowLogged;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Bucket rows are shared by every test, each test counts under a pin code and assignee of its own
+@SpringBootTest
+class TurnaroundAnalyticsTest {
+
+    private static final Instant CREATED = Instant.parse("2020-08-01T10:00:00Z");
+
+    @Autowired
+    TurnaroundAnalytics turnaroundAnalytics;
+
+    @Autowired
+    TurnaroundBucketRepository turnaroundBucketRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+
+    @Test
+    public void calling_valueAtPercentile_should_be_within_bucket_precision() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value);
+
+        assertEquals(100_000, histogram.getTotalCount());
+        assertEquals(50_000, histogram.valueAtPercentile(50), 50_000 * 0.07);
+        assertEquals(99_000, histogram.valueAtPercentile(99), 99_000 * 0.07);
+        assertEquals(100_000, histogram.getMaxValue());
+        assertEquals(0, new LatencyHistogram().valueAtPercentile(99));
+    }
+
+    @Test
+    public void calling_record_should_time_each_edge_from_when_its_status_was_entered() {
+
+        Map<String, LatencyHistogram> histograms = new HashMap<>();
+        TurnaroundAnalytics.record(flow(1L, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS, 560001, 60_000, 3L), null, histograms);
+        TurnaroundAnalytics.record(flow(1L, RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED, 560001, 180_000, 3L), CREATED.plusMillis(60_000), histograms);
+        TurnaroundAnalytics.record(flow(1L, RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS, 560001, 200_000, 2L), null, histograms);
+
+        assertEquals(60_000, histograms.get("edge:INITIATED->LAB_TEST_IN_PROGRESS").getMaxValue());
+        assertEquals(120_000, histograms.get("edge:LAB_TEST_IN_PROGRESS->LAB_TEST_COMPLETED").getMaxValue());
+        assertEquals(120_000, histograms.get("assignee:3").getMaxValue());
+
+        //Entered before statusChangedAt was kept, only statuses left for the first time are timed from creation
+        assertNull(histograms.get("edge:LAB_TEST_COMPLETED->DIAGNOSIS_IN_PROCESS"));
+        assertNull(histograms.get(TurnaroundAnalytics.END_TO_END));
+    }
+
+    @Test
+    public void calling_flush_on_two_nodes_should_report_their_totals() {
+
+        int pinCode = 700000 + (int) (System.nanoTime() % 100000);
+        long doctorId = 9_000_000L + pinCode;
+
+        TurnaroundAnalytics otherNode = new TurnaroundAnalytics();
+        ReflectionTestUtils.setField(otherNode, "turnaroundBucketRepository", turnaroundBucketRepository);
+        ReflectionTestUtils.setField(otherNode, "entityManager", entityManager);
+        ReflectionTestUtils.setField(otherNode, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(otherNode, "enabled", true);
+
+        turnaroundAnalytics.onFlowLogged(completed(1L, pinCode, 240_000, doctorId));
+        otherNode.onFlowLogged(completed(2L, pinCode, 480_000, doctorId));
+        turnaroundAnalytics.flush();
+        otherNode.flush();
+        turnaroundAnalytics.onFlowLogged(completed(3L, pinCode, 60_000, doctorId));
+        turnaroundAnalytics.flush();
+
+        LatencySummary forPinCode = turnaroundAnalytics.endToEndForPinCode(pinCode).get();
+        assertEquals(3, forPinCode.getCount());
+        assertEquals(480_000, forPinCode.getMax());
+        assertEquals(240_000, forPinCode.getP50(), 240_000 * 0.07);
+
+        LatencySummary forDoctor = otherNode.forAssignee(doctorId).get();
+        assertEquals(3, forDoctor.getCount());
+        assertEquals(480_000 - 1_000, forDoctor.getMax());
+
+        assertTrue(turnaroundAnalytics.byEdge().get("DIAGNOSIS_IN_PROCESS->COMPLETED").getCount() >= 3);
+        assertFalse(turnaroundAnalytics.endToEndForPinCode(pinCode + 1).isPresent());
+    }
+
+    @Test
+    public void calling_liveSince_should_keep_the_time_the_first_node_started() {
+
+        Instant first = turnaroundAnalytics.liveSince();
+
+        TurnaroundAnalytics otherNode = new TurnaroundAnalytics();
+        ReflectionTestUtils.setField(otherNode, "turnaroundBucketRepository", turnaroundBucketRepository);
+        ReflectionTestUtils.setField(otherNode, "entityManager", entityManager);
+        ReflectionTestUtils.setField(otherNode, "transactionManager", transactionManager);
+
+        assertEquals(first, otherNode.liveSince());
+        assertTrue(first.isBefore(Instant.now()));
+    }
+
+    //Diagnosis started a second after creation
+    private TestRequestFlowLogged completed(Long requestId, int pinCode, long millisAfterCreation, Long doctorId) {
+
+        TestRequestFlowLogged event = flow(requestId, RequestStatus.DIAGNOSIS_IN_PROCESS, RequestStatus.COMPLETED, pinCode, millisAfterCreation, doctorId);
+        event.setEnteredAt(CREATED.plusMillis(1_000));
+        return event;
+    }
+
+    private TestRequestFlowLogged flow(Long requestId, RequestStatus from, RequestStatus to, int pinCode, long millisAfterCreation, Long changedById) {
+
+        TestRequestFlowLogged event = new TestRequestFlowLogged();
+        event.setRequestId(requestId);
+        event.setFromStatus(from);
+        event.setToStatus(to);
+        event.setHappenedAt(CREATED.plusMillis(millisAfterCreation));
+        event.setRequestCreatedAt(CREATED);
+        event.setPinCode(pinCode);
+        event.setChangedById(changedById);
+        return event;
+    }
+}
@@ -0,0 +1,113 @@
+package org.upgrad.upstac.testrequests.completed;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.search.ContactDetailsChanged;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletedRequestCacheTest {
+
+    @Test
+    public void when_cache_is_full_expect_least_recently_used_entry_evicted() {
+
+        CompletedRequestCache cache = cacheOf(2, false);
+        cache.put(summaryOf(1L, RequestStatus.COMPLETED), "{}".getBytes(StandardCharsets.UTF_8));
+        cache.put(summaryOf(2L, RequestStatus.COMPLETED), "{}".getBytes(StandardCharsets.UTF_8));
+        cache.get(1L);
+        cache.put(summaryOf(3L, RequestStatus.COMPLETED), "{}".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(cache.get(1L).isPresent());
+        assertFalse(cache.get(2L).isPresent());
+        assertTrue(cache.get(3L).isPresent());
+    }
+
+    @Test
+    public void when_request_is_not_completed_expect_not_cached() {
+
+        CompletedRequestCache cache = cacheOf(2, false);
+        cache.put(summaryOf(1L, RequestStatus.LAB_TEST_COMPLETED), "{}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void when_held_off_heap_expect_same_bytes_written() throws Exception {
+
+        CompletedRequestCache cache = cacheOf(2, true);
+        cache.put(summaryOf(1L, RequestStatus.COMPLETED), "{\"requestId\":1}".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.get(1L).get().writeTo(out);
+        cache.get(1L).get().writeTo(out);
+
+        assertEquals("{\"requestId\":1}{\"requestId\":1}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void when_contact_details_of_request_or_its_users_change_expect_entries_evicted() {
+
+        CompletedRequestCache cache = cacheOf(10, false);
+        cache.put(summaryOf(1L, RequestStatus.COMPLETED), "{}".getBytes(StandardCharsets.UTF_8));
+        cache.put(summaryOf(2L, RequestStatus.COMPLETED, 7L), "{}".getBytes(StandardCharsets.UTF_8));
+        cache.put(summaryOf(3L, RequestStatus.COMPLETED, 8L), "{}".getBytes(StandardCharsets.UTF_8));
+
+        User owner = new User();
+        owner.setId(7L);
+        cache.onContactDetailsChanged(ContactDetailsChanged.of(owner));
+        TestRequest testRequest = new TestRequest();
+        testRequest.setRequestId(1L);
+        cache.onContactDetailsChanged(ContactDetailsChanged.of(testRequest));
+
+        assertFalse(cache.get(1L).isPresent());
+        assertFalse(cache.get(2L).isPresent());
+        assertTrue(cache.get(3L).isPresent());
+    }
+
+    @Test
+    public void when_entry_is_older_than_max_age_expect_not_served() {
+
+        CompletedRequestCache cache = cacheOf(10, false);
+        ReflectionTestUtils.setField(cache, "maxAgeInMinutes", -1L);
+        cache.put(summaryOf(1L, RequestStatus.COMPLETED), "{}".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(cache.get(1L).isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    private CompletedRequestCache cacheOf(int maxEntries, boolean offHeap) {
+
+        CompletedRequestCache cache = new CompletedRequestCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "offHeap", offHeap);
+        ReflectionTestUtils.setField(cache, "maxAgeInMinutes", 10L);
+        cache.init();
+        return cache;
+    }
+
+    private TestRequestSummary summaryOf(Long id, RequestStatus status) {
+        return summaryOf(id, status, null);
+    }
+
+    private TestRequestSummary summaryOf(Long id, RequestStatus status, Long ownerId) {
+
+        TestRequestSummary summary = new TestRequestSummary(id, null, status, null, null, null, null, null, null, null, null, null,
+                1L, null, null, null,
+                null, null, null, null, null, null, null, null,
+                null, null, null, null,
+                null, null, null, null,
+                null, null, null, null);
+        if (null != ownerId)
+            summary.setCreatedBy(UserSummary.of(ownerId, null, null, null));
+        return summary;
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.upgrad.upstac.testrequests.detail;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.exception.DeadlineExceededException;
+import org.upgrad.upstac.testrequests.TestRequestQueryService;
+import org.upgrad.upstac.testrequests.flow.TestRequestFlowRepository;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+import org.upgrad.upstac.testrequests.models.TestRequestFlowSummary;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class TestRequestDetailServiceTest {
+
+    @Mock
+    TestRequestQueryService testRequestQueryService;
+
+    @Mock
+    TestRequestFlowRepository testRequestFlowRepository;
+
+    @InjectMocks
+    TestRequestDetailService testRequestDetailService;
+
+    User user = new User();
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(testRequestDetailService, "threads", 2);
+        ReflectionTestUtils.setField(testRequestDetailService, "queueCapacity", 4);
+        ReflectionTestUtils.setField(testRequestDetailService, "deadlineInMs", 200L);
+        testRequestDetailService.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        testRequestDetailService.stop();
+    }
+
+    @Test
+    public void when_request_is_not_visible_to_user_expect_no_detail_and_flow_dropped() {
+
+        Mockito.when(testRequestQueryService.findSummaryForUserByID(user, 1L)).thenReturn(Optional.empty());
+        Mockito.lenient().when(testRequestFlowRepository.findSummariesByRequestId(1L)).thenReturn(Collections.singletonList(Mockito.mock(TestRequestFlowSummary.class)));
+
+        assertFalse(testRequestDetailService.findDetailForUserByID(user, 1L).isPresent());
+    }
+
+    @Test
+    public void when_both_queries_take_most_of_the_deadline_expect_them_to_run_in_parallel() {
+
+        Optional<TestRequestSummary> summary = Optional.of(Mockito.mock(TestRequestSummary.class));
+        Mockito.when(testRequestQueryService.findSummaryForUserByID(user, 1L)).thenAnswer(invocation -> {
+            Thread.sleep(120);
+            return summary;
+        });
+        Mockito.when(testRequestFlowRepository.findSummariesByRequestId(1L)).thenAnswer(invocation -> {
+            Thread.sleep(120);
+            return new ArrayList<TestRequestFlowSummary>();
+        });
+
+        assertTrue(testRequestDetailService.findDetailForUserByID(user, 1L).isPresent());
+    }
+
+    @Test
+    public void when_queries_run_on_the_pool_expect_the_callers_security_context() {
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("tester", null));
+        List<Authentication> seen = new CopyOnWriteArrayList<>();
+        Optional<TestRequestSummary> summary = Optional.of(Mockito.mock(TestRequestSummary.class));
+        Mockito.when(testRequestQueryService.findSummaryForUserByID(user, 1L)).thenAnswer(invocation -> {
+            seen.add(SecurityContextHolder.getContext().getAuthentication());
+            return summary;
+        });
+        Mockito.when(testRequestFlowRepository.findSummariesByRequestId(1L)).thenAnswer(invocation -> {
+            seen.add(SecurityContextHolder.getContext().getAuthentication());
+            return new ArrayList<TestRequestFlowSummary>();
+        });
+
+        testRequestDetailService.findDetailForUserByID(user, 1L);
+
+        assertEquals(2, seen.size());
+        seen.forEach(authentication -> assertEquals("tester", authentication.getName()));
+    }
+
+    @Test
+    public void when_request_is_visible_to_user_expect_detail_with_flow() {
+
+        TestRequestSummary summary = Mockito.mock(TestRequestSummary.class);
+        Mockito.when(testRequestQueryService.findSummaryForUserByID(user, 1L)).thenReturn(Optional.of(summary));
+        Mockito.when(testRequestFlowRepository.findSummariesByRequestId(1L)).thenReturn(new ArrayList<TestRequestFlowSummary>());
+
+        Optional<TestRequestDetail> detail = testRequestDetailService.findDetailForUserByID(user, 1L);
+
+        assertTrue(detail.isPresent());
+        assertSame(summary, detail.get().getRequest());
+    }
+
+    @Test
+    public void when_sub_query_is_slower_than_deadline_expect_deadline_exceeded() {
+
+        Mockito.when(testRequestQueryService.findSummaryForUserByID(user, 1L)).thenReturn(Optional.of(Mockito.mock(TestRequestSummary.class)));
+        Mockito.when(testRequestFlowRepository.findSummariesByRequestId(1L)).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return new ArrayList<TestRequestFlowSummary>();
+        });
+
+        assertThrows(DeadlineExceededException.class, () -> testRequestDetailService.findDetailForUserByID(user, 1L));
+    }
+
+}
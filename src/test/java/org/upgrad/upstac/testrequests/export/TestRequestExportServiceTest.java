@@ -0,0 +1,117 @@
+package org.upgrad.upstac.testrequests.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestRequestExportServiceTest {
+
+    static final String NAME = "Rao, \"Ravi\"";
+    static final String ADDRESS = "12 Main Road,\nFlat 4\r\nBengaluru";
+
+    TypedQuery<TestRequestSummary> query;
+
+    @Test
+    public void calling_csv_escape_should_quote_commas_quotes_and_line_breaks() {
+
+        assertEquals("", TestRequestExportService.csvEscape(null));
+        assertEquals("plain", TestRequestExportService.csvEscape("plain"));
+        assertEquals("\"a,b\"", TestRequestExportService.csvEscape("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", TestRequestExportService.csvEscape("say \"hi\""));
+        assertEquals("\"line\nbreak\"", TestRequestExportService.csvEscape("line\nbreak"));
+        assertEquals("\"line\rbreak\"", TestRequestExportService.csvEscape("line\rbreak"));
+    }
+
+    @Test
+    public void calling_export_as_csv_should_write_the_header_and_escaped_fields() throws Exception {
+
+        String csv = export(ExportFormat.CSV, "H2");
+
+        assertTrue(csv.startsWith(String.join(",", TestRequestExportService.CSV_HEADER) + "\n"));
+        assertTrue(csv.contains("1,2026-10-19,COMPLETED,\"Rao, \"\"Ravi\"\"\",,30,\"12 Main Road,\nFlat 4\r\nBengaluru\",560001,"));
+    }
+
+    @Test
+    public void calling_export_as_ndjson_should_write_one_parseable_line_per_request() throws Exception {
+
+        String[] lines = export(ExportFormat.NDJSON, "H2").split("\n");
+
+        assertEquals(2, lines.length);
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode request = objectMapper.readTree(lines[i]);
+            assertEquals(i + 1, request.get("requestId").asLong());
+            assertEquals(NAME, request.get("name").asText());
+            assertEquals(ADDRESS, request.get("address").asText());
+        }
+    }
+
+    @Test
+    public void calling_export_on_mysql_should_stream_rows_one_by_one() throws Exception {
+
+        export(ExportFormat.CSV, "MySQL");
+        Mockito.verify(query).setHint(QueryHints.HINT_FETCH_SIZE, Integer.MIN_VALUE);
+
+        export(ExportFormat.CSV, "H2");
+        Mockito.verify(query).setHint(QueryHints.HINT_FETCH_SIZE, 500);
+    }
+
+    @Test
+    public void calling_format_of_should_ignore_case_and_reject_unknown_formats() {
+
+        assertEquals(ExportFormat.CSV, ExportFormat.of("csv"));
+        assertEquals(ExportFormat.NDJSON, ExportFormat.of("NdJson"));
+        assertThrows(AppException.class, () -> ExportFormat.of("xml"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private String export(ExportFormat format, String databaseProductName) throws Exception {
+
+        query = Mockito.mock(TypedQuery.class, Mockito.RETURNS_SELF);
+        Mockito.when(query.getResultStream()).thenReturn(Stream.of(summary(1L), summary(2L)));
+        EntityManager entityManager = Mockito.mock(EntityManager.class);
+        Mockito.when(entityManager.createQuery(Mockito.anyString(), Mockito.eq(TestRequestSummary.class))).thenReturn(query);
+        Session session = Mockito.mock(Session.class);
+        Mockito.when(session.doReturningWork(Mockito.any())).thenReturn(databaseProductName);
+        Mockito.when(entityManager.unwrap(Session.class)).thenReturn(session);
+
+        TestRequestExportService exportService = new TestRequestExportService();
+        ReflectionTestUtils.setField(exportService, "entityManager", entityManager);
+        ReflectionTestUtils.setField(exportService, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(exportService, "fetchSize", 500);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, exportService.export(new ExportFilter(), format, out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static TestRequestSummary summary(Long requestId) {
+
+        return new TestRequestSummary(requestId, LocalDate.of(2026, 10, 19), RequestStatus.COMPLETED, NAME, null,
+                ADDRESS, 30, null, null, 560001,
+                null, null,
+                null, null, null, null,
+                null, null, null, null, null,
+                null, null, null,
+                null, null, null, null,
+                null, null, null, null,
+                null, null, null, null);
+    }
+
+}
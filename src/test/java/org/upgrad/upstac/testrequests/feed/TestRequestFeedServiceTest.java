@@ -0,0 +1,166 @@
+package org.upgrad.upstac.testrequests.feed;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.roles.Role;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TestRequestFeedServiceTest {
+
+    @Test
+    public void calling_filterFor_a_tester_should_match_their_assignments_and_the_queue_of_their_pin_codes() {
+
+        Predicate<TestRequestStatusChanged> filter = FeedSubscription.filterFor(userWithRole(3L, "TESTER"), Collections.singleton(560001));
+
+        assertTrue(filter.test(event(null, RequestStatus.INITIATED, 560001, null, null)));
+        assertFalse(filter.test(event(null, RequestStatus.INITIATED, 110001, null, null)));
+        assertTrue(filter.test(event(RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS, 560001, 4L, null)));
+        assertTrue(filter.test(event(RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED, 110001, 3L, null)));
+        assertFalse(filter.test(event(RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED, 560001, 4L, null)));
+
+        //A tester without coverage pin codes follows the whole queue
+        assertTrue(FeedSubscription.filterFor(userWithRole(3L, "TESTER"), Collections.emptySet())
+                .test(event(null, RequestStatus.INITIATED, 110001, null, null)));
+    }
+
+    @Test
+    public void calling_filterFor_other_roles_should_match_their_queue_or_their_own_requests() {
+
+        Predicate<TestRequestStatusChanged> doctor = FeedSubscription.filterFor(userWithRole(5L, "DOCTOR"), Collections.emptySet());
+        assertTrue(doctor.test(event(RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED, 560001, 3L, null)));
+        assertTrue(doctor.test(event(RequestStatus.DIAGNOSIS_IN_PROCESS, RequestStatus.COMPLETED, 560001, 3L, 5L)));
+        assertFalse(doctor.test(event(RequestStatus.DIAGNOSIS_IN_PROCESS, RequestStatus.COMPLETED, 560001, 3L, 6L)));
+        assertFalse(doctor.test(event(null, RequestStatus.INITIATED, 560001, null, null)));
+
+        assertTrue(FeedSubscription.filterFor(userWithRole(7L, "GOVERNMENT_AUTHORITY"), Collections.emptySet())
+                .test(event(null, RequestStatus.INITIATED, 560001, null, null)));
+
+        Predicate<TestRequestStatusChanged> patient = FeedSubscription.filterFor(userWithRole(8L, "USER"), Collections.emptySet());
+        TestRequestStatusChanged own = event(null, RequestStatus.INITIATED, 560001, null, null);
+        own.setCreatedById(8L);
+        assertTrue(patient.test(own));
+        assertFalse(patient.test(event(null, RequestStatus.INITIATED, 560001, null, null)));
+    }
+
+    @Test
+    public void calling_publish_should_send_only_to_the_subscribers_that_want_the_event() throws IOException {
+
+        TestRequestFeedService service = serviceSendingOnCaller();
+        SseEmitter wanting = mock(SseEmitter.class);
+        SseEmitter other = mock(SseEmitter.class);
+        service.subscribe(wanting, event -> true);
+        service.subscribe(other, event -> false);
+
+        service.publish(event(null, RequestStatus.INITIATED, 560001, null, null));
+
+        verify(wanting).send(any(SseEmitter.SseEventBuilder.class));
+        verify(other, never()).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    public void calling_publish_should_drop_a_subscriber_whose_send_fails() throws IOException {
+
+        TestRequestFeedService service = serviceSendingOnCaller();
+        SseEmitter gone = mock(SseEmitter.class);
+        SseEmitter connected = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(gone).send(any(SseEmitter.SseEventBuilder.class));
+        service.subscribe(gone, event -> true);
+        service.subscribe(connected, event -> true);
+
+        service.publish(event(null, RequestStatus.INITIATED, 560001, null, null));
+        service.publish(event(null, RequestStatus.INITIATED, 560001, null, null));
+
+        assertEquals(1, service.subscriberCount());
+        verify(gone, times(1)).send(any(SseEmitter.SseEventBuilder.class));
+        verify(connected, times(2)).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    public void calling_publish_should_drop_a_subscriber_that_stopped_reading_without_waiting_for_it() throws Exception {
+
+        TestRequestFeedService service = new TestRequestFeedService();
+        ReflectionTestUtils.setField(service, "outboxCapacity", 2);
+        service.start();
+
+        CountDownLatch stuck = new CountDownLatch(1);
+        SseEmitter slow = mock(SseEmitter.class);
+        SseEmitter fast = mock(SseEmitter.class);
+        doAnswer(invocation -> {
+            stuck.await();
+            return null;
+        }).when(slow).send(any(SseEmitter.SseEventBuilder.class));
+        service.subscribe(slow, event -> true);
+        service.subscribe(fast, event -> true);
+
+        try {
+            //The first event is being sent to the slow client, two wait in its outbox and the fourth has no room
+            for (int i = 0; i < 4; i++) {
+                service.publish(event(null, RequestStatus.INITIATED, 560001, null, null));
+                Thread.sleep(50);
+            }
+
+            verify(fast, timeout(2000).times(4)).send(any(SseEmitter.SseEventBuilder.class));
+            assertEquals(1, service.subscriberCount());
+        } finally {
+            stuck.countDown();
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void calling_heartbeat_should_send_a_comment_to_every_subscriber() throws IOException {
+
+        TestRequestFeedService service = serviceSendingOnCaller();
+        SseEmitter patient = mock(SseEmitter.class);
+        SseEmitter tester = mock(SseEmitter.class);
+        service.subscribe(patient, event -> false);
+        service.subscribe(tester, event -> false);
+
+        service.heartbeat();
+
+        verify(patient).send(any(SseEmitter.SseEventBuilder.class));
+        verify(tester).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    private TestRequestFeedService serviceSendingOnCaller() {
+
+        TestRequestFeedService service = new TestRequestFeedService();
+        ReflectionTestUtils.setField(service, "senders", (Executor) Runnable::run);
+        return service;
+    }
+
+    private TestRequestStatusChanged event(RequestStatus from, RequestStatus to, Integer pinCode, Long testerId, Long doctorId) {
+
+        TestRequestStatusChanged event = new TestRequestStatusChanged();
+        event.setRequestId(1L);
+        event.setFromStatus(from);
+        event.setToStatus(to);
+        event.setPinCode(pinCode);
+        event.setTesterId(testerId);
+        event.setDoctorId(doctorId);
+        return event;
+    }
+
+    private User userWithRole(Long id, String roleName) {
+
+        Role role = new Role();
+        role.setName(roleName);
+        User user = new User();
+        user.setId(id);
+        user.setRoles(new HashSet<>(Collections.singleton(role)));
+        return user;
+    }
+}
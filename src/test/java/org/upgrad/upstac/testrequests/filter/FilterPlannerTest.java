@@ -0,0 +1,73 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import org.junit.jupiter.api.Test;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.TestRequest;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterPlannerTest {
+
+    private final FilterPlanner filterPlanner = new FilterPlanner();
+
+    @Test
+    public void calling_plan_for_should_choose_the_index_whose_equality_columns_the_shape_pins() {
+
+        assertEquals("idx_test_request_status_id", filterPlanner.planFor(EnumSet.of(Criterion.STATUS)).getIndex());
+        assertEquals("idx_test_request_status_id", filterPlanner.planFor(EnumSet.of(Criterion.STATUS, Criterion.GENDER)).getIndex());
+        assertEquals("idx_test_request_pin_id", filterPlanner.planFor(EnumSet.of(Criterion.PIN_CODE, Criterion.RESULT)).getIndex());
+    }
+
+    @Test
+    public void calling_plan_for_with_a_created_range_should_seek_the_range_in_created_order() {
+
+        FilterPlan statusFrom = filterPlanner.planFor(EnumSet.of(Criterion.STATUS, Criterion.FROM));
+        FilterPlan fromTo = filterPlanner.planFor(EnumSet.of(Criterion.FROM, Criterion.TO, Criterion.RESULT));
+
+        assertEquals("idx_test_request_status_created_id", statusFrom.getIndex());
+        assertTrue(statusFrom.getJpql().endsWith("t.status = :status and t.created >= :from and t.requestId > :after order by t.created, t.requestId"));
+        assertTrue(statusFrom.getNextPageJpql().endsWith("t.created >= :from and t.created >= :afterCreated and t.requestId > :after order by t.created, t.requestId"));
+        assertEquals("idx_test_request_created", fromTo.getIndex());
+        assertNull(filterPlanner.planFor(EnumSet.of(Criterion.STATUS)).getNextPageJpql());
+    }
+
+    @Test
+    public void calling_score_should_skip_indexes_with_unpinned_columns_or_not_ending_in_request_id() {
+
+        FilterPlanner.IndexDefinition statusCreated = new FilterPlanner.IndexDefinition(TestRequest.class, "status_created", Arrays.asList("status", "created"));
+        FilterPlanner.IndexDefinition pinStatusId = new FilterPlanner.IndexDefinition(TestRequest.class, "pin_status_id", Arrays.asList("pinCode", "status", "requestId"));
+
+        assertEquals(0, statusCreated.score(EnumSet.of(Criterion.STATUS, Criterion.FROM)));
+        assertEquals(0, pinStatusId.score(EnumSet.of(Criterion.PIN_CODE)));
+        assertEquals(0, pinStatusId.score(EnumSet.of(Criterion.PIN_CODE, Criterion.FROM)));
+        assertEquals(2, pinStatusId.score(EnumSet.of(Criterion.PIN_CODE, Criterion.STATUS)));
+
+        FilterPlanner.IndexDefinition statusCreatedId = new FilterPlanner.IndexDefinition(TestRequest.class, "status_created_id", Arrays.asList("status", "created", "requestId"));
+        assertEquals(0, statusCreatedId.score(EnumSet.of(Criterion.STATUS)));
+        assertEquals(0, statusCreatedId.score(EnumSet.of(Criterion.TO)));
+        assertEquals(2, statusCreatedId.score(EnumSet.of(Criterion.STATUS, Criterion.TO)));
+    }
+
+    @Test
+    public void calling_plan_for_should_reject_shapes_no_index_serves_in_request_id_order() {
+
+        assertThrows(AppException.class, () -> filterPlanner.planFor(EnumSet.of(Criterion.MIN_AGE)));
+        assertThrows(AppException.class, () -> filterPlanner.planFor(EnumSet.of(Criterion.GENDER, Criterion.MIN_AGE, Criterion.MAX_AGE)));
+        assertThrows(AppException.class, () -> filterPlanner.planFor(EnumSet.of(Criterion.RESULT, Criterion.SUGGESTION)));
+        assertThrows(AppException.class, () -> filterPlanner.planFor(EnumSet.noneOf(Criterion.class)));
+    }
+
+    @Test
+    public void calling_plan_for_the_same_shape_again_should_return_the_cached_plan() {
+
+        FilterPlan first = filterPlanner.planFor(EnumSet.of(Criterion.STATUS, Criterion.RESULT, Criterion.PIN_CODE));
+        FilterPlan second = filterPlanner.planFor(EnumSet.of(Criterion.PIN_CODE, Criterion.RESULT, Criterion.STATUS));
+
+        assertSame(first, second);
+        assertEquals(1, filterPlanner.cachedPlans());
+        assertTrue(first.getJpql().contains("t.status = :status and l.result = :result and t.pinCode = :pinCode and t.requestId > :after order by t.requestId"));
+    }
+}
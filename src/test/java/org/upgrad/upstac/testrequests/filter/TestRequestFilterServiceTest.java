@@ -0,0 +1,89 @@
+package org.upgrad.upstac.testrequests.filter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.upgrad.upstac.testrequests.CreateTestRequest;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.TestRequestService;
+import org.upgrad.upstac.testrequests.models.TestRequestSummary;
+import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Requests are created under a pin code no other test uses, the database is shared with the controller tests
+@SpringBootTest
+class TestRequestFilterServiceTest {
+
+    @Autowired
+    TestRequestFilterService testRequestFilterService;
+
+    @Autowired
+    TestRequestService testRequestService;
+
+    @Autowired
+    TestRequestRepository testRequestRepository;
+
+    @Autowired
+    UserService userService;
+
+    private final List<Long> created = new ArrayList<>();
+
+
+    @AfterEach
+    public void completeCreatedRequests() {
+
+        for (TestRequest testRequest : testRequestRepository.findAllById(created)) {
+            testRequest.setStatus(RequestStatus.COMPLETED);
+            testRequestRepository.save(testRequest);
+        }
+        created.clear();
+    }
+
+    @Test
+    public void calling_find_with_a_created_range_should_page_through_every_request_once() {
+
+        int pinCode = 700000 + (int) (System.nanoTime() % 100000);
+        for (int i = 0; i < 3; i++)
+            createTestRequest(pinCode);
+
+        RequestFilter filter = new RequestFilter();
+        filter.setPinCode(pinCode);
+        filter.setFrom(LocalDate.now().minusDays(1));
+
+        FilterPage first = testRequestFilterService.find(filter, null, 2);
+        FilterPage second = testRequestFilterService.find(filter, first.getNextAfter(), 2);
+
+        List<Long> paged = new ArrayList<>();
+        first.getRequests().forEach(request -> paged.add(request.getRequestId()));
+        second.getRequests().forEach(request -> paged.add(request.getRequestId()));
+
+        assertEquals(created, paged);
+        assertNull(second.getNextAfter());
+        assertEquals(created.subList(0, 2), first.getRequests().stream().map(TestRequestSummary::getRequestId).collect(Collectors.toList()));
+    }
+
+    private void createTestRequest(int pinCode) {
+
+        long number = System.nanoTime() % 100000000L;
+        CreateTestRequest createTestRequest = new CreateTestRequest();
+        createTestRequest.setName("filter " + number);
+        createTestRequest.setGender(Gender.FEMALE);
+        createTestRequest.setAge(41);
+        createTestRequest.setAddress("some address");
+        createTestRequest.setEmail("filter" + number + "@upgrad.com");
+        createTestRequest.setPhoneNumber(String.valueOf(8300000000L + number));
+        createTestRequest.setPinCode(pinCode);
+
+        created.add(testRequestService.createTestRequestFrom(userService.findByUserName("user"), createTestRequest).getRequestId());
+    }
+}
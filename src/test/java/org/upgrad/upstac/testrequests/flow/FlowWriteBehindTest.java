@@ -0,0 +1,214 @@
+package org.upgrad.upstac.testrequests.flow;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.testrequests.RequestStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class FlowWriteBehindTest {
+
+    @TempDir
+    Path directory;
+
+    JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    FlowWriteBehind flowWriteBehind = new FlowWriteBehind();
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(flowWriteBehind, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(flowWriteBehind, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(flowWriteBehind, "nodeId", "0");
+        ReflectionTestUtils.setField(flowWriteBehind, "idStateFile", System.getProperty("UPSTAC_ID_STATE_FILE"));
+        ReflectionTestUtils.setField(flowWriteBehind, "queueCapacity", 10);
+        ReflectionTestUtils.setField(flowWriteBehind, "batchSize", 10);
+        ReflectionTestUtils.setField(flowWriteBehind, "offerTimeoutInMilliSeconds", 1L);
+        ReflectionTestUtils.setField(flowWriteBehind, "segmentRows", 2);
+        ReflectionTestUtils.setField(flowWriteBehind, "journalPath", directory.resolve("flow-journal.log").toString());
+    }
+
+    @Test
+    public void calling_insert_with_retry_should_delete_a_fully_written_segment_while_later_rows_are_pending() throws Exception {
+
+        flowWriteBehind.open();
+        for (long requestId = 1; requestId <= 5; requestId++)
+            flowWriteBehind.submit(flow(requestId));
+
+        //Segments hold rows 1-2, 3-4 and 5; write the first four only, so the journal is never empty
+        writeQueued(4);
+
+        assertEquals(1, segmentFiles().size());
+        assertEquals(1, lines(segmentFiles().get(0)).size());
+        assertEquals(1, meterRegistry.get("upstac.flow.write_behind.unwritten").gauge().value());
+    }
+
+    @Test
+    public void calling_submit_should_count_a_failed_caller_write_and_keep_the_row_in_the_journal() throws Exception {
+
+        ReflectionTestUtils.setField(flowWriteBehind, "queueCapacity", 1);
+        Mockito.when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        flowWriteBehind.open();
+        flowWriteBehind.submit(flow(1L));
+        assertDoesNotThrow(() -> flowWriteBehind.submit(flow(2L)));
+
+        assertEquals(1, meterRegistry.get("upstac.flow.write_behind.caller_writes").counter().count());
+        assertEquals(1, meterRegistry.get("upstac.flow.write_behind.caller_write_failures").counter().count());
+        assertEquals(2, lines(segmentFiles().get(0)).size());
+    }
+
+    @Test
+    public void calling_open_should_insert_left_segments_in_order_and_delete_them() throws Exception {
+
+        Files.write(directory.resolve("flow-journal.log.10"), FlowWriteBehind.toLine(flow(3L)).getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("flow-journal.log.9"), (FlowWriteBehind.toLine(flow(1L)) + FlowWriteBehind.toLine(flow(2L))).getBytes(StandardCharsets.UTF_8));
+        List<Long> inserted = recordInserts();
+
+        flowWriteBehind.open();
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), inserted);
+        assertFalse(Files.exists(directory.resolve("flow-journal.log.9")));
+        assertFalse(Files.exists(directory.resolve("flow-journal.log.10")));
+        assertTrue(Files.exists(directory.resolve("flow-journal.log.11")));
+    }
+
+    @Test
+    public void calling_open_should_skip_replayed_rows_already_in_the_table() throws Exception {
+
+        TestRequestFlowLogged first = flow(1L);
+        first.setFlowId(101L);
+        TestRequestFlowLogged second = flow(2L);
+        second.setFlowId(102L);
+        Files.write(directory.resolve("flow-journal.log.4"), (FlowWriteBehind.toLine(first) + FlowWriteBehind.toLine(second)).getBytes(StandardCharsets.UTF_8));
+        Mockito.when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(101L), eq(102L))).thenReturn(Collections.singletonList(101L));
+        List<Long> inserted = recordInserts();
+
+        flowWriteBehind.open();
+
+        assertEquals(Collections.singletonList(2L), inserted);
+        assertFalse(Files.exists(directory.resolve("flow-journal.log.4")));
+    }
+
+    @Test
+    public void calling_insert_with_retry_should_set_aside_a_refused_row_and_write_the_rest() throws Exception {
+
+        List<Long> inserted = new ArrayList<>();
+        Mockito.when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    Collection<TestRequestFlowLogged> rows = invocation.getArgument(1);
+                    if (rows.stream().anyMatch(flow -> flow.getRequestId() == 3L))
+                        throw new DataIntegrityViolationException("no such request");
+                    rows.forEach(flow -> inserted.add(flow.getRequestId()));
+                    return new int[0][];
+                });
+
+        ReflectionTestUtils.setField(flowWriteBehind, "segmentRows", 10);
+        flowWriteBehind.open();
+        for (long requestId = 1; requestId <= 5; requestId++)
+            flowWriteBehind.submit(flow(requestId));
+        writeQueued(5);
+
+        assertEquals(Arrays.asList(1L, 2L, 4L, 5L), inserted);
+        assertEquals(1, lines(directory.resolve("flow-journal.log.rejected")).size());
+        assertEquals(1, meterRegistry.get("upstac.flow.write_behind.rejected_rows").counter().count());
+        assertEquals(0, meterRegistry.get("upstac.flow.write_behind.unwritten").gauge().value());
+        assertEquals(0, lines(segmentFiles().get(0)).size());
+    }
+
+    @Test
+    public void calling_open_without_a_journal_should_fail() {
+
+        ReflectionTestUtils.setField(flowWriteBehind, "journalPath", "");
+
+        assertThrows(IllegalStateException.class, () -> flowWriteBehind.open());
+    }
+
+    @Test
+    public void calling_from_line_should_read_back_the_journaled_flow_and_its_id() {
+
+        TestRequestFlowLogged flow = flow(7L);
+        flow.setFlowId(700L);
+        flow.setFromStatus(null);
+
+        assertEquals(flow, FlowWriteBehind.fromLine(FlowWriteBehind.toLine(flow).trim()));
+    }
+
+    @Test
+    public void calling_from_line_should_read_lines_journaled_without_an_id() {
+
+        TestRequestFlowLogged flow = FlowWriteBehind.fromLine("7\tINITIATED\tLAB_TEST_IN_PROGRESS\t3\t2026-10-19T10:00:00Z");
+
+        assertNull(flow.getFlowId());
+        assertEquals(7L, flow.getRequestId());
+        assertEquals(RequestStatus.LAB_TEST_IN_PROGRESS, flow.getToStatus());
+    }
+
+    //Does what the writer thread does for one batch, the writer is not started by open()
+    @SuppressWarnings("unchecked")
+    private void writeQueued(int rows) throws Exception {
+
+        List<FlowWriteBehind.Journaled> batch = new ArrayList<>();
+        ((BlockingQueue<FlowWriteBehind.Journaled>) ReflectionTestUtils.getField(flowWriteBehind, "queue")).drainTo(batch, rows);
+        flowWriteBehind.insertWithRetry(batch);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> recordInserts() {
+
+        List<Long> inserted = new ArrayList<>();
+        Mockito.when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    for (TestRequestFlowLogged flow : (Collection<TestRequestFlowLogged>) invocation.getArgument(1))
+                        inserted.add(flow.getRequestId());
+                    return new int[0][];
+                });
+        return inserted;
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("flow-journal\\.log\\.[0-9]+")).collect(Collectors.toList());
+        }
+    }
+
+    private List<String> lines(Path file) throws Exception {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    private TestRequestFlowLogged flow(Long requestId) {
+
+        TestRequestFlowLogged flow = new TestRequestFlowLogged();
+        flow.setRequestId(requestId);
+        flow.setFromStatus(RequestStatus.INITIATED);
+        flow.setToStatus(RequestStatus.LAB_TEST_IN_PROGRESS);
+        flow.setChangedById(3L);
+        flow.setHappenedAt(Instant.parse("2026-10-19T10:00:00Z"));
+        return flow;
+    }
+}
@@ -0,0 +1,84 @@
+package org.upgrad.upstac.testrequests.flow;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.models.TestRequestFlowSummary;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class TestRequestFlowServiceTest {
+
+    @Mock
+    TestRequestFlowRepository testRequestFlowRepository;
+
+    @InjectMocks
+    TestRequestFlowService testRequestFlowService;
+
+    @Test
+    public void when_steps_of_many_requests_are_loaded_expect_them_grouped_in_the_order_of_the_given_ids() {
+
+        List<Long> requestIds = Arrays.asList(3L, 1L, 2L);
+        TestRequestFlowSummary firstOfOne = step(1L, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS);
+        TestRequestFlowSummary secondOfOne = step(1L, RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED);
+        TestRequestFlowSummary onlyOfThree = step(3L, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS);
+        Mockito.when(testRequestFlowRepository.findSummariesByRequestIdIn(new LinkedHashSet<>(requestIds)))
+                .thenReturn(Arrays.asList(firstOfOne, secondOfOne, onlyOfThree));
+
+        Map<Long, List<TestRequestFlowSummary>> timelines = testRequestFlowService.findTimelines(requestIds);
+
+        assertEquals(requestIds, new ArrayList<>(timelines.keySet()));
+        assertEquals(Arrays.asList(firstOfOne, secondOfOne), timelines.get(1L));
+        assertTrue(timelines.get(2L).isEmpty());
+        assertEquals(Collections.singletonList(onlyOfThree), timelines.get(3L));
+    }
+
+    @Test
+    public void when_no_ids_are_given_expect_no_query() {
+
+        assertTrue(testRequestFlowService.findTimelines(Collections.emptyList()).isEmpty());
+        Mockito.verifyNoInteractions(testRequestFlowRepository);
+    }
+
+    @Test
+    public void when_more_than_the_maximum_ids_are_requested_expect_bad_request_without_query() {
+
+        TestRequestFlowController controller = new TestRequestFlowController();
+        ReflectionTestUtils.setField(controller, "testRequestFlowService", testRequestFlowService);
+
+        List<Long> tooMany = LongStream.rangeClosed(1, TestRequestFlowController.MAX_REQUEST_IDS + 1).boxed().collect(Collectors.toList());
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> controller.getTimelines(tooMany));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        Mockito.verifyNoInteractions(testRequestFlowRepository);
+    }
+
+    @Test
+    public void when_exactly_the_maximum_ids_are_requested_expect_all_loaded() {
+
+        TestRequestFlowController controller = new TestRequestFlowController();
+        ReflectionTestUtils.setField(controller, "testRequestFlowService", testRequestFlowService);
+        Mockito.when(testRequestFlowRepository.findSummariesByRequestIdIn(Mockito.anyCollection())).thenReturn(new ArrayList<>());
+
+        List<Long> maximum = LongStream.rangeClosed(1, TestRequestFlowController.MAX_REQUEST_IDS).boxed().collect(Collectors.toList());
+
+        assertEquals(TestRequestFlowController.MAX_REQUEST_IDS, controller.getTimelines(maximum).size());
+    }
+
+    private TestRequestFlowSummary step(Long requestId, RequestStatus from, RequestStatus to) {
+        return new TestRequestFlowSummary(requestId, from, to, null, null, null, null, null, null);
+    }
+
+}
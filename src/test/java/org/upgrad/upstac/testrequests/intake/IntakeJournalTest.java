@@ -0,0 +1,92 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntakeJournalTest {
+
+    @TempDir
+    Path directory;
+
+
+    @Test
+    void when_journal_is_reopened_expect_records_with_their_states() throws Exception {
+
+        IntakeJournal journal = new IntakeJournal(directory, 4096, false);
+        assertTrue(journal.open().isEmpty());
+
+        IntakeRecord first = journal.append(1L, bytes("first"));
+        journal.append(2L, bytes("second"));
+        IntakeRecord third = journal.append(3L, bytes("third"));
+        journal.created(first, 101L);
+        journal.rejected(third);
+        journal.close();
+
+        List<IntakeRecord> records = new IntakeJournal(directory, 4096, false).open();
+
+        assertEquals(3, records.size());
+        assertEquals(IntakeSegment.CREATED, records.get(0).getState());
+        assertEquals(101L, records.get(0).getRequestId());
+        assertEquals(IntakeSegment.PENDING, records.get(1).getState());
+        assertEquals("second", new String(records.get(1).getPayload(), StandardCharsets.UTF_8));
+        assertEquals(2L, records.get(1).getTicket());
+        assertEquals(IntakeSegment.REJECTED, records.get(2).getState());
+    }
+
+    @Test
+    void when_full_segments_are_finished_expect_them_deleted() throws Exception {
+
+        IntakeJournal journal = new IntakeJournal(directory, 256, false);
+        journal.open();
+
+        List<IntakeRecord> records = new ArrayList<>();
+        for (long ticket = 1; ticket <= 20; ticket++)
+            records.add(journal.append(ticket, new byte[60]));
+
+        assertTrue(segments().size() > 1);
+
+        records.forEach(record -> journal.created(record, record.getTicket()));
+
+        assertEquals(1, segments().size());
+        assertTrue(new IntakeJournal(directory, 256, false).open().stream()
+                .noneMatch(record -> record.getState() == IntakeSegment.PENDING));
+    }
+
+    @Test
+    void when_pending_segment_is_reopened_expect_appends_after_last_record() throws Exception {
+
+        IntakeJournal journal = new IntakeJournal(directory, 4096, false);
+        journal.open();
+        journal.append(1L, bytes("kept"));
+        journal.close();
+
+        IntakeJournal reopened = new IntakeJournal(directory, 4096, false);
+        assertEquals(1, reopened.open().size());
+        reopened.append(2L, bytes("later"));
+
+        List<Long> tickets = new IntakeJournal(directory, 4096, false).open().stream()
+                .map(IntakeRecord::getTicket).collect(Collectors.toList());
+        assertEquals(2, tickets.size());
+        assertTrue(tickets.contains(1L) && tickets.contains(2L));
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
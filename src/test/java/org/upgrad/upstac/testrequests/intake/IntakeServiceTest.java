@@ -0,0 +1,149 @@
+package org.upgrad.upstac.testrequests.intake;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.upgrad.upstac.testrequests.CreateTestRequest;
+import org.upgrad.upstac.testrequests.TestRequestBatchService;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.models.BatchCreateResult;
+import org.upgrad.upstac.testrequests.models.BatchItemResult;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+class IntakeServiceTest {
+
+    @TempDir
+    Path directory;
+
+    TestRequestBatchService testRequestBatchService = Mockito.mock(TestRequestBatchService.class);
+
+    TestRequestRepository testRequestRepository = Mockito.mock(TestRequestRepository.class);
+
+    UserService userService = Mockito.mock(UserService.class);
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    IntakeService intakeService = new IntakeService();
+
+    User user = new User();
+
+    @BeforeEach
+    void setUp() {
+
+        user.setId(7L);
+        Mockito.when(userService.findById(7L)).thenReturn(Optional.of(user));
+
+        ReflectionTestUtils.setField(intakeService, "testRequestBatchService", testRequestBatchService);
+        ReflectionTestUtils.setField(intakeService, "testRequestRepository", testRequestRepository);
+        ReflectionTestUtils.setField(intakeService, "userService", userService);
+        ReflectionTestUtils.setField(intakeService, "transactionManager", Mockito.mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(intakeService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(intakeService, "enabled", true);
+        ReflectionTestUtils.setField(intakeService, "directory", directory.toString());
+        ReflectionTestUtils.setField(intakeService, "segmentSizeInMegaBytes", 1);
+        ReflectionTestUtils.setField(intakeService, "batchSize", 200);
+        ReflectionTestUtils.setField(intakeService, "maxPending", 1000);
+        ReflectionTestUtils.setField(intakeService, "maxFinishedTickets", 1000);
+        ReflectionTestUtils.setField(intakeService, "shutdownTimeoutInMilliSeconds", 5000L);
+        ReflectionTestUtils.setField(intakeService, "nodeId", "0");
+        ReflectionTestUtils.setField(intakeService, "idStateFile", System.getProperty("UPSTAC_ID_STATE_FILE"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        intakeService.stop();
+    }
+
+    @Test
+    void calling_start_should_resolve_a_pending_ticket_created_before_a_crash_without_creating_it_again() throws Exception {
+
+        long ticket = journalPending(42L);
+        Mockito.when(testRequestRepository.findRequestIdsByIntakeTicket(anyCollection()))
+                .thenReturn(Collections.singletonList(new Object[]{ticket, 900L}));
+
+        intakeService.start();
+        IntakeTicket intakeTicket = awaitFinished(ticket);
+
+        assertEquals(IntakeTicket.Status.CREATED, intakeTicket.getStatus());
+        assertEquals(900L, intakeTicket.getRequestId());
+        Mockito.verify(testRequestBatchService, Mockito.never()).createTestRequestsFrom(any(), any(), any());
+    }
+
+    @Test
+    void calling_create_should_resolve_a_ticket_already_stored_to_the_stored_request() throws Exception {
+
+        long ticket = journalPending(43L);
+        Mockito.when(testRequestRepository.findRequestIdsByIntakeTicket(anyCollection()))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(new Object[]{ticket, 901L}));
+        Mockito.when(testRequestBatchService.createTestRequestsFrom(eq(user), anyList(), eq(Collections.singletonList(ticket))))
+                .thenReturn(BatchCreateResult.of(new BatchItemResult[]{BatchItemResult.failed(0, "Could not save request")}));
+
+        intakeService.start();
+        IntakeTicket intakeTicket = awaitFinished(ticket);
+
+        assertEquals(IntakeTicket.Status.CREATED, intakeTicket.getStatus());
+        assertEquals(901L, intakeTicket.getRequestId());
+    }
+
+    @Test
+    void calling_find_ticket_should_fall_back_to_the_stored_request_for_tickets_not_in_memory() throws Exception {
+
+        Mockito.when(testRequestRepository.findRequestIdByIntakeTicketAndCreatedById(44L, 7L)).thenReturn(Optional.of(902L));
+        Mockito.when(testRequestRepository.findRequestIdByIntakeTicketAndCreatedById(44L, 8L)).thenReturn(Optional.empty());
+        User someoneElse = new User();
+        someoneElse.setId(8L);
+
+        intakeService.start();
+        IntakeTicket intakeTicket = intakeService.findTicket(user, 44L).get();
+
+        assertEquals(IntakeTicket.Status.CREATED, intakeTicket.getStatus());
+        assertEquals(902L, intakeTicket.getRequestId());
+        assertFalse(intakeService.findTicket(someoneElse, 44L).isPresent());
+    }
+
+    @Test
+    void calling_start_without_a_directory_should_fail() {
+
+        ReflectionTestUtils.setField(intakeService, "directory", "");
+
+        assertThrows(IllegalStateException.class, () -> intakeService.start());
+    }
+
+    private long journalPending(long ticket) throws Exception {
+
+        IntakeEntry entry = new IntakeEntry();
+        entry.setUserId(user.getId());
+        entry.setRequest(new CreateTestRequest());
+
+        IntakeJournal journal = new IntakeJournal(directory, 1 << 20, false);
+        journal.open();
+        journal.append(ticket, objectMapper.writeValueAsBytes(entry));
+        journal.close();
+        return ticket;
+    }
+
+    private IntakeTicket awaitFinished(long ticket) throws InterruptedException {
+
+        for (int i = 0; i < 100; i++) {
+            IntakeTicket intakeTicket = intakeService.findTicket(user, ticket).get();
+            if (intakeTicket.getStatus() != IntakeTicket.Status.PENDING)
+                return intakeTicket;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("ticket " + ticket + " still pending");
+    }
+}
@@ -0,0 +1,79 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.feed.TestRequestStatusChanged;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+@ExtendWith(MockitoExtension.class)
+class QueueIndexTest {
+
+    @Mock
+    TestRequestRepository testRequestRepository;
+
+    @InjectMocks
+    QueueIndex queueIndex;
+
+    @BeforeEach
+    public void setUp() {
+
+        ReflectionTestUtils.setField(queueIndex, "enabled", true);
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1L, RequestStatus.INITIATED, 560003, 300L});
+        rows.add(new Object[]{2L, RequestStatus.INITIATED, 560003, 100L});
+        rows.add(new Object[]{3L, RequestStatus.INITIATED, 560001, 200L});
+        rows.add(new Object[]{4L, RequestStatus.INITIATED, 110001, 50L});
+        rows.add(new Object[]{5L, RequestStatus.LAB_TEST_COMPLETED, 560003, 10L});
+        Mockito.when(testRequestRepository.findQueueEntries(any())).thenReturn(rows);
+
+        queueIndex.build();
+    }
+
+    @Test
+    public void when_paging_covered_pin_codes_expect_ids_in_priority_order() {
+
+        assertTrue(queueIndex.isIndexed(RequestStatus.INITIATED));
+        assertEquals(Arrays.asList(2L, 1L), queueIndex.page(RequestStatus.INITIATED, Collections.singleton(560003), 0, 10));
+        assertEquals(Arrays.asList(4L, 2L, 3L, 1L), queueIndex.page(RequestStatus.INITIATED, null, 0, 10));
+        assertEquals(Arrays.asList(3L, 1L), queueIndex.page(RequestStatus.INITIATED, null, 2, 2));
+    }
+
+    @Test
+    public void when_local_pin_code_is_empty_expect_neighbouring_district_to_be_paged() {
+
+        assertEquals(0, queueIndex.count(RequestStatus.INITIATED, Collections.singleton(560099)));
+        assertEquals(Arrays.asList(2L, 3L, 1L), queueIndex.pageInDistricts(RequestStatus.INITIATED, Collections.singleton(560), 0, 10));
+    }
+
+    @Test
+    public void when_request_is_assigned_expect_it_to_leave_the_queue() {
+
+        TestRequestStatusChanged event = new TestRequestStatusChanged();
+        event.setRequestId(2L);
+        event.setFromStatus(RequestStatus.INITIATED);
+        event.setToStatus(RequestStatus.LAB_TEST_IN_PROGRESS);
+        event.setPinCode(560003);
+
+        queueIndex.onStatusChanged(event);
+
+        assertEquals(Collections.singletonList(1L), queueIndex.page(RequestStatus.INITIATED, Collections.singleton(560003), 0, 10));
+        assertFalse(queueIndex.isIndexed(RequestStatus.LAB_TEST_IN_PROGRESS));
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.upgrad.upstac.testrequests.versions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.feed.TestRequestStatusChanged;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ListVersionsTest {
+
+    @Mock
+    ListVersionRepository listVersionRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    EntityManager entityManager;
+
+    @InjectMocks
+    ListVersions listVersions;
+
+    @AfterEach
+    public void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    public void calling_version_of_should_read_the_scope_row_and_start_at_zero() {
+
+        ListVersions.Scope scope = ListVersions.queue(RequestStatus.INITIATED);
+        when(listVersionRepository.findById("queue:INITIATED")).thenReturn(Optional.empty(), Optional.of(version("queue:INITIATED", 26)));
+
+        assertEquals("0", listVersions.versionOf(scope));
+        assertEquals("1a", listVersions.versionOf(scope));
+    }
+
+    @Test
+    public void calling_on_status_changed_should_bump_every_scope_the_request_left_or_joined_once_before_commit() {
+
+        when(listVersionRepository.existsById(anyString())).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        TestRequestStatusChanged assigned = statusChanged(RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS);
+        assigned.setTesterId(7L);
+        assigned.setDoctorId(9L);
+        listVersions.onStatusChanged(assigned);
+        listVersions.onStatusChanged(assigned);
+
+        verify(listVersionRepository, never()).bump(anyString());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            synchronization.beforeCommit(false);
+
+        InOrder inOrder = inOrder(listVersionRepository);
+        inOrder.verify(listVersionRepository).bump("history:3");
+        inOrder.verify(listVersionRepository).bump("queue:DIAGNOSIS_IN_PROCESS");
+        inOrder.verify(listVersionRepository).bump("queue:LAB_TEST_COMPLETED");
+        inOrder.verify(listVersionRepository).bump("worklist:7");
+        inOrder.verify(listVersionRepository).bump("worklist:9");
+        verify(listVersionRepository, times(5)).bump(anyString());
+    }
+
+    @Test
+    public void calling_on_status_changed_should_create_missing_scope_rows_once() {
+
+        when(listVersionRepository.existsById(anyString())).thenReturn(false);
+
+        TestRequestStatusChanged created = statusChanged(null, RequestStatus.INITIATED);
+        listVersions.onStatusChanged(created);
+        listVersions.onStatusChanged(created);
+
+        verify(entityManager, times(2)).persist(any(ListVersion.class));
+        verify(listVersionRepository, times(2)).bump("queue:INITIATED");
+        verify(listVersionRepository, times(2)).bump("history:3");
+    }
+
+    @Test
+    public void calling_etag_for_should_differ_per_representation() {
+
+        ListVersions.Scope scope = ListVersions.queue(RequestStatus.INITIATED);
+        when(listVersionRepository.findById("queue:INITIATED")).thenReturn(Optional.of(version("queue:INITIATED", 5)));
+
+        String etag = listVersions.etagFor(scope, requestFor("application/json"));
+
+        assertEquals(etag, listVersions.etagFor(scope, requestFor("application/json")));
+        assertNotEquals(etag, listVersions.etagFor(scope, requestFor("application/cbor")));
+        assertNotEquals(etag, listVersions.etagFor(scope, requestFor("application/json"), Collections.singletonList(560001)));
+    }
+
+    private ListVersion version(String scope, long version) {
+
+        ListVersion listVersion = new ListVersion();
+        listVersion.setScope(scope);
+        listVersion.setVersion(version);
+        return listVersion;
+    }
+
+    private TestRequestStatusChanged statusChanged(RequestStatus from, RequestStatus to) {
+
+        TestRequestStatusChanged event = new TestRequestStatusChanged();
+        event.setRequestId(1L);
+        event.setFromStatus(from);
+        event.setToStatus(to);
+        event.setCreatedById(3L);
+        return event;
+    }
+
+    private ServletWebRequest requestFor(String accept) {
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/labrequests/to-be-tested");
+        request.addHeader("Accept", accept);
+        request.setParameter("page", "0");
+        return new ServletWebRequest(request);
+    }
+
+}